@@ -0,0 +1,192 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.benchmarks;
+
+import org.ironjacamar.benchmarks.support.StubConnection;
+import org.ironjacamar.benchmarks.support.StubConnectionRequestInfo;
+import org.ironjacamar.benchmarks.support.StubManagedConnectionFactory;
+import org.ironjacamar.benchmarks.support.StubTransactionManager;
+import org.ironjacamar.core.api.connectionmanager.ConnectionManager;
+import org.ironjacamar.core.api.connectionmanager.pool.PoolConfiguration;
+import org.ironjacamar.core.connectionmanager.ConnectionManagerFactory;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.resource.spi.ConnectionRequestInfo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Allocate and close a connection, which is the whole life of a connection handle.
+ *
+ * The benchmark reports the throughput, and the sampled time of a cycle for the tail
+ * latency. The threads are set by the runner, since they are swept from 1 to 256 against
+ * a pool which is smaller than that. Each thread goes round the connection request infos
+ * of the given cardinality from its own starting point, so a cardinality above one
+ * makes the callers compete for connections which have to be matched
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class AllocationBenchmark
+{
+   /** Run each cycle in a transaction */
+   @Param({ "false", "true" })
+   private boolean transaction;
+
+   /** The number of distinct connection request infos */
+   @Param({ "1", "16", "256" })
+   private int cardinality;
+
+   /** The maximum size of the pool */
+   @Param({ "32" })
+   private int maxSize;
+
+   /** The managed connection factory */
+   private StubManagedConnectionFactory mcf;
+
+   /** The transaction manager */
+   private StubTransactionManager tm;
+
+   /** The connection manager */
+   private ConnectionManager cm;
+
+   /** The connection request infos */
+   private ConnectionRequestInfo[] cris;
+
+   /**
+    * Constructor
+    */
+   public AllocationBenchmark()
+   {
+   }
+
+   /**
+    * Create the connection manager
+    */
+   @Setup(Level.Trial)
+   public void setup()
+   {
+      mcf = new StubManagedConnectionFactory();
+      tm = transaction ? new StubTransactionManager() : null;
+
+      PoolConfiguration pc = new PoolConfiguration();
+      pc.setMaxSize(maxSize);
+      pc.setBlockingTimeout(60000L);
+
+      cm = ConnectionManagerFactory.createConnectionManager("benchmark", mcf, pc, tm);
+
+      cris = new ConnectionRequestInfo[cardinality];
+      for (int i = 0; i < cardinality; i++)
+      {
+         cris[i] = cardinality == 1 ? null : new StubConnectionRequestInfo(i);
+      }
+   }
+
+   /**
+    * Shutdown the connection manager
+    */
+   @TearDown(Level.Trial)
+   public void teardown()
+   {
+      cm.shutdown();
+   }
+
+   /**
+    * Allocate a connection and close it
+    * @param caller The state of the calling thread
+    * @exception Exception Thrown in case of an error
+    */
+   @Benchmark
+   public void allocateAndClose(Caller caller) throws Exception
+   {
+      ConnectionRequestInfo cri = cris[caller.next(cardinality)];
+
+      if (tm != null)
+         tm.begin();
+
+      try
+      {
+         StubConnection c = (StubConnection)cm.allocateConnection(mcf, cri);
+         c.close();
+      }
+      finally
+      {
+         if (tm != null)
+            tm.commit();
+      }
+   }
+
+   /**
+    * The state of a calling thread
+    */
+   @State(Scope.Thread)
+   public static class Caller
+   {
+      /** The next connection request info */
+      private int next;
+
+      /**
+       * Constructor
+       */
+      public Caller()
+      {
+      }
+
+      /**
+       * Pick a starting point
+       */
+      @Setup(Level.Trial)
+      public void setup()
+      {
+         next = ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE);
+      }
+
+      /**
+       * Get the index of the next connection request info
+       * @param cardinality The number of connection request infos
+       * @return The value
+       */
+      int next(int cardinality)
+      {
+         int index = next % cardinality;
+         next = index + 1;
+         return index;
+      }
+   }
+}
@@ -0,0 +1,74 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.benchmarks;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks. The allocation benchmark is run for each thread count of the
+ * <code>threads</code> system property, by default 1, 4, 16, 64 and 256, and then the
+ * waiter benchmark is run. The arguments are JMH options, like <code>-p transaction=true</code>
+ * or <code>-rf json</code>, which apply to all runs
+ */
+public class BenchmarkRunner
+{
+   /** The default thread counts */
+   private static final String DEFAULT_THREADS = "1,4,16,64,256";
+
+   /**
+    * Private constructor
+    */
+   private BenchmarkRunner()
+   {
+   }
+
+   /**
+    * Main
+    * @param args The JMH options
+    * @exception Exception Thrown in case of an error
+    */
+   public static void main(String[] args) throws Exception
+   {
+      Options parent = new CommandLineOptions(args);
+
+      for (String threads : System.getProperty("threads", DEFAULT_THREADS).split(","))
+      {
+         Options options = new OptionsBuilder()
+            .parent(parent)
+            .include(AllocationBenchmark.class.getName())
+            .threads(Integer.parseInt(threads.trim()))
+            .build();
+
+         new Runner(options).run();
+      }
+
+      Options options = new OptionsBuilder()
+         .parent(parent)
+         .include(WaiterBenchmark.class.getName())
+         .build();
+
+      new Runner(options).run();
+   }
+}
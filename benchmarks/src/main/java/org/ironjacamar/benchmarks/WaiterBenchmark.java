@@ -0,0 +1,227 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.benchmarks;
+
+import org.ironjacamar.benchmarks.support.StubConnection;
+import org.ironjacamar.benchmarks.support.StubManagedConnectionFactory;
+import org.ironjacamar.core.api.connectionmanager.ConnectionManager;
+import org.ironjacamar.core.api.connectionmanager.pool.PoolConfiguration;
+import org.ironjacamar.core.connectionmanager.ConnectionManagerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Park many waiters on an exhausted pool, each on its own thread, and measure the
+ * time until all of them have been served.
+ *
+ * With virtual threads the waiters park in the pool's semaphore without holding a
+ * monitor, so they don't pin their carriers: the peak number of platform threads,
+ * which is reported as the secondary result peakPlatformThreads, stays near the number
+ * of carriers, while
+ * the platform executor needs a thread per waiter. A pinned park is also reported
+ * through jdk.tracePinnedThreads on the runtimes which support it. The virtual
+ * executor needs a runtime with virtual threads
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Djdk.tracePinnedThreads=short")
+@Threads(1)
+public class WaiterBenchmark
+{
+   /** The executor of the waiters; virtual or platform */
+   @Param({ "virtual", "platform" })
+   private String executor;
+
+   /** The number of waiters */
+   @Param({ "1000" })
+   private int waiters;
+
+   /** The maximum size of the pool */
+   @Param({ "8" })
+   private int maxSize;
+
+   /** The time a connection is held in microseconds */
+   @Param({ "50" })
+   private long holdTime;
+
+   /** The managed connection factory */
+   private StubManagedConnectionFactory mcf;
+
+   /** The connection manager */
+   private ConnectionManager cm;
+
+   /** The executor service */
+   private ExecutorService service;
+
+   /**
+    * Constructor
+    */
+   public WaiterBenchmark()
+   {
+   }
+
+   /**
+    * Create the connection manager and the executor
+    * @exception Exception Thrown in case of an error
+    */
+   @Setup(Level.Trial)
+   public void setup() throws Exception
+   {
+      mcf = new StubManagedConnectionFactory();
+
+      PoolConfiguration pc = new PoolConfiguration();
+      pc.setMaxSize(maxSize);
+      pc.setBlockingTimeout(60000L);
+
+      cm = ConnectionManagerFactory.createConnectionManager("benchmark", mcf, pc);
+
+      if ("virtual".equals(executor))
+      {
+         try
+         {
+            service = (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+         }
+         catch (NoSuchMethodException nsme)
+         {
+            throw new IllegalStateException("Virtual threads are not supported by this runtime", nsme);
+         }
+      }
+      else
+      {
+         service = Executors.newCachedThreadPool();
+      }
+   }
+
+   /**
+    * Shutdown the executor and the connection manager
+    */
+   @TearDown(Level.Trial)
+   public void teardown()
+   {
+      service.shutdownNow();
+      cm.shutdown();
+   }
+
+   /**
+    * Start the waiters, and wait until all of them were served
+    * @param peak The peak number of platform threads, which is reported with the result
+    * @exception Exception Thrown in case of an error
+    */
+   @Benchmark
+   public void serveWaiters(PlatformThreads peak) throws Exception
+   {
+      final CountDownLatch done = new CountDownLatch(waiters);
+      final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+
+      for (int i = 0; i < waiters; i++)
+      {
+         service.execute(new Runnable()
+         {
+            public void run()
+            {
+               try
+               {
+                  StubConnection c = (StubConnection)cm.allocateConnection(mcf, null);
+                  LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(holdTime));
+                  c.close();
+               }
+               catch (Exception e)
+               {
+                  failure.compareAndSet(null, e);
+               }
+               finally
+               {
+                  done.countDown();
+               }
+            }
+         });
+      }
+
+      done.await();
+
+      if (failure.get() != null)
+         throw failure.get();
+   }
+
+   /**
+    * The peak number of platform threads during an iteration, as a secondary result
+    */
+   @State(Scope.Thread)
+   @AuxCounters(AuxCounters.Type.EVENTS)
+   public static class PlatformThreads
+   {
+      /** The thread bean */
+      private final ThreadMXBean threads;
+
+      /**
+       * Constructor
+       */
+      public PlatformThreads()
+      {
+         this.threads = ManagementFactory.getThreadMXBean();
+      }
+
+      /**
+       * Reset the peak number of platform threads
+       */
+      @Setup(Level.Iteration)
+      public void reset()
+      {
+         threads.resetPeakThreadCount();
+      }
+
+      /**
+       * Get the peak number of platform threads since the start of the iteration
+       * @return The value
+       */
+      public long peakPlatformThreads()
+      {
+         return threads.getPeakThreadCount();
+      }
+   }
+}
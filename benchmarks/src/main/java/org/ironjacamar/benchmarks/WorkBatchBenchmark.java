@@ -0,0 +1,212 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.benchmarks;
+
+import org.ironjacamar.core.api.workmanager.WorkManager;
+import org.ironjacamar.core.api.workmanager.WorkManagerConfiguration;
+import org.ironjacamar.core.workmanager.WorkManagerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.resource.spi.work.Work;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Schedule the frames of a socket read as work, one scheduleWork call per frame or a
+ * single scheduleBatch call, and wait until they have run.
+ *
+ * An operation is one socket read, so the throughput of frames is the reported value
+ * times the batch size. The threads are set by the runner; each thread is a reader of
+ * its own, like an inbound resource adapter with several connections
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class WorkBatchBenchmark
+{
+   /** Schedule the frames with scheduleBatch */
+   @Param({ "false", "true" })
+   private boolean batch;
+
+   /** The number of frames of a socket read */
+   @Param({ "64", "512" })
+   private int frames;
+
+   /** The work manager */
+   private WorkManager wm;
+
+   /**
+    * Constructor
+    */
+   public WorkBatchBenchmark()
+   {
+   }
+
+   /**
+    * Create the work manager
+    */
+   @Setup(Level.Trial)
+   public void setup()
+   {
+      wm = WorkManagerFactory.createWorkManager("benchmark", new WorkManagerConfiguration());
+   }
+
+   /**
+    * Shutdown the work manager
+    */
+   @TearDown(Level.Trial)
+   public void teardown()
+   {
+      wm.shutdown();
+   }
+
+   /**
+    * Schedule the frames of a socket read and wait for them
+    * @param reader The state of the reading thread
+    * @exception Exception Thrown in case of an error
+    */
+   @Benchmark
+   public void schedule(Reader reader) throws Exception
+   {
+      CountDownLatch done = reader.read(frames);
+
+      if (batch)
+      {
+         wm.scheduleBatch(reader.getFrames());
+      }
+      else
+      {
+         for (Work frame : reader.getFrames())
+         {
+            wm.scheduleWork(frame);
+         }
+      }
+
+      done.await();
+   }
+
+   /**
+    * The state of a reading thread
+    */
+   @State(Scope.Thread)
+   public static class Reader
+   {
+      /** The frames */
+      private final List<Work> frames;
+
+      /** Counted down by each frame which has run */
+      private volatile CountDownLatch done;
+
+      /**
+       * Constructor
+       */
+      public Reader()
+      {
+         this.frames = new ArrayList<Work>();
+      }
+
+      /**
+       * Read the frames of a socket read
+       * @param count The number of frames
+       * @return The latch which is released once all the frames have run
+       */
+      CountDownLatch read(int count)
+      {
+         while (frames.size() < count)
+         {
+            frames.add(new Frame(this));
+         }
+
+         done = new CountDownLatch(count);
+         return done;
+      }
+
+      /**
+       * Get the frames
+       * @return The value
+       */
+      List<Work> getFrames()
+      {
+         return frames;
+      }
+
+      /**
+       * A frame has run
+       */
+      void processed()
+      {
+         done.countDown();
+      }
+   }
+
+   /**
+    * A frame, which is processed as work
+    */
+   static class Frame implements Work
+   {
+      /** The reader */
+      private final Reader reader;
+
+      /**
+       * Constructor
+       * @param reader The reader
+       */
+      Frame(Reader reader)
+      {
+         this.reader = reader;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void run()
+      {
+         reader.processed();
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void release()
+      {
+      }
+   }
+}
@@ -0,0 +1,57 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.benchmarks.support;
+
+/**
+ * A connection handle
+ */
+public class StubConnection
+{
+   /** The managed connection */
+   private volatile StubManagedConnection mc;
+
+   /**
+    * Constructor
+    * @param mc The managed connection
+    */
+   StubConnection(StubManagedConnection mc)
+   {
+      this.mc = mc;
+   }
+
+   /**
+    * Set the managed connection
+    * @param mc The value
+    */
+   void setManagedConnection(StubManagedConnection mc)
+   {
+      this.mc = mc;
+   }
+
+   /**
+    * Close the handle
+    */
+   public void close()
+   {
+      mc.closeHandle(this);
+   }
+}
@@ -0,0 +1,75 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.benchmarks.support;
+
+import javax.resource.spi.ConnectionRequestInfo;
+
+/**
+ * A connection request info identified by a number
+ */
+public class StubConnectionRequestInfo implements ConnectionRequestInfo
+{
+   /** The id */
+   private final int id;
+
+   /**
+    * Constructor
+    * @param id The id
+    */
+   public StubConnectionRequestInfo(int id)
+   {
+      this.id = id;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int hashCode()
+   {
+      return 31 * id + 7;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public boolean equals(Object o)
+   {
+      if (this == o)
+         return true;
+
+      if (!(o instanceof StubConnectionRequestInfo))
+         return false;
+
+      return id == ((StubConnectionRequestInfo)o).id;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String toString()
+   {
+      return "StubConnectionRequestInfo@" + id;
+   }
+}
@@ -0,0 +1,165 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.benchmarks.support;
+
+import org.ironjacamar.core.api.connectionmanager.ConnectionEventListeners;
+
+import java.io.PrintWriter;
+
+import javax.resource.NotSupportedException;
+import javax.resource.ResourceException;
+import javax.resource.spi.ConnectionEventListener;
+import javax.resource.spi.ConnectionRequestInfo;
+import javax.resource.spi.LocalTransaction;
+import javax.resource.spi.ManagedConnection;
+import javax.resource.spi.ManagedConnectionMetaData;
+import javax.security.auth.Subject;
+import javax.transaction.xa.XAResource;
+
+/**
+ * An in-memory managed connection
+ */
+public class StubManagedConnection implements ManagedConnection
+{
+   /** The connection request info */
+   private final ConnectionRequestInfo cri;
+
+   /** The listeners */
+   private final ConnectionEventListeners listeners;
+
+   /** The XA resource */
+   private final XAResource xaResource;
+
+   /**
+    * Constructor
+    * @param cri The connection request info
+    */
+   public StubManagedConnection(ConnectionRequestInfo cri)
+   {
+      this.cri = cri;
+      this.listeners = new ConnectionEventListeners(this);
+      this.xaResource = new StubXAResource();
+   }
+
+   /**
+    * Get the connection request info
+    * @return The value
+    */
+   public ConnectionRequestInfo getConnectionRequestInfo()
+   {
+      return cri;
+   }
+
+   /**
+    * Close a connection handle
+    * @param handle The handle
+    */
+   void closeHandle(StubConnection handle)
+   {
+      listeners.fireConnectionClosed(handle);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public Object getConnection(Subject subject, ConnectionRequestInfo cxRequestInfo) throws ResourceException
+   {
+      return new StubConnection(this);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void destroy() throws ResourceException
+   {
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void cleanup() throws ResourceException
+   {
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void associateConnection(Object connection) throws ResourceException
+   {
+      ((StubConnection)connection).setManagedConnection(this);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void addConnectionEventListener(ConnectionEventListener listener)
+   {
+      listeners.add(listener);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void removeConnectionEventListener(ConnectionEventListener listener)
+   {
+      listeners.remove(listener);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public XAResource getXAResource() throws ResourceException
+   {
+      return xaResource;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public LocalTransaction getLocalTransaction() throws ResourceException
+   {
+      throw new NotSupportedException("Local transactions not supported");
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public ManagedConnectionMetaData getMetaData() throws ResourceException
+   {
+      return null;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void setLogWriter(PrintWriter out) throws ResourceException
+   {
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public PrintWriter getLogWriter() throws ResourceException
+   {
+      return null;
+   }
+}
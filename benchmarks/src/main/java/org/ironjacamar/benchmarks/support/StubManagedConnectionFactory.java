@@ -0,0 +1,114 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.benchmarks.support;
+
+import java.io.PrintWriter;
+import java.util.Iterator;
+import java.util.Set;
+
+import javax.resource.ResourceException;
+import javax.resource.spi.ConnectionManager;
+import javax.resource.spi.ConnectionRequestInfo;
+import javax.resource.spi.ManagedConnection;
+import javax.resource.spi.ManagedConnectionFactory;
+import javax.security.auth.Subject;
+
+/**
+ * An in-memory managed connection factory, whose connections cost nothing to create,
+ * so a benchmark measures the connection manager alone
+ */
+public class StubManagedConnectionFactory implements ManagedConnectionFactory
+{
+   /** Serial version uid */
+   private static final long serialVersionUID = 1L;
+
+   /**
+    * Constructor
+    */
+   public StubManagedConnectionFactory()
+   {
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public Object createConnectionFactory(ConnectionManager cxManager) throws ResourceException
+   {
+      throw new ResourceException("Connections are allocated through the connection manager");
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public Object createConnectionFactory() throws ResourceException
+   {
+      throw new ResourceException("Non-managed environment not supported");
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public ManagedConnection createManagedConnection(Subject subject, ConnectionRequestInfo cxRequestInfo)
+      throws ResourceException
+   {
+      return new StubManagedConnection(cxRequestInfo);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @SuppressWarnings("rawtypes")
+   public ManagedConnection matchManagedConnections(Set connectionSet, Subject subject,
+                                                    ConnectionRequestInfo cxRequestInfo)
+      throws ResourceException
+   {
+      Iterator it = connectionSet.iterator();
+      while (it.hasNext())
+      {
+         Object o = it.next();
+         if (o instanceof StubManagedConnection)
+         {
+            StubManagedConnection mc = (StubManagedConnection)o;
+            if (mc.getConnectionRequestInfo() == null ? cxRequestInfo == null :
+                mc.getConnectionRequestInfo().equals(cxRequestInfo))
+               return mc;
+         }
+      }
+
+      return null;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void setLogWriter(PrintWriter out) throws ResourceException
+   {
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public PrintWriter getLogWriter() throws ResourceException
+   {
+      return null;
+   }
+}
@@ -0,0 +1,139 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.benchmarks.support;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.transaction.RollbackException;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.SystemException;
+import javax.transaction.Transaction;
+import javax.transaction.xa.XAResource;
+
+/**
+ * A transaction which only runs its synchronizations. A transaction is used by
+ * the thread which began it
+ */
+public class StubTransaction implements Transaction
+{
+   /** The status */
+   private int status;
+
+   /** The synchronizations */
+   private List<Synchronization> synchronizations;
+
+   /**
+    * Constructor
+    */
+   public StubTransaction()
+   {
+      this.status = Status.STATUS_ACTIVE;
+      this.synchronizations = new ArrayList<Synchronization>(1);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void commit() throws RollbackException, SystemException
+   {
+      boolean rollback = status == Status.STATUS_MARKED_ROLLBACK;
+
+      if (!rollback)
+      {
+         for (Synchronization s : synchronizations)
+         {
+            s.beforeCompletion();
+         }
+      }
+
+      complete(rollback ? Status.STATUS_ROLLEDBACK : Status.STATUS_COMMITTED);
+
+      if (rollback)
+         throw new RollbackException();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public boolean delistResource(XAResource xaRes, int flag) throws SystemException
+   {
+      return true;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public boolean enlistResource(XAResource xaRes) throws RollbackException, SystemException
+   {
+      if (status != Status.STATUS_ACTIVE)
+         throw new IllegalStateException("Transaction is not active");
+
+      return true;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public int getStatus() throws SystemException
+   {
+      return status;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void registerSynchronization(Synchronization sync) throws RollbackException, SystemException
+   {
+      synchronizations.add(sync);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void rollback() throws SystemException
+   {
+      complete(Status.STATUS_ROLLEDBACK);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void setRollbackOnly() throws SystemException
+   {
+      status = Status.STATUS_MARKED_ROLLBACK;
+   }
+
+   /**
+    * Complete the transaction
+    * @param s The final status
+    */
+   private void complete(int s)
+   {
+      status = s;
+      for (Synchronization sync : synchronizations)
+      {
+         sync.afterCompletion(s);
+      }
+   }
+}
@@ -0,0 +1,131 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.benchmarks.support;
+
+import javax.transaction.HeuristicMixedException;
+import javax.transaction.HeuristicRollbackException;
+import javax.transaction.InvalidTransactionException;
+import javax.transaction.NotSupportedException;
+import javax.transaction.RollbackException;
+import javax.transaction.Status;
+import javax.transaction.SystemException;
+import javax.transaction.Transaction;
+import javax.transaction.TransactionManager;
+
+/**
+ * A transaction manager which associates a StubTransaction with the current thread
+ */
+public class StubTransactionManager implements TransactionManager
+{
+   /** The transactions */
+   private ThreadLocal<StubTransaction> transactions;
+
+   /**
+    * Constructor
+    */
+   public StubTransactionManager()
+   {
+      this.transactions = new ThreadLocal<StubTransaction>();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void begin() throws NotSupportedException, SystemException
+   {
+      if (transactions.get() != null)
+         throw new NotSupportedException("Nested transactions not supported");
+
+      transactions.set(new StubTransaction());
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void commit() throws RollbackException, HeuristicMixedException, HeuristicRollbackException,
+                               SecurityException, IllegalStateException, SystemException
+   {
+      StubTransaction tx = transactions.get();
+      transactions.remove();
+      tx.commit();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public int getStatus() throws SystemException
+   {
+      StubTransaction tx = transactions.get();
+      return tx != null ? tx.getStatus() : Status.STATUS_NO_TRANSACTION;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public StubTransaction getTransaction() throws SystemException
+   {
+      return transactions.get();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void resume(Transaction tobj) throws InvalidTransactionException, IllegalStateException, SystemException
+   {
+      transactions.set((StubTransaction)tobj);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void rollback() throws IllegalStateException, SecurityException, SystemException
+   {
+      StubTransaction tx = transactions.get();
+      transactions.remove();
+      tx.rollback();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void setRollbackOnly() throws IllegalStateException, SystemException
+   {
+      transactions.get().setRollbackOnly();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void setTransactionTimeout(int seconds) throws SystemException
+   {
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public Transaction suspend() throws SystemException
+   {
+      Transaction tx = transactions.get();
+      transactions.remove();
+      return tx;
+   }
+}
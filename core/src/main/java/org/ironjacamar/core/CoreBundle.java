@@ -0,0 +1,169 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core;
+
+import org.jboss.logging.annotations.Message;
+import org.jboss.logging.annotations.MessageBundle;
+
+/**
+ * The core bundle.
+ */
+@MessageBundle(projectCode = "IJ")
+public interface CoreBundle
+{
+   /**
+    * No managed connections available within the blocking timeout
+    * @param timeout The timeout
+    * @return The value
+    */
+   @Message(id = 100500, value = "No ManagedConnections available within configured blocking timeout (%d [ms])")
+   public String noManagedConnectionsAvailable(long timeout);
+
+   /**
+    * Interrupted while requesting a permit
+    * @param time The time waited
+    * @return The value
+    */
+   @Message(id = 100501, value = "Interrupted while requesting permit: %d [ms]")
+   public String interruptedWhileRequestingPermit(long time);
+
+   /**
+    * The pool has been shutdown
+    * @param name The name of the pool
+    * @return The value
+    */
+   @Message(id = 100502, value = "The pool has been shutdown: %s")
+   public String poolIsShutdown(String name);
+
+   /**
+    * Unable to get a connection handle
+    * @param mc The managed connection
+    * @return The value
+    */
+   @Message(id = 100503, value = "Unable to get connection handle from %s")
+   public String unableToGetConnectionHandle(Object mc);
+
+   /**
+    * Unable to associate a connection handle
+    * @param mc The managed connection
+    * @return The value
+    */
+   @Message(id = 100504, value = "Unable to associate connection handle with %s")
+   public String unableToAssociateConnectionHandle(Object mc);
+
+   /**
+    * Unable to enlist a connection in a transaction
+    * @param mc The managed connection
+    * @return The value
+    */
+   @Message(id = 100505, value = "Unable to enlist %s in the transaction")
+   public String unableToEnlist(Object mc);
+
+   /**
+    * The transaction is not active
+    * @param tx The transaction
+    * @return The value
+    */
+   @Message(id = 100506, value = "Transaction is not active: %s")
+   public String transactionNotActive(Object tx);
+
+   /**
+    * A managed connection isn't in use through the connection manager
+    * @param mc The managed connection
+    * @return The value
+    */
+   @Message(id = 100507, value = "%s is not in use through this connection manager")
+   public String unknownManagedConnection(Object mc);
+
+   /**
+    * The work is null
+    * @return The value
+    */
+   @Message(id = 100508, value = "Work is null")
+   public String workIsNull();
+
+   /**
+    * The work manager has been shutdown
+    * @param name The name of the work manager
+    * @return The value
+    */
+   @Message(id = 100509, value = "The work manager has been shutdown: %s")
+   public String workManagerIsShutdown(String name);
+
+   /**
+    * The queue of the work manager is full
+    * @param name The name of the work manager
+    * @param max The maximum number of queued work instances
+    * @return The value
+    */
+   @Message(id = 100510, value = "The work manager %s has %d work instances queued already")
+   public String workQueueFull(String name, int max);
+
+   /**
+    * The work didn't start within the start timeout
+    * @param timeout The start timeout
+    * @return The value
+    */
+   @Message(id = 100511, value = "Work didn't start within the start timeout (%d [ms])")
+   public String startTimedOut(long timeout);
+
+   /**
+    * Transaction inflow isn't supported
+    * @param xid The xid
+    * @return The value
+    */
+   @Message(id = 100512, value = "Transaction inflow isn't supported: %s")
+   public String transactionInflowNotSupported(Object xid);
+
+   /**
+    * Interrupted while waiting for work
+    * @param work The work
+    * @return The value
+    */
+   @Message(id = 100513, value = "Interrupted while waiting for %s")
+   public String interruptedWhileWaitingForWork(Object work);
+
+   /**
+    * The long-running work is at its maximum
+    * @param name The name of the work manager
+    * @param max The maximum number of running long-running work instances
+    * @return The value
+    */
+   @Message(id = 100514, value = "The long-running work of work manager %s is at its maximum of %d")
+   public String longRunningWorkFull(String name, int max);
+
+   /**
+    * The warm start profile has an unsupported version
+    * @param version The version
+    * @return The value
+    */
+   @Message(id = 100515, value = "Unsupported warm start profile version: %d")
+   public String unsupportedWarmStartVersion(int version);
+
+   /**
+    * The directory can't be created
+    * @param dir The directory
+    * @return The value
+    */
+   @Message(id = 100516, value = "Unable to create directory %s")
+   public String unableToCreateDirectory(Object dir);
+}
@@ -0,0 +1,168 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core;
+
+import org.jboss.logging.BasicLogger;
+import org.jboss.logging.annotations.Cause;
+import org.jboss.logging.annotations.LogMessage;
+import org.jboss.logging.annotations.Message;
+import org.jboss.logging.annotations.MessageLogger;
+
+import static org.jboss.logging.Logger.Level.WARN;
+
+/**
+ * The core logger.
+ */
+@MessageLogger(projectCode = "IJ")
+public interface CoreLogger extends BasicLogger
+{
+   /**
+    * Exception during destroy of a connection
+    * @param mc The managed connection
+    * @param t The exception
+    */
+   @LogMessage(level = WARN)
+   @Message(id = 100000, value = "Exception during destroy of %s")
+   public void destroyFailed(Object mc, @Cause Throwable t);
+
+   /**
+    * Exception during cleanup of a connection
+    * @param mc The managed connection
+    * @param t The exception
+    */
+   @LogMessage(level = WARN)
+   @Message(id = 100001, value = "Exception during cleanup of %s")
+   public void cleanupFailed(Object mc, @Cause Throwable t);
+
+   /**
+    * Exception during matching of a connection
+    * @param mc The managed connection
+    * @param t The exception
+    */
+   @LogMessage(level = WARN)
+   @Message(id = 100002, value = "Exception during matching of %s")
+   public void matchFailed(Object mc, @Cause Throwable t);
+
+   /**
+    * Exception during prefill of a pool
+    * @param name The name of the pool
+    * @param t The exception
+    */
+   @LogMessage(level = WARN)
+   @Message(id = 100003, value = "Unable to prefill pool: %s")
+   public void prefillFailed(String name, @Cause Throwable t);
+
+   /**
+    * Exception during background validation of a pool
+    * @param name The name of the pool
+    * @param t The exception
+    */
+   @LogMessage(level = WARN)
+   @Message(id = 100004, value = "Background validation failed for pool: %s")
+   public void validationFailed(String name, @Cause Throwable t);
+
+   /**
+    * Exception from a timing wheel task
+    * @param task The task
+    * @param t The exception
+    */
+   @LogMessage(level = WARN)
+   @Message(id = 100005, value = "Exception from timed task: %s")
+   public void timeoutTaskFailed(Object task, @Cause Throwable t);
+
+   /**
+    * Unable to mark a transaction for rollback
+    * @param tx The transaction
+    * @param t The exception
+    */
+   @LogMessage(level = WARN)
+   @Message(id = 100006, value = "Unable to mark the transaction for rollback: %s")
+   public void setRollbackOnlyFailed(Object tx, @Cause Throwable t);
+
+   /**
+    * Connection leak
+    * @param name The name of the pool
+    * @param mc The managed connection
+    * @param held The time the connection is held in milliseconds
+    * @param thread The name of the thread which borrowed the connection
+    * @param site The borrow site, or <code>null</code> if it wasn't sampled
+    */
+   @LogMessage(level = WARN)
+   @Message(id = 100007, value = "Connection leak in pool %s: %s held for %d ms by thread %s")
+   public void connectionLeak(String name, Object mc, long held, String thread, @Cause Throwable site);
+
+   /**
+    * Unable to load a warm start profile
+    * @param name The name of the pool
+    * @param file The file
+    * @param t The exception
+    */
+   @LogMessage(level = WARN)
+   @Message(id = 100008, value = "Unable to load the warm start profile of pool %s from %s")
+   public void warmStartLoadFailed(String name, String file, @Cause Throwable t);
+
+   /**
+    * Unable to save a warm start profile
+    * @param name The name of the pool
+    * @param file The file
+    * @param t The exception
+    */
+   @LogMessage(level = WARN)
+   @Message(id = 100009, value = "Unable to save the warm start profile of pool %s to %s")
+   public void warmStartSaveFailed(String name, String file, @Cause Throwable t);
+
+   /**
+    * Unable to register the statistics of a pool
+    * @param name The name of the pool
+    * @param t The exception
+    */
+   @LogMessage(level = WARN)
+   @Message(id = 100010, value = "Unable to register the statistics of pool %s")
+   public void registerStatisticsFailed(String name, @Cause Throwable t);
+
+   /**
+    * Unable to unregister the statistics of a pool
+    * @param name The name of the pool
+    * @param t The exception
+    */
+   @LogMessage(level = WARN)
+   @Message(id = 100011, value = "Unable to unregister the statistics of pool %s")
+   public void unregisterStatisticsFailed(String name, @Cause Throwable t);
+
+   /**
+    * Exception in a work listener
+    * @param listener The work listener
+    * @param t The exception
+    */
+   @LogMessage(level = WARN)
+   @Message(id = 100012, value = "Exception in work listener %s")
+   public void workListenerFailed(Object listener, @Cause Throwable t);
+
+   /**
+    * Virtual threads aren't supported
+    * @param name The name of the work manager
+    */
+   @LogMessage(level = WARN)
+   @Message(id = 100013, value = "Virtual threads aren't supported by this runtime; work manager %s " +
+            "uses platform threads")
+   public void virtualThreadsNotSupported(String name);
+}
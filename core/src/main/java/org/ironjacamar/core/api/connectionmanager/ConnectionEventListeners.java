@@ -0,0 +1,243 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.api.connectionmanager;
+
+import javax.resource.spi.ConnectionEvent;
+import javax.resource.spi.ConnectionEventListener;
+import javax.resource.spi.ManagedConnection;
+
+/**
+ * The connection event listeners of a managed connection, for use by resource adapters.
+ *
+ * The listeners are kept in a copy-on-write array, so firing an event doesn't lock or
+ * allocate an iterator. A {@link DirectConnectionEventListener} is notified without an
+ * event; a ConnectionEvent is only created when a plain listener is registered, and is
+ * then shared by all plain listeners of the notification.
+ */
+public class ConnectionEventListeners
+{
+   /** No listeners */
+   private static final ConnectionEventListener[] EMPTY = new ConnectionEventListener[0];
+
+   /** The managed connection */
+   private final ManagedConnection mc;
+
+   /** The listeners */
+   private volatile ConnectionEventListener[] listeners;
+
+   /**
+    * Constructor
+    * @param mc The managed connection which fires the events
+    */
+   public ConnectionEventListeners(ManagedConnection mc)
+   {
+      this.mc = mc;
+      this.listeners = EMPTY;
+   }
+
+   /**
+    * Add a listener
+    * @param listener The listener
+    */
+   public synchronized void add(ConnectionEventListener listener)
+   {
+      if (listener == null)
+         throw new IllegalArgumentException("Listener is null");
+
+      ConnectionEventListener[] current = listeners;
+      ConnectionEventListener[] updated = new ConnectionEventListener[current.length + 1];
+      System.arraycopy(current, 0, updated, 0, current.length);
+      updated[current.length] = listener;
+      listeners = updated;
+   }
+
+   /**
+    * Remove a listener
+    * @param listener The listener
+    * @return True if the listener was registered, otherwise false
+    */
+   public synchronized boolean remove(ConnectionEventListener listener)
+   {
+      ConnectionEventListener[] current = listeners;
+      for (int i = 0; i < current.length; i++)
+      {
+         if (current[i].equals(listener))
+         {
+            if (current.length == 1)
+            {
+               listeners = EMPTY;
+            }
+            else
+            {
+               ConnectionEventListener[] updated = new ConnectionEventListener[current.length - 1];
+               System.arraycopy(current, 0, updated, 0, i);
+               System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+               listeners = updated;
+            }
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Get the number of listeners
+    * @return The value
+    */
+   public int size()
+   {
+      return listeners.length;
+   }
+
+   /**
+    * Fire a CONNECTION_CLOSED event
+    * @param handle The connection handle
+    */
+   public void fireConnectionClosed(Object handle)
+   {
+      fire(ConnectionEvent.CONNECTION_CLOSED, handle, null);
+   }
+
+   /**
+    * Fire a LOCAL_TRANSACTION_STARTED event
+    * @param handle The connection handle
+    */
+   public void fireLocalTransactionStarted(Object handle)
+   {
+      fire(ConnectionEvent.LOCAL_TRANSACTION_STARTED, handle, null);
+   }
+
+   /**
+    * Fire a LOCAL_TRANSACTION_COMMITTED event
+    * @param handle The connection handle
+    */
+   public void fireLocalTransactionCommitted(Object handle)
+   {
+      fire(ConnectionEvent.LOCAL_TRANSACTION_COMMITTED, handle, null);
+   }
+
+   /**
+    * Fire a LOCAL_TRANSACTION_ROLLEDBACK event
+    * @param handle The connection handle
+    */
+   public void fireLocalTransactionRolledback(Object handle)
+   {
+      fire(ConnectionEvent.LOCAL_TRANSACTION_ROLLEDBACK, handle, null);
+   }
+
+   /**
+    * Fire a CONNECTION_ERROR_OCCURRED event
+    * @param handle The connection handle
+    * @param exception The exception
+    */
+   public void fireConnectionErrorOccurred(Object handle, Exception exception)
+   {
+      fire(ConnectionEvent.CONNECTION_ERROR_OCCURRED, handle, exception);
+   }
+
+   /**
+    * Notify the listeners
+    * @param type The event type
+    * @param handle The connection handle
+    * @param exception The exception, or <code>null</code>
+    */
+   private void fire(int type, Object handle, Exception exception)
+   {
+      ConnectionEventListener[] current = listeners;
+      ConnectionEvent event = null;
+
+      for (int i = 0; i < current.length; i++)
+      {
+         ConnectionEventListener listener = current[i];
+
+         if (listener instanceof DirectConnectionEventListener)
+         {
+            fire((DirectConnectionEventListener)listener, type, handle, exception);
+         }
+         else
+         {
+            if (event == null)
+            {
+               event = new ConnectionEvent(mc, type, exception);
+               event.setConnectionHandle(handle);
+            }
+            fire(listener, event);
+         }
+      }
+   }
+
+   /**
+    * Notify a direct listener
+    * @param listener The listener
+    * @param type The event type
+    * @param handle The connection handle
+    * @param exception The exception, or <code>null</code>
+    */
+   private void fire(DirectConnectionEventListener listener, int type, Object handle, Exception exception)
+   {
+      switch (type)
+      {
+         case ConnectionEvent.CONNECTION_CLOSED:
+            listener.connectionClosed(mc, handle);
+            break;
+         case ConnectionEvent.LOCAL_TRANSACTION_STARTED:
+            listener.localTransactionStarted(mc, handle);
+            break;
+         case ConnectionEvent.LOCAL_TRANSACTION_COMMITTED:
+            listener.localTransactionCommitted(mc, handle);
+            break;
+         case ConnectionEvent.LOCAL_TRANSACTION_ROLLEDBACK:
+            listener.localTransactionRolledback(mc, handle);
+            break;
+         default:
+            listener.connectionErrorOccurred(mc, handle, exception);
+            break;
+      }
+   }
+
+   /**
+    * Notify a listener
+    * @param listener The listener
+    * @param event The event
+    */
+   private void fire(ConnectionEventListener listener, ConnectionEvent event)
+   {
+      switch (event.getId())
+      {
+         case ConnectionEvent.CONNECTION_CLOSED:
+            listener.connectionClosed(event);
+            break;
+         case ConnectionEvent.LOCAL_TRANSACTION_STARTED:
+            listener.localTransactionStarted(event);
+            break;
+         case ConnectionEvent.LOCAL_TRANSACTION_COMMITTED:
+            listener.localTransactionCommitted(event);
+            break;
+         case ConnectionEvent.LOCAL_TRANSACTION_ROLLEDBACK:
+            listener.localTransactionRolledback(event);
+            break;
+         default:
+            listener.connectionErrorOccurred(event);
+            break;
+      }
+   }
+}
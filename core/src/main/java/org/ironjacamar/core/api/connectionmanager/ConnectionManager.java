@@ -0,0 +1,55 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.api.connectionmanager;
+
+import org.ironjacamar.core.api.connectionmanager.pool.Pool;
+
+import javax.resource.ResourceException;
+
+/**
+ * The IronJacamar connection manager
+ */
+public interface ConnectionManager extends javax.resource.spi.ConnectionManager
+{
+   /**
+    * Get the pool
+    * @return The value
+    */
+   public Pool getPool();
+
+   /**
+    * Dissociate a connection handle from its managed connection, which is returned
+    * to the pool. All other handles of the managed connection are dissociated too.
+    * The resource adapter associates the handles again when they are used, through
+    * LazyAssociatableConnectionManager. Requires lazy association in the pool
+    * configuration, and a DissociatableManagedConnection
+    * @param connection The connection handle
+    * @return True if the handle was dissociated, otherwise false
+    * @exception ResourceException Thrown if the managed connection fails to dissociate
+    */
+   public boolean dissociate(Object connection) throws ResourceException;
+
+   /**
+    * Shutdown the connection manager
+    */
+   public void shutdown();
+}
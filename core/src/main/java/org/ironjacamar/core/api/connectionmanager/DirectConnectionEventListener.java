@@ -0,0 +1,71 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.api.connectionmanager;
+
+import javax.resource.spi.ConnectionEventListener;
+import javax.resource.spi.ManagedConnection;
+
+/**
+ * A connection event listener which can be notified without a ConnectionEvent.
+ *
+ * The listeners registered by the pool implement this interface, so a resource adapter
+ * which checks for it can skip the allocation of an event for every connection handle
+ * closed. {@link ConnectionEventListeners} does the check for the resource adapter.
+ */
+public interface DirectConnectionEventListener extends ConnectionEventListener
+{
+   /**
+    * A connection handle was closed
+    * @param mc The managed connection
+    * @param handle The connection handle, or <code>null</code> for all handles
+    */
+   public void connectionClosed(ManagedConnection mc, Object handle);
+
+   /**
+    * A local transaction was started
+    * @param mc The managed connection
+    * @param handle The connection handle
+    */
+   public void localTransactionStarted(ManagedConnection mc, Object handle);
+
+   /**
+    * A local transaction was committed
+    * @param mc The managed connection
+    * @param handle The connection handle
+    */
+   public void localTransactionCommitted(ManagedConnection mc, Object handle);
+
+   /**
+    * A local transaction was rolled back
+    * @param mc The managed connection
+    * @param handle The connection handle
+    */
+   public void localTransactionRolledback(ManagedConnection mc, Object handle);
+
+   /**
+    * An error occurred on the managed connection
+    * @param mc The managed connection
+    * @param handle The connection handle
+    * @param exception The exception
+    */
+   public void connectionErrorOccurred(ManagedConnection mc, Object handle, Exception exception);
+}
@@ -0,0 +1,99 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.api.connectionmanager.pool;
+
+/**
+ * A connection pool
+ */
+public interface Pool
+{
+   /**
+    * Get the name of the pool
+    * @return The value
+    */
+   public String getName();
+
+   /**
+    * Get the configuration of the pool
+    * @return The value
+    */
+   public PoolConfiguration getConfiguration();
+
+   /**
+    * Get the number of connections created by the pool
+    * @return The value
+    */
+   public int getActiveCount();
+
+   /**
+    * Get the number of connections currently handed out
+    * @return The value
+    */
+   public int getInUseCount();
+
+   /**
+    * Get the number of idle connections
+    * @return The value
+    */
+   public int getIdleCount();
+
+   /**
+    * Get the number of threads waiting for a connection
+    * @return The value
+    */
+   public int getWaitingCount();
+
+   /**
+    * Get the working size of the pool, which is the number of connections that
+    * can be handed out. The working size is the maximum size of the pool, unless
+    * the pool is autoscaled
+    * @return The value
+    */
+   public int getWorkingSize();
+
+   /**
+    * Get the statistics of the pool
+    * @return The value
+    */
+   public PoolStatistics getStatistics();
+
+   /**
+    * Fill the pool to its minimum size in the background
+    */
+   public void prefill();
+
+   /**
+    * Destroy all idle connections
+    */
+   public void flush();
+
+   /**
+    * Flush the pool
+    * @param strategy The flush strategy
+    */
+   public void flush(FlushStrategy strategy);
+
+   /**
+    * Shutdown the pool
+    */
+   public void shutdown();
+}
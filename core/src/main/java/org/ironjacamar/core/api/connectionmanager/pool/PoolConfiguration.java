@@ -0,0 +1,533 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.api.connectionmanager.pool;
+
+/**
+ * The pool configuration
+ */
+public class PoolConfiguration
+{
+   /** Minimum size of the pool */
+   private int minSize;
+
+   /** Maximum size of the pool */
+   private int maxSize;
+
+   /** Blocking timeout in milliseconds */
+   private long blockingTimeout;
+
+   /** Prefill the pool, and refill it to the minimum size */
+   private boolean prefill;
+
+   /** Autoscale the working size of the pool */
+   private boolean autoscale;
+
+   /** The autoscale interval in milliseconds */
+   private long autoscaleInterval;
+
+   /** Validate the idle connections in the background */
+   private boolean backgroundValidation;
+
+   /** The background validation interval in milliseconds */
+   private long backgroundValidationMillis;
+
+   /** The idle timeout in milliseconds */
+   private long idleTimeout;
+
+   /** The maximum lifetime of a connection in milliseconds */
+   private long maxLifetime;
+
+   /** Hand a thread the connection it returned last */
+   private boolean threadAffinity;
+
+   /** Track connection handles, so they can be dissociated from their managed connection */
+   private boolean lazyAssociation;
+
+   /** Hand out connections to the waiting threads in arrival order */
+   private boolean fair;
+
+   /** The time after which a connection in use is reported as leaked in milliseconds */
+   private long leakThreshold;
+
+   /** Capture the borrow site of one in this many borrows */
+   private int leakSampleRate;
+
+   /** The flush strategy applied when a connection reports an error */
+   private FlushStrategy flushStrategy;
+
+   /** The file of the warm start profile */
+   private String warmStartFile;
+
+   /** The number of connections guaranteed to each Subject */
+   private int subjectMinSize;
+
+   /** The maximum number of connections of each Subject */
+   private int subjectMaxSize;
+
+   /** Register the statistics with the platform MBeanServer */
+   private boolean jmx;
+
+   /**
+    * Constructor
+    */
+   public PoolConfiguration()
+   {
+      minSize = 0;
+      maxSize = 20;
+      blockingTimeout = 30000L;
+      prefill = false;
+      autoscale = false;
+      autoscaleInterval = 10000L;
+      backgroundValidation = false;
+      backgroundValidationMillis = 60000L;
+      idleTimeout = 1800000L;
+      maxLifetime = 0L;
+      threadAffinity = true;
+      lazyAssociation = false;
+      fair = false;
+      leakThreshold = 0L;
+      leakSampleRate = 100;
+      flushStrategy = FlushStrategy.FAILING_CONNECTION_ONLY;
+      warmStartFile = null;
+      subjectMinSize = 0;
+      subjectMaxSize = 0;
+      jmx = false;
+   }
+
+   /**
+    * Get min-pool-size
+    * @return The value
+    */
+   public int getMinSize()
+   {
+      return minSize;
+   }
+
+   /**
+    * Set min-pool-size
+    * @param v The value
+    */
+   public void setMinSize(int v)
+   {
+      if (v >= 0)
+         minSize = v;
+   }
+
+   /**
+    * Get max-pool-size
+    * @return The value
+    */
+   public int getMaxSize()
+   {
+      return maxSize;
+   }
+
+   /**
+    * Set max-pool-size
+    * @param v The value
+    */
+   public void setMaxSize(int v)
+   {
+      if (v > 0)
+         maxSize = v;
+   }
+
+   /**
+    * Get the blocking timeout
+    * @return The value in milliseconds
+    */
+   public long getBlockingTimeout()
+   {
+      return blockingTimeout;
+   }
+
+   /**
+    * Set the blocking timeout
+    * @param v The value in milliseconds
+    */
+   public void setBlockingTimeout(long v)
+   {
+      if (v >= 0)
+         blockingTimeout = v;
+   }
+
+   /**
+    * Is prefill enabled
+    * @return The value
+    */
+   public boolean isPrefill()
+   {
+      return prefill;
+   }
+
+   /**
+    * Set prefill
+    * @param v The value
+    */
+   public void setPrefill(boolean v)
+   {
+      prefill = v;
+   }
+
+   /**
+    * Is autoscale enabled
+    * @return The value
+    */
+   public boolean isAutoscale()
+   {
+      return autoscale;
+   }
+
+   /**
+    * Set autoscale
+    * @param v The value
+    */
+   public void setAutoscale(boolean v)
+   {
+      autoscale = v;
+   }
+
+   /**
+    * Get the autoscale interval
+    * @return The value in milliseconds
+    */
+   public long getAutoscaleInterval()
+   {
+      return autoscaleInterval;
+   }
+
+   /**
+    * Set the autoscale interval
+    * @param v The value in milliseconds
+    */
+   public void setAutoscaleInterval(long v)
+   {
+      if (v > 0)
+         autoscaleInterval = v;
+   }
+
+   /**
+    * Is background validation enabled
+    * @return The value
+    */
+   public boolean isBackgroundValidation()
+   {
+      return backgroundValidation;
+   }
+
+   /**
+    * Set background validation
+    * @param v The value
+    */
+   public void setBackgroundValidation(boolean v)
+   {
+      backgroundValidation = v;
+   }
+
+   /**
+    * Get the background validation interval
+    * @return The value in milliseconds
+    */
+   public long getBackgroundValidationMillis()
+   {
+      return backgroundValidationMillis;
+   }
+
+   /**
+    * Set the background validation interval
+    * @param v The value in milliseconds
+    */
+   public void setBackgroundValidationMillis(long v)
+   {
+      if (v > 0)
+         backgroundValidationMillis = v;
+   }
+
+   /**
+    * Get the idle timeout; 0 disables the idle timeout
+    * @return The value in milliseconds
+    */
+   public long getIdleTimeout()
+   {
+      return idleTimeout;
+   }
+
+   /**
+    * Set the idle timeout
+    * @param v The value in milliseconds
+    */
+   public void setIdleTimeout(long v)
+   {
+      if (v >= 0)
+         idleTimeout = v;
+   }
+
+   /**
+    * Get the maximum lifetime of a connection; 0 disables the maximum lifetime
+    * @return The value in milliseconds
+    */
+   public long getMaxLifetime()
+   {
+      return maxLifetime;
+   }
+
+   /**
+    * Set the maximum lifetime of a connection
+    * @param v The value in milliseconds
+    */
+   public void setMaxLifetime(long v)
+   {
+      if (v >= 0)
+         maxLifetime = v;
+   }
+
+   /**
+    * Is thread affinity enabled
+    * @return The value
+    */
+   public boolean isThreadAffinity()
+   {
+      return threadAffinity;
+   }
+
+   /**
+    * Set thread affinity
+    * @param v The value
+    */
+   public void setThreadAffinity(boolean v)
+   {
+      threadAffinity = v;
+   }
+
+   /**
+    * Is lazy association enabled
+    * @return The value
+    */
+   public boolean isLazyAssociation()
+   {
+      return lazyAssociation;
+   }
+
+   /**
+    * Set lazy association
+    * @param v The value
+    */
+   public void setLazyAssociation(boolean v)
+   {
+      lazyAssociation = v;
+   }
+
+   /**
+    * Is the wait policy fair. A fair pool hands out connections in the order the
+    * threads asked for them. Otherwise a thread takes a free connection even if
+    * other threads are waiting, which gives more throughput
+    * @return The value
+    */
+   public boolean isFair()
+   {
+      return fair;
+   }
+
+   /**
+    * Set the wait policy
+    * @param v True for a fair policy, false for a barging policy
+    */
+   public void setFair(boolean v)
+   {
+      fair = v;
+   }
+
+   /**
+    * Get the leak threshold; 0 disables leak detection
+    * @return The value in milliseconds
+    */
+   public long getLeakThreshold()
+   {
+      return leakThreshold;
+   }
+
+   /**
+    * Set the leak threshold
+    * @param v The value in milliseconds
+    */
+   public void setLeakThreshold(long v)
+   {
+      if (v >= 0)
+         leakThreshold = v;
+   }
+
+   /**
+    * Get the leak sample rate. The stack of the borrow site is captured for one in
+    * this many borrows, and for every borrow while a leak without one is outstanding
+    * @return The value
+    */
+   public int getLeakSampleRate()
+   {
+      return leakSampleRate;
+   }
+
+   /**
+    * Set the leak sample rate
+    * @param v The value; 1 captures every borrow site
+    */
+   public void setLeakSampleRate(int v)
+   {
+      if (v > 0)
+         leakSampleRate = v;
+   }
+
+   /**
+    * Get the flush strategy applied when a connection reports an error
+    * @return The value
+    */
+   public FlushStrategy getFlushStrategy()
+   {
+      return flushStrategy;
+   }
+
+   /**
+    * Set the flush strategy
+    * @param v The value
+    */
+   public void setFlushStrategy(FlushStrategy v)
+   {
+      if (v != null)
+         flushStrategy = v;
+   }
+
+   /**
+    * Get the file of the warm start profile. The pool saves its size, peak usage and
+    * distribution over the ConnectionRequestInfo instances to the file at shutdown, and
+    * is prefilled to the saved profile when it is created. The ConnectionRequestInfo
+    * instances are only saved as digests, so their connections are prefilled once each
+    * is first requested
+    * @return The value, or <code>null</code> if warm start is disabled
+    */
+   public String getWarmStartFile()
+   {
+      return warmStartFile;
+   }
+
+   /**
+    * Set the file of the warm start profile
+    * @param v The value, or <code>null</code> to disable warm start
+    */
+   public void setWarmStartFile(String v)
+   {
+      warmStartFile = v != null && !v.trim().isEmpty() ? v.trim() : null;
+   }
+
+   /**
+    * Get the number of connections guaranteed to each Subject. The connections are
+    * lent to the other Subjects while they are idle and the pool is exhausted, and go
+    * back to the Subject when it needs them. The guarantee of a Subject which hasn't
+    * borrowed for the idle timeout is released
+    * @return The value
+    */
+   public int getSubjectMinSize()
+   {
+      return subjectMinSize;
+   }
+
+   /**
+    * Set the number of connections guaranteed to each Subject
+    * @param v The value
+    */
+   public void setSubjectMinSize(int v)
+   {
+      if (v >= 0)
+         subjectMinSize = v;
+   }
+
+   /**
+    * Get the maximum number of connections in use by each Subject. A Subject can use the
+    * capacity of the pool which isn't guaranteed to other Subjects up to this maximum
+    * @return The value, or 0 for no maximum
+    */
+   public int getSubjectMaxSize()
+   {
+      return subjectMaxSize;
+   }
+
+   /**
+    * Set the maximum number of connections in use by each Subject
+    * @param v The value
+    */
+   public void setSubjectMaxSize(int v)
+   {
+      if (v >= 0)
+         subjectMaxSize = v;
+   }
+
+   /**
+    * Are the statistics registered with the platform MBeanServer, under the name
+    * org.ironjacamar:type=PoolStatistics,name=&lt;the quoted pool name&gt;
+    * @return The value
+    */
+   public boolean isJmx()
+   {
+      return jmx;
+   }
+
+   /**
+    * Set the registration of the statistics with the platform MBeanServer
+    * @param v The value
+    */
+   public void setJmx(boolean v)
+   {
+      jmx = v;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String toString()
+   {
+      StringBuilder sb = new StringBuilder();
+
+      sb.append("PoolConfiguration@").append(Integer.toHexString(System.identityHashCode(this)));
+      sb.append("[minSize=").append(minSize);
+      sb.append(" maxSize=").append(maxSize);
+      sb.append(" blockingTimeout=").append(blockingTimeout);
+      sb.append(" prefill=").append(prefill);
+      sb.append(" autoscale=").append(autoscale);
+      sb.append(" autoscaleInterval=").append(autoscaleInterval);
+      sb.append(" backgroundValidation=").append(backgroundValidation);
+      sb.append(" backgroundValidationMillis=").append(backgroundValidationMillis);
+      sb.append(" idleTimeout=").append(idleTimeout);
+      sb.append(" maxLifetime=").append(maxLifetime);
+      sb.append(" threadAffinity=").append(threadAffinity);
+      sb.append(" lazyAssociation=").append(lazyAssociation);
+      sb.append(" fair=").append(fair);
+      sb.append(" leakThreshold=").append(leakThreshold);
+      sb.append(" leakSampleRate=").append(leakSampleRate);
+      sb.append(" flushStrategy=").append(flushStrategy);
+      sb.append(" warmStartFile=").append(warmStartFile);
+      sb.append(" subjectMinSize=").append(subjectMinSize);
+      sb.append(" subjectMaxSize=").append(subjectMaxSize);
+      sb.append(" jmx=").append(jmx);
+      sb.append("]");
+
+      return sb.toString();
+   }
+}
@@ -0,0 +1,107 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.api.connectionmanager.pool;
+
+import org.ironjacamar.core.api.util.LatencyHistogram;
+
+import javax.management.MXBean;
+
+/**
+ * The statistics of a pool. The interface is an MXBean, so the statistics can be
+ * registered with an MBeanServer as they are
+ */
+@MXBean
+public interface PoolStatistics
+{
+   /**
+    * Get the number of times a connection was passed to matchManagedConnections
+    * @return The value
+    */
+   public long getMatchCount();
+
+   /**
+    * Get the number of times matchManagedConnections didn't match the connection
+    * @return The value
+    */
+   public long getMatchFailedCount();
+
+   /**
+    * Get the number of requests served without calling matchManagedConnections,
+    * because there were no idle connections with the same credential, or the
+    * connection was handed out through the thread affinity cache
+    * @return The value
+    */
+   public long getMatchSkippedCount();
+
+   /**
+    * Get the number of requests served through the thread affinity cache
+    * @return The value
+    */
+   public long getAffinityHitCount();
+
+   /**
+    * Get the number of credential partitions of the idle connections
+    * @return The value
+    */
+   public int getPartitionCount();
+
+   /**
+    * Get the number of connections reported as leaked
+    * @return The value
+    */
+   public long getLeakCount();
+
+   /**
+    * Get the maximum number of connections in use at the same time
+    * @return The value
+    */
+   public int getMaxUsedCount();
+
+   /**
+    * Get the histogram of the time taken to obtain a connection from the pool
+    * @return The value
+    */
+   public LatencyHistogram getWaitTime();
+
+   /**
+    * Get the histogram of the time connections are held by the application
+    * @return The value
+    */
+   public LatencyHistogram getHoldTime();
+
+   /**
+    * Get the histogram of the time taken by createManagedConnection
+    * @return The value
+    */
+   public LatencyHistogram getCreateTime();
+
+   /**
+    * Get the histogram of the time taken by the destroy of a managed connection
+    * @return The value
+    */
+   public LatencyHistogram getDestroyTime();
+
+   /**
+    * Clear the statistics
+    */
+   public void clear();
+}
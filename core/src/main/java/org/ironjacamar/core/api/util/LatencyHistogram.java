@@ -0,0 +1,78 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.api.util;
+
+/**
+ * A snapshot of a latency histogram. The values are in nanoseconds, and are exact
+ * to within 12.5% of the value
+ */
+public interface LatencyHistogram
+{
+   /**
+    * Get the number of recorded values
+    * @return The value
+    */
+   public long getCount();
+
+   /**
+    * Get the mean of the recorded values
+    * @return The value
+    */
+   public long getMean();
+
+   /**
+    * Get the maximum recorded value
+    * @return The value
+    */
+   public long getMax();
+
+   /**
+    * Get the median
+    * @return The value
+    */
+   public long getP50();
+
+   /**
+    * Get the 90th percentile
+    * @return The value
+    */
+   public long getP90();
+
+   /**
+    * Get the 99th percentile
+    * @return The value
+    */
+   public long getP99();
+
+   /**
+    * Get the 99.9th percentile
+    * @return The value
+    */
+   public long getP999();
+
+   /**
+    * Get the value below which a percentage of the recorded values fall
+    * @param percentile The percentile, between 0 and 100
+    * @return The value, or 0 if nothing is recorded
+    */
+   public long valueAtPercentile(double percentile);
+}
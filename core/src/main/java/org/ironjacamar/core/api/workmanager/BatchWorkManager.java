@@ -0,0 +1,66 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ironjacamar.core.api.workmanager;
+
+import java.util.Collection;
+
+import javax.resource.spi.work.ExecutionContext;
+import javax.resource.spi.work.Work;
+import javax.resource.spi.work.WorkException;
+import javax.resource.spi.work.WorkListener;
+
+/**
+ * A work manager which schedules a batch of work in a single call.
+ *
+ * A resource adapter which reads many messages at once, like frames from a socket,
+ * schedules them together, so the admission, the queue accounting and the hand-off to
+ * the threads are paid once per batch instead of once per work instance. Each work
+ * instance is still accepted, started and completed on its own, and the work listener
+ * gets the events of every work instance. A resource adapter finds the extension with
+ * <code>instanceof</code> on the work manager of its BootstrapContext.
+ */
+public interface BatchWorkManager extends javax.resource.spi.work.WorkManager
+{
+   /**
+    * Schedule a batch of work, as scheduleWork does for each work instance
+    * @param work The work
+    * @return The number of accepted work instances
+    * @exception WorkException Thrown if no work is accepted
+    * @see #scheduleBatch(Collection, long, ExecutionContext, WorkListener)
+    */
+   public int scheduleBatch(Collection<? extends Work> work) throws WorkException;
+
+   /**
+    * Schedule a batch of work, as scheduleWork does for each work instance. The work is
+    * accepted in the iteration order of the collection as far as the queue has room; the
+    * work instances beyond it are rejected, and the work listener is notified
+    * @param work The work
+    * @param startTimeout The start timeout of each work instance in milliseconds
+    * @param execContext The execution context of each work instance, or <code>null</code>
+    * @param workListener The work listener of each work instance, or <code>null</code>
+    * @return The number of accepted work instances
+    * @exception WorkException Thrown if no work is accepted, or if the collection
+    *            contains <code>null</code>, in which case no work is accepted
+    */
+   public int scheduleBatch(Collection<? extends Work> work, long startTimeout, ExecutionContext execContext,
+                            WorkListener workListener)
+      throws WorkException;
+}
@@ -0,0 +1,75 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.api.workmanager;
+
+import org.ironjacamar.core.api.util.LatencyHistogram;
+
+/**
+ * The IronJacamar work manager
+ */
+public interface WorkManager extends BatchWorkManager
+{
+   /**
+    * The hint of the priority of a work instance, from Thread.MIN_PRIORITY to
+    * Thread.MAX_PRIORITY, as a Number or a String. Work with a priority above
+    * Thread.NORM_PRIORITY runs before the queued work with a lower priority; work
+    * with a lower priority runs as work without the hint
+    */
+   public static final String PRIORITY_HINT = "org.ironjacamar.Priority";
+
+   /**
+    * Get the name
+    * @return The value
+    */
+   public String getName();
+
+   /**
+    * Get the configuration
+    * @return The value
+    */
+   public WorkManagerConfiguration getConfiguration();
+
+   /**
+    * Get the number of accepted work instances which haven't started yet
+    * @return The value
+    */
+   public int getQueuedCount();
+
+   /**
+    * Get the number of work instances which are running
+    * @return The value
+    */
+   public int getActiveCount();
+
+   /**
+    * Get the histogram of the time between the passing of the start timeout of a work
+    * instance and its rejection with WorkException.START_TIMED_OUT
+    * @return The value
+    */
+   public LatencyHistogram getStartTimeoutLatency();
+
+   /**
+    * Shutdown the work manager. New work is rejected, and the accepted work
+    * is still executed
+    */
+   public void shutdown();
+}
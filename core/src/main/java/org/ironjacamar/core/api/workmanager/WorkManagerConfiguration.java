@@ -0,0 +1,175 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.api.workmanager;
+
+/**
+ * The work manager configuration
+ */
+public class WorkManagerConfiguration
+{
+   /** The number of worker threads */
+   private int parallelism;
+
+   /** The maximum number of accepted work instances which haven't started, or 0 for no limit */
+   private int maxQueued;
+
+   /** The maximum number of running long-running work instances, or 0 for no limit */
+   private int maxLongRunning;
+
+   /** Run each work instance on its own virtual thread */
+   private boolean virtualThreads;
+
+   /** The maximum number of work instances running on virtual threads, or 0 for no limit */
+   private int maxConcurrency;
+
+   /**
+    * Constructor
+    */
+   public WorkManagerConfiguration()
+   {
+      parallelism = Runtime.getRuntime().availableProcessors();
+      maxQueued = 0;
+      maxLongRunning = 0;
+      virtualThreads = false;
+      maxConcurrency = 0;
+   }
+
+   /**
+    * Get the number of worker threads
+    * @return The value
+    */
+   public int getParallelism()
+   {
+      return parallelism;
+   }
+
+   /**
+    * Set the number of worker threads
+    * @param v The value
+    */
+   public void setParallelism(int v)
+   {
+      if (v > 0)
+         parallelism = v;
+   }
+
+   /**
+    * Get the maximum number of accepted work instances which haven't started
+    * @return The value; 0 for no limit
+    */
+   public int getMaxQueued()
+   {
+      return maxQueued;
+   }
+
+   /**
+    * Set the maximum number of accepted work instances which haven't started. Work
+    * submitted beyond it is rejected
+    * @param v The value; 0 for no limit
+    */
+   public void setMaxQueued(int v)
+   {
+      if (v >= 0)
+         maxQueued = v;
+   }
+
+   /**
+    * Get the maximum number of running long-running work instances
+    * @return The value; 0 for no limit
+    */
+   public int getMaxLongRunning()
+   {
+      return maxLongRunning;
+   }
+
+   /**
+    * Set the maximum number of running long-running work instances. Work with the
+    * HintsContext.LONGRUNNING_HINT runs on threads of its own, and is rejected when
+    * the maximum is reached
+    * @param v The value; 0 for no limit
+    */
+   public void setMaxLongRunning(int v)
+   {
+      if (v >= 0)
+         maxLongRunning = v;
+   }
+
+   /**
+    * Does each work instance run on its own virtual thread
+    * @return The value
+    */
+   public boolean isVirtualThreads()
+   {
+      return virtualThreads;
+   }
+
+   /**
+    * Set if each work instance runs on its own virtual thread, instead of on the worker
+    * threads. The parallelism doesn't apply then; the maximum concurrency caps the
+    * number of running work instances. Platform threads are used by a runtime without
+    * virtual threads
+    * @param v The value
+    */
+   public void setVirtualThreads(boolean v)
+   {
+      virtualThreads = v;
+   }
+
+   /**
+    * Get the maximum number of work instances running on virtual threads
+    * @return The value; 0 for no limit
+    */
+   public int getMaxConcurrency()
+   {
+      return maxConcurrency;
+   }
+
+   /**
+    * Set the maximum number of work instances running on virtual threads. The others
+    * wait for their turn on their own virtual thread
+    * @param v The value; 0 for no limit
+    */
+   public void setMaxConcurrency(int v)
+   {
+      if (v >= 0)
+         maxConcurrency = v;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String toString()
+   {
+      StringBuilder sb = new StringBuilder();
+
+      sb.append("WorkManagerConfiguration@").append(Integer.toHexString(System.identityHashCode(this)));
+      sb.append("[parallelism=").append(parallelism);
+      sb.append(" maxQueued=").append(maxQueued);
+      sb.append(" maxLongRunning=").append(maxLongRunning);
+      sb.append(" virtualThreads=").append(virtualThreads);
+      sb.append(" maxConcurrency=").append(maxConcurrency);
+      sb.append("]");
+
+      return sb.toString();
+   }
+}
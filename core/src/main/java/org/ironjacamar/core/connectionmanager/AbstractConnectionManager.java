@@ -0,0 +1,218 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager;
+
+import org.ironjacamar.core.CoreBundle;
+import org.ironjacamar.core.api.connectionmanager.ConnectionManager;
+import org.ironjacamar.core.api.connectionmanager.pool.Pool;
+import org.ironjacamar.core.api.connectionmanager.pool.PoolConfiguration;
+import org.ironjacamar.core.connectionmanager.pool.ConcurrentPool;
+import org.ironjacamar.core.connectionmanager.pool.ConnectionListener;
+import org.ironjacamar.core.util.FlightRecorderEvent;
+
+import javax.resource.ResourceException;
+import javax.resource.spi.ConnectionRequestInfo;
+import javax.resource.spi.LazyAssociatableConnectionManager;
+import javax.resource.spi.ManagedConnectionFactory;
+import javax.security.auth.Subject;
+
+import org.jboss.logging.Messages;
+
+/**
+ * The base class for all connection manager implementations
+ */
+public abstract class AbstractConnectionManager implements ConnectionManager, LazyAssociatableConnectionManager
+{
+   /** Serial version uid */
+   private static final long serialVersionUID = 1L;
+
+   /** The bundle */
+   private static CoreBundle bundle = Messages.getBundle(CoreBundle.class);
+
+   /** The managed connection factory */
+   protected final transient ManagedConnectionFactory mcf;
+
+   /** The pool */
+   protected final transient ConcurrentPool pool;
+
+   /**
+    * Constructor
+    * @param name The name of the pool
+    * @param mcf The managed connection factory
+    * @param pc The pool configuration
+    */
+   protected AbstractConnectionManager(String name, ManagedConnectionFactory mcf, PoolConfiguration pc)
+   {
+      this.mcf = mcf;
+      this.pool = new ConcurrentPool(name, this, mcf, pc);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public Pool getPool()
+   {
+      return pool;
+   }
+
+   /**
+    * Get the managed connection factory
+    * @return The value
+    */
+   public ManagedConnectionFactory getManagedConnectionFactory()
+   {
+      return mcf;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public Object allocateConnection(ManagedConnectionFactory mcf, ConnectionRequestInfo cri)
+      throws ResourceException
+   {
+      Object event = FlightRecorderEvent.ALLOCATE.begin();
+      long waitTime = 0L;
+      try
+      {
+         Credential credential = new Credential(getSubject(), cri);
+         ConnectionListener cl = getConnectionListener(credential);
+         waitTime = cl.getWaitTime();
+
+         Object connection = allocateConnection(cl, credential);
+         FlightRecorderEvent.ALLOCATE.end(event, pool.getName(), waitTime, FlightRecorderEvent.SUCCESS);
+         return connection;
+      }
+      catch (ResourceException re)
+      {
+         FlightRecorderEvent.ALLOCATE.end(event, pool.getName(), waitTime, FlightRecorderEvent.outcome(re));
+         throw re;
+      }
+      catch (RuntimeException re)
+      {
+         FlightRecorderEvent.ALLOCATE.end(event, pool.getName(), waitTime, FlightRecorderEvent.outcome(re));
+         throw re;
+      }
+   }
+
+   /**
+    * Allocate a connection handle
+    * @param cl The connection listener
+    * @param credential The credential
+    * @return The connection handle
+    * @exception ResourceException Thrown if a connection can't be obtained
+    */
+   private Object allocateConnection(ConnectionListener cl, Credential credential) throws ResourceException
+   {
+      ConnectionRequestInfo cri = credential.getConnectionRequestInfo();
+
+      Object connection = null;
+      try
+      {
+         connection = cl.getManagedConnection().getConnection(credential.getSubject(), cri);
+      }
+      catch (Throwable t)
+      {
+         returnConnectionListener(cl, true);
+         throw new ResourceException(bundle.unableToGetConnectionHandle(cl.getManagedConnection()), t);
+      }
+
+      cl.addConnection(connection);
+      return connection;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void associateConnection(Object connection, ManagedConnectionFactory mcf, ConnectionRequestInfo cri)
+      throws ResourceException
+   {
+      Credential credential = new Credential(getSubject(), cri);
+      ConnectionListener cl = getConnectionListener(credential);
+
+      try
+      {
+         cl.getManagedConnection().associateConnection(connection);
+      }
+      catch (Throwable t)
+      {
+         returnConnectionListener(cl, true);
+         throw new ResourceException(bundle.unableToAssociateConnectionHandle(cl.getManagedConnection()), t);
+      }
+
+      cl.addConnection(connection);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void inactiveConnectionClosed(Object connection, ManagedConnectionFactory mcf)
+   {
+      // A dissociated handle isn't tracked by the pool
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public boolean dissociate(Object connection) throws ResourceException
+   {
+      return pool.dissociate(connection);
+   }
+
+   /**
+    * Get a connection listener
+    * @param credential The credential
+    * @return The connection listener
+    * @exception ResourceException Thrown if a connection can't be obtained
+    */
+   protected ConnectionListener getConnectionListener(Credential credential) throws ResourceException
+   {
+      return pool.getConnectionListener(credential);
+   }
+
+   /**
+    * Return a connection listener
+    * @param cl The connection listener
+    * @param kill Should the connection be destroyed
+    */
+   public void returnConnectionListener(ConnectionListener cl, boolean kill)
+   {
+      pool.returnConnectionListener(cl, kill);
+   }
+
+   /**
+    * Get the subject for a connection request. Without a security domain
+    * the resource adapter authenticates from the ConnectionRequestInfo
+    * @return The subject, or <code>null</code>
+    */
+   protected Subject getSubject()
+   {
+      return null;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void shutdown()
+   {
+      pool.shutdown();
+   }
+}
@@ -0,0 +1,123 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager;
+
+import org.ironjacamar.core.api.connectionmanager.ConnectionManager;
+import org.ironjacamar.core.api.connectionmanager.pool.PoolConfiguration;
+
+import javax.resource.ConnectionFactoryDefinition;
+import javax.resource.spi.ManagedConnectionFactory;
+import javax.transaction.TransactionManager;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * The connection manager factory
+ */
+public class ConnectionManagerFactory
+{
+   /**
+    * Private constructor
+    */
+   private ConnectionManagerFactory()
+   {
+   }
+
+   /**
+    * Create a connection manager
+    * @param name The name of the pool
+    * @param mcf The managed connection factory
+    * @param pc The pool configuration
+    * @return The connection manager
+    */
+   public static ConnectionManager createConnectionManager(String name, ManagedConnectionFactory mcf,
+                                                           PoolConfiguration pc)
+   {
+      return createConnectionManager(name, mcf, pc, null);
+   }
+
+   /**
+    * Create a connection manager
+    * @param name The name of the pool
+    * @param mcf The managed connection factory
+    * @param pc The pool configuration
+    * @param tm The transaction manager, or <code>null</code> for no transaction support
+    * @return The connection manager
+    */
+   public static ConnectionManager createConnectionManager(String name, ManagedConnectionFactory mcf,
+                                                           PoolConfiguration pc, TransactionManager tm)
+   {
+      return createConnectionManager(name, mcf, pc, tm, null);
+   }
+
+   /**
+    * Create a connection manager. The connections are tracked by transaction when a
+    * transaction synchronization registry, like the one of the BootstrapContext, is given
+    * @param name The name of the pool
+    * @param mcf The managed connection factory
+    * @param pc The pool configuration
+    * @param tm The transaction manager, or <code>null</code> for no transaction support
+    * @param tsr The transaction synchronization registry, or <code>null</code>
+    * @return The connection manager
+    */
+   public static ConnectionManager createConnectionManager(String name, ManagedConnectionFactory mcf,
+                                                           PoolConfiguration pc, TransactionManager tm,
+                                                           TransactionSynchronizationRegistry tsr)
+   {
+      ConnectionManager cm = null;
+
+      if (tm != null)
+      {
+         cm = new TxConnectionManager(name, mcf, pc, tm, tsr);
+      }
+      else
+      {
+         cm = new NoTransactionConnectionManager(name, mcf, pc);
+      }
+
+      if (pc.isPrefill() || pc.getWarmStartFile() != null)
+         cm.getPool().prefill();
+
+      return cm;
+   }
+
+   /**
+    * Create a pool configuration from a connection factory definition. The pool
+    * is prefilled when the definition specifies a minimum pool size
+    * @param cfd The connection factory definition
+    * @return The pool configuration
+    */
+   public static PoolConfiguration createPoolConfiguration(ConnectionFactoryDefinition cfd)
+   {
+      PoolConfiguration pc = new PoolConfiguration();
+
+      if (cfd.maxPoolSize() > 0)
+         pc.setMaxSize(cfd.maxPoolSize());
+
+      if (cfd.minPoolSize() > 0)
+      {
+         pc.setMinSize(Math.min(cfd.minPoolSize(), pc.getMaxSize()));
+         pc.setPrefill(true);
+      }
+
+      return pc;
+   }
+}
@@ -0,0 +1,197 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager;
+
+import java.security.AccessController;
+import java.security.Principal;
+import java.security.PrivilegedAction;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.resource.spi.ConnectionRequestInfo;
+import javax.resource.spi.security.PasswordCredential;
+import javax.security.auth.Subject;
+
+/**
+ * The credential of a connection request, which is the combination of
+ * the Subject and the ConnectionRequestInfo.
+ *
+ * Two credentials are equal when the principals and password credentials of
+ * their subjects are equal, and their ConnectionRequestInfo instances are equal,
+ * so a credential can be used as the key of the idle connections in a pool
+ */
+public class Credential
+{
+   /** The subject */
+   private final Subject subject;
+
+   /** The connection request info */
+   private final ConnectionRequestInfo cri;
+
+   /** The principals of the subject */
+   private final Set<Principal> principals;
+
+   /** The password credentials of the subject */
+   private final Set<PasswordCredential> passwordCredentials;
+
+   /** The hash code */
+   private final int hash;
+
+   /**
+    * Constructor
+    * @param subject The subject
+    * @param cri The connection request info
+    */
+   public Credential(Subject subject, ConnectionRequestInfo cri)
+   {
+      this.subject = subject;
+      this.cri = cri;
+
+      if (subject != null)
+      {
+         this.principals = new HashSet<Principal>(subject.getPrincipals());
+         this.passwordCredentials = getPasswordCredentials(subject);
+      }
+      else
+      {
+         this.principals = Collections.emptySet();
+         this.passwordCredentials = Collections.emptySet();
+      }
+
+      int result = 31;
+      result += 7 * principals.hashCode();
+      result += 7 * passwordCredentials.hashCode();
+      result += 7 * (cri != null ? cri.hashCode() : 7);
+      this.hash = result;
+   }
+
+   /**
+    * Get the subject
+    * @return The value
+    */
+   public Subject getSubject()
+   {
+      return subject;
+   }
+
+   /**
+    * Get the connection request info
+    * @return The value
+    */
+   public ConnectionRequestInfo getConnectionRequestInfo()
+   {
+      return cri;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int hashCode()
+   {
+      return hash;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public boolean equals(Object o)
+   {
+      if (this == o)
+         return true;
+
+      if (o == null || !(o instanceof Credential))
+         return false;
+
+      Credential other = (Credential)o;
+
+      if (hash != other.hash)
+         return false;
+
+      if (subject != other.subject)
+      {
+         if (!principals.equals(other.principals))
+            return false;
+
+         if (!passwordCredentials.equals(other.passwordCredentials))
+            return false;
+      }
+
+      return cri != null ? cri.equals(other.cri) : other.cri == null;
+   }
+
+   /**
+    * Get the user name of the subject, which is the user name of its first password
+    * credential, or the name of its first principal
+    * @return The value, or <code>null</code> if there is no subject or it has no user name
+    */
+   public String getUserName()
+   {
+      for (PasswordCredential pc : passwordCredentials)
+      {
+         if (pc.getUserName() != null)
+            return pc.getUserName();
+      }
+
+      for (Principal p : principals)
+      {
+         if (p.getName() != null)
+            return p.getName();
+      }
+
+      return null;
+   }
+
+   /**
+    * Get the password credentials of a subject
+    * @param subject The subject
+    * @return The value
+    */
+   private static Set<PasswordCredential> getPasswordCredentials(final Subject subject)
+   {
+      return AccessController.doPrivileged(new PrivilegedAction<Set<PasswordCredential>>()
+      {
+         public Set<PasswordCredential> run()
+         {
+            return subject.getPrivateCredentials(PasswordCredential.class);
+         }
+      });
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String toString()
+   {
+      StringBuilder sb = new StringBuilder();
+
+      sb.append("Credential@").append(Integer.toHexString(System.identityHashCode(this)));
+      sb.append("[subject=").append(subject != null ? Integer.toHexString(System.identityHashCode(subject)) : null);
+      sb.append(" cri=").append(cri);
+      sb.append("]");
+
+      return sb.toString();
+   }
+}
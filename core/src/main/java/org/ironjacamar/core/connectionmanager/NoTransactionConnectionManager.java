@@ -0,0 +1,46 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager;
+
+import org.ironjacamar.core.api.connectionmanager.pool.PoolConfiguration;
+
+import javax.resource.spi.ManagedConnectionFactory;
+
+/**
+ * A connection manager for resource adapters without transaction support
+ */
+public class NoTransactionConnectionManager extends AbstractConnectionManager
+{
+   /** Serial version uid */
+   private static final long serialVersionUID = 1L;
+
+   /**
+    * Constructor
+    * @param name The name of the pool
+    * @param mcf The managed connection factory
+    * @param pc The pool configuration
+    */
+   public NoTransactionConnectionManager(String name, ManagedConnectionFactory mcf, PoolConfiguration pc)
+   {
+      super(name, mcf, pc);
+   }
+}
@@ -0,0 +1,382 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager;
+
+import org.ironjacamar.core.CoreBundle;
+import org.ironjacamar.core.CoreLogger;
+import org.ironjacamar.core.api.connectionmanager.pool.PoolConfiguration;
+import org.ironjacamar.core.connectionmanager.pool.ConnectionListener;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.resource.ResourceException;
+import javax.resource.spi.LazyEnlistableConnectionManager;
+import javax.resource.spi.LazyEnlistableManagedConnection;
+import javax.resource.spi.ManagedConnection;
+import javax.resource.spi.ManagedConnectionFactory;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.Transaction;
+import javax.transaction.TransactionManager;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.jboss.logging.Logger;
+import org.jboss.logging.Messages;
+
+/**
+ * A connection manager for resource adapters with XA transaction support.
+ *
+ * A connection obtained inside a transaction is enlisted in it, and stays with the
+ * transaction until it completes, even if all its handles are closed before. A
+ * LazyEnlistableManagedConnection is only enlisted when the resource adapter calls
+ * lazyEnlist, so a connection which isn't used in the transaction doesn't take part
+ * in the two-phase commit.
+ *
+ * With a TransactionSynchronizationRegistry the connections are tracked by transaction:
+ * the enlisted connection is registered as a resource of the transaction, and further
+ * connections requested with the same credential inside the transaction are handles
+ * onto it, so the resource manager is only enlisted once
+ */
+public class TxConnectionManager extends AbstractConnectionManager implements LazyEnlistableConnectionManager
+{
+   /** Serial version uid */
+   private static final long serialVersionUID = 1L;
+
+   /** The logger */
+   private static CoreLogger log = Logger.getMessageLogger(CoreLogger.class, TxConnectionManager.class.getName());
+
+   /** The bundle */
+   private static CoreBundle bundle = Messages.getBundle(CoreBundle.class);
+
+   /** The transaction manager */
+   private final transient TransactionManager tm;
+
+   /** The transaction synchronization registry, or <code>null</code> if not tracking by transaction */
+   private final transient TransactionSynchronizationRegistry tsr;
+
+   /** The connection listeners of the lazy enlistable connections in use */
+   private final transient ConcurrentHashMap<ManagedConnection, ConnectionListener> lazy;
+
+   /**
+    * Constructor
+    * @param name The name of the pool
+    * @param mcf The managed connection factory
+    * @param pc The pool configuration
+    * @param tm The transaction manager
+    */
+   public TxConnectionManager(String name, ManagedConnectionFactory mcf, PoolConfiguration pc,
+                              TransactionManager tm)
+   {
+      this(name, mcf, pc, tm, null);
+   }
+
+   /**
+    * Constructor
+    * @param name The name of the pool
+    * @param mcf The managed connection factory
+    * @param pc The pool configuration
+    * @param tm The transaction manager
+    * @param tsr The transaction synchronization registry, or <code>null</code> to not track
+    *            the connections by transaction
+    */
+   public TxConnectionManager(String name, ManagedConnectionFactory mcf, PoolConfiguration pc,
+                              TransactionManager tm, TransactionSynchronizationRegistry tsr)
+   {
+      super(name, mcf, pc);
+      this.tm = tm;
+      this.tsr = tsr;
+      this.lazy = new ConcurrentHashMap<ManagedConnection, ConnectionListener>();
+   }
+
+   /**
+    * Get the transaction manager
+    * @return The value
+    */
+   public TransactionManager getTransactionManager()
+   {
+      return tm;
+   }
+
+   /**
+    * Get the transaction synchronization registry
+    * @return The value, or <code>null</code> if the connections aren't tracked by transaction
+    */
+   public TransactionSynchronizationRegistry getTransactionSynchronizationRegistry()
+   {
+      return tsr;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   protected ConnectionListener getConnectionListener(Credential credential) throws ResourceException
+   {
+      if (tsr != null && tsr.getTransactionKey() != null && tsr.getTransactionStatus() == Status.STATUS_ACTIVE)
+      {
+         ConnectionListener cl = (ConnectionListener)tsr.getResource(new TrackKey(credential));
+         if (cl != null && cl.getTransaction() != null && cl.getState() == ConnectionListener.IN_USE)
+            return cl;
+      }
+
+      ConnectionListener cl = super.getConnectionListener(credential);
+      ManagedConnection mc = cl.getManagedConnection();
+
+      if (mc instanceof LazyEnlistableManagedConnection)
+      {
+         lazy.put(mc, cl);
+         return cl;
+      }
+
+      try
+      {
+         Transaction tx = getTransaction();
+         if (tx != null)
+            enlist(cl, tx);
+      }
+      catch (ResourceException re)
+      {
+         returnConnectionListener(cl, true);
+         throw re;
+      }
+
+      return cl;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void returnConnectionListener(ConnectionListener cl, boolean kill)
+   {
+      Transaction tx = cl.getTransaction();
+      if (tx != null)
+      {
+         // Returned when the transaction completes
+         if (!kill)
+            return;
+
+         try
+         {
+            tx.setRollbackOnly();
+         }
+         catch (Throwable t)
+         {
+            log.setRollbackOnlyFailed(tx, t);
+         }
+      }
+
+      lazy.remove(cl.getManagedConnection(), cl);
+      super.returnConnectionListener(cl, kill);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void lazyEnlist(ManagedConnection mc) throws ResourceException
+   {
+      ConnectionListener cl = lazy.get(mc);
+      if (cl == null)
+         throw new ResourceException(bundle.unknownManagedConnection(mc));
+
+      if (cl.getTransaction() != null)
+         return;
+
+      Transaction tx = getTransaction();
+      if (tx != null)
+         enlist(cl, tx);
+   }
+
+   /**
+    * Get the transaction of the current thread
+    * @return The transaction, or <code>null</code> if there is none
+    * @exception ResourceException Thrown if the transaction isn't active
+    */
+   private Transaction getTransaction() throws ResourceException
+   {
+      try
+      {
+         Transaction tx = tm.getTransaction();
+         if (tx == null)
+            return null;
+
+         if (tx.getStatus() != Status.STATUS_ACTIVE)
+            throw new ResourceException(bundle.transactionNotActive(tx));
+
+         return tx;
+      }
+      catch (ResourceException re)
+      {
+         throw re;
+      }
+      catch (Exception e)
+      {
+         throw new ResourceException(e);
+      }
+   }
+
+   /**
+    * Enlist a connection in a transaction, unless it is enlisted already
+    * @param cl The connection listener
+    * @param tx The transaction
+    * @exception ResourceException Thrown if the connection can't be enlisted
+    */
+   private void enlist(ConnectionListener cl, Transaction tx) throws ResourceException
+   {
+      if (!cl.changeTransaction(null, tx))
+         return;
+
+      boolean enlisted = false;
+      try
+      {
+         enlisted = tx.enlistResource(cl.getManagedConnection().getXAResource());
+         if (enlisted)
+            tx.registerSynchronization(new TransactionSynchronization(cl, tx));
+      }
+      catch (Exception e)
+      {
+         cl.changeTransaction(tx, null);
+         throw new ResourceException(bundle.unableToEnlist(cl.getManagedConnection()), e);
+      }
+
+      if (!enlisted)
+      {
+         cl.changeTransaction(tx, null);
+         throw new ResourceException(bundle.unableToEnlist(cl.getManagedConnection()));
+      }
+
+      if (tsr != null)
+         track(cl);
+   }
+
+   /**
+    * Register an enlisted connection as a resource of the current transaction, unless
+    * another connection with the same credential is registered already
+    * @param cl The connection listener
+    */
+   private void track(ConnectionListener cl)
+   {
+      try
+      {
+         TrackKey key = new TrackKey(cl.getCredential());
+         if (tsr.getResource(key) == null)
+            tsr.putResource(key, cl);
+      }
+      catch (IllegalStateException ise)
+      {
+         // The transaction isn't on this thread; the connection is just not shared
+      }
+   }
+
+   /**
+    * The key of a tracked connection in the transaction synchronization registry,
+    * which is the connection manager and the credential
+    */
+   private class TrackKey
+   {
+      /** The credential */
+      private final Credential credential;
+
+      /**
+       * Constructor
+       * @param credential The credential
+       */
+      TrackKey(Credential credential)
+      {
+         this.credential = credential;
+      }
+
+      /**
+       * Get the connection manager
+       * @return The value
+       */
+      private TxConnectionManager getConnectionManager()
+      {
+         return TxConnectionManager.this;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public int hashCode()
+      {
+         return 31 * System.identityHashCode(TxConnectionManager.this) + credential.hashCode();
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public boolean equals(Object o)
+      {
+         if (o == this)
+            return true;
+
+         if (!(o instanceof TrackKey))
+            return false;
+
+         TrackKey other = (TrackKey)o;
+         return other.getConnectionManager() == TxConnectionManager.this && credential.equals(other.credential);
+      }
+   }
+
+   /**
+    * Releases a connection from its transaction, and returns it to the pool
+    * if the application closed all its handles
+    */
+   private class TransactionSynchronization implements Synchronization
+   {
+      /** The connection listener */
+      private final ConnectionListener cl;
+
+      /** The transaction */
+      private final Transaction tx;
+
+      /**
+       * Constructor
+       * @param cl The connection listener
+       * @param tx The transaction
+       */
+      TransactionSynchronization(ConnectionListener cl, Transaction tx)
+      {
+         this.cl = cl;
+         this.tx = tx;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void beforeCompletion()
+      {
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void afterCompletion(int status)
+      {
+         if (cl.changeTransaction(tx, null) && cl.getConnectionCount() == 0)
+            returnConnectionListener(cl, false);
+      }
+   }
+}
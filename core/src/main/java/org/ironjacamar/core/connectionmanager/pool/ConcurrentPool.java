@@ -0,0 +1,2003 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.pool;
+
+import org.ironjacamar.core.CoreBundle;
+import org.ironjacamar.core.CoreLogger;
+import org.ironjacamar.core.api.connectionmanager.pool.FlushStrategy;
+import org.ironjacamar.core.api.connectionmanager.pool.Pool;
+import org.ironjacamar.core.api.connectionmanager.pool.PoolConfiguration;
+import org.ironjacamar.core.api.connectionmanager.pool.PoolStatistics;
+import org.ironjacamar.core.connectionmanager.AbstractConnectionManager;
+import org.ironjacamar.core.connectionmanager.Credential;
+import org.ironjacamar.core.util.FlightRecorderEvent;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.management.ObjectName;
+import javax.resource.ResourceException;
+import javax.resource.spi.DissociatableManagedConnection;
+import javax.resource.spi.ManagedConnection;
+import javax.resource.spi.ManagedConnectionFactory;
+import javax.resource.spi.ResourceAllocationException;
+import javax.resource.spi.ValidatingManagedConnectionFactory;
+
+import org.jboss.logging.Logger;
+import org.jboss.logging.Messages;
+
+/**
+ * A connection pool where the borrow and return paths are free of any global monitor.
+ *
+ * Idle connections are partitioned by the credential they were created with, and each
+ * partition is a striped, lock-free free list. A request only offers idle connections of
+ * its own partition to matchManagedConnections, and creates a connection without matching
+ * when the partition is empty. A thread works on the stripe selected by its identifier
+ * and steals from the other stripes when its own is empty. A thread is first offered
+ * the connection it returned last, if its credential is the same, which skips both the
+ * free lists and the matching of the resource adapter. Ownership of a connection is decided by a compare-and-set on its
+ * listener state, and the capacity of the pool is guarded by a semaphore whose
+ * permits represent the connections that can be handed out. The number of permits
+ * is the working size of the pool, which is the maximum size unless the pool is
+ * autoscaled.
+ *
+ * Idle timeout and maximum lifetime are enforced by timeouts on the shared timing wheel
+ * of the pool scheduler, one per connection, instead of a task scanning all connections.
+ * The timeouts are jittered, so connections created together don't retire together.
+ *
+ * With a warm start file the pool saves its profile at shutdown, and prefills to the
+ * saved profile instead of the minimum size when it is created again. The connections
+ * of a ConnectionRequestInfo are prefilled once it is first requested, since the profile
+ * only holds its digest.
+ *
+ * Subject quotas keep a guaranteed number of permits in a reserve for each Subject,
+ * and cap the permits a Subject can hold; the permits which aren't guaranteed are
+ * shared by all Subjects. The free reserve permits are lent out when the pool is empty,
+ * and the quota of a Subject which hasn't borrowed for an idle timeout is evicted.
+ */
+public class ConcurrentPool implements Pool
+{
+   /** The logger */
+   private static CoreLogger log = Logger.getMessageLogger(CoreLogger.class, ConcurrentPool.class.getName());
+
+   /** The bundle */
+   private static CoreBundle bundle = Messages.getBundle(CoreBundle.class);
+
+   /** Maximum number of stripes */
+   private static final int MAX_STRIPES = 64;
+
+   /** The fraction by which the retirement of a connection can be advanced */
+   private static final double JITTER = 0.1;
+
+   /** The name */
+   private final String name;
+
+   /** The connection manager */
+   private final AbstractConnectionManager cm;
+
+   /** The managed connection factory */
+   private final ManagedConnectionFactory mcf;
+
+   /** The configuration */
+   private final PoolConfiguration pc;
+
+   /** The free lists, partitioned by credential */
+   private final ConcurrentHashMap<Credential, FreeList> partitions;
+
+   /** The number of stripes of a free list */
+   private final int stripes;
+
+   /**
+    * The connection listener last returned by each thread. The reference is weak, so the
+    * threads which outlive the pool don't keep it and its class loader reachable
+    */
+   private final ThreadLocal<WeakReference<ConnectionListener>> affinity;
+
+   /** All connection listeners */
+   private final Set<ConnectionListener> listeners;
+
+   /** The number of created connection listeners, including those under creation */
+   private final AtomicInteger size;
+
+   /** The lock of the borrows waiting for a connection in transit */
+   private final ReentrantLock transitLock;
+
+   /** Signalled when a connection becomes idle or the size goes down, while borrows wait */
+   private final Condition transit;
+
+   /** The number of transitions signalled */
+   private final AtomicInteger transitions;
+
+   /** The number of borrows waiting for a connection in transit */
+   private final AtomicInteger transitWaiters;
+
+   /** The permits for handing out connections */
+   private final Permits permits;
+
+   /** The working size */
+   private final AtomicInteger workingSize;
+
+   /** The autoscaler */
+   private final PoolAutoscaler autoscaler;
+
+   /** The number of connections which are scheduled to be filled */
+   private final AtomicInteger filling;
+
+   /** The background validation task */
+   private final ScheduledFuture<?> validation;
+
+   /** The leak detection task */
+   private final ScheduledFuture<?> leakDetection;
+
+   /** Capture every borrow site, while a leak without one is outstanding */
+   private volatile boolean captureAll;
+
+   /** Is a flush after a connection error scheduled */
+   private final AtomicBoolean flushing;
+
+   /** The connection listeners of the connection handles, if lazy association is enabled */
+   private final ConcurrentHashMap<Object, ConnectionListener> associations;
+
+   /** The quotas of the Subjects by user name, if quotas are enabled */
+   private final ConcurrentHashMap<String, SubjectQuota> quotas;
+
+   /** The free reserve permits of all Subject quotas */
+   private final AtomicInteger reserved;
+
+   /** The borrows waiting on the reserve of their Subject quota */
+   private final AtomicInteger reserveWaiters;
+
+   /** The eviction task of the idle Subject quotas */
+   private final ScheduledFuture<?> quotaEviction;
+
+   /** Shutdown */
+   private final AtomicBoolean shutdown;
+
+   /** The statistics */
+   private final PoolStatisticsImpl statistics;
+
+   /** The name the statistics are registered under, or <code>null</code> */
+   private final ObjectName objectName;
+
+   /** The warm start profile loaded at creation, or <code>null</code> */
+   private final WarmStartProfile profile;
+
+   /** The connections of the profile still to create, by ConnectionRequestInfo digest */
+   private final ConcurrentHashMap<String, Integer> warming;
+
+   /**
+    * Constructor
+    * @param name The name
+    * @param cm The connection manager
+    * @param mcf The managed connection factory
+    * @param pc The pool configuration
+    */
+   public ConcurrentPool(String name, AbstractConnectionManager cm, ManagedConnectionFactory mcf,
+                         PoolConfiguration pc)
+   {
+      this.name = name;
+      this.cm = cm;
+      this.mcf = mcf;
+      this.pc = pc;
+
+      this.profile = loadProfile();
+      this.warming = new ConcurrentHashMap<String, Integer>();
+
+      int count = 1;
+      int target = Math.min(Math.min(Runtime.getRuntime().availableProcessors(), pc.getMaxSize()), MAX_STRIPES);
+      while (count < target)
+      {
+         count <<= 1;
+      }
+
+      this.partitions = new ConcurrentHashMap<Credential, FreeList>();
+      this.stripes = count;
+
+      this.affinity = new ThreadLocal<WeakReference<ConnectionListener>>();
+      this.listeners = Collections.newSetFromMap(new ConcurrentHashMap<ConnectionListener, Boolean>());
+      this.size = new AtomicInteger(0);
+      this.transitLock = new ReentrantLock();
+      this.transit = transitLock.newCondition();
+      this.transitions = new AtomicInteger(0);
+      this.transitWaiters = new AtomicInteger(0);
+      if (pc.isAutoscale())
+      {
+         int initial = Math.max(pc.getMinSize(), 1);
+         if (profile != null)
+            initial = Math.max(initial, Math.min(profile.getPeak(), pc.getMaxSize()));
+
+         this.workingSize = new AtomicInteger(initial);
+         this.autoscaler = new PoolAutoscaler(this, pc.getAutoscaleInterval());
+      }
+      else
+      {
+         this.workingSize = new AtomicInteger(pc.getMaxSize());
+         this.autoscaler = null;
+      }
+      this.permits = new Permits(workingSize.get(), pc.isFair());
+      this.filling = new AtomicInteger(0);
+      this.shutdown = new AtomicBoolean(false);
+      this.flushing = new AtomicBoolean(false);
+      this.statistics = new PoolStatisticsImpl(this);
+      this.associations = pc.isLazyAssociation() ? new ConcurrentHashMap<Object, ConnectionListener>() : null;
+      this.quotas = pc.getSubjectMinSize() > 0 || pc.getSubjectMaxSize() > 0 ?
+         new ConcurrentHashMap<String, SubjectQuota>() : null;
+      this.reserved = new AtomicInteger(0);
+      this.reserveWaiters = new AtomicInteger(0);
+
+      if (autoscaler != null)
+         autoscaler.start();
+
+      if (pc.isBackgroundValidation() && mcf instanceof ValidatingManagedConnectionFactory)
+      {
+         this.validation = PoolScheduler.schedule(new Runnable()
+         {
+            public void run()
+            {
+               validate();
+            }
+         }, pc.getBackgroundValidationMillis());
+      }
+      else
+      {
+         this.validation = null;
+      }
+
+      if (pc.getLeakThreshold() > 0)
+      {
+         this.leakDetection = PoolScheduler.schedule(new Runnable()
+         {
+            public void run()
+            {
+               detectLeaks();
+            }
+         }, Math.max(pc.getLeakThreshold() / 2, 100L));
+      }
+      else
+      {
+         this.leakDetection = null;
+      }
+
+      if (quotas != null && pc.getIdleTimeout() > 0)
+      {
+         this.quotaEviction = PoolScheduler.schedule(new Runnable()
+         {
+            public void run()
+            {
+               evictQuotas();
+            }
+         }, pc.getIdleTimeout());
+      }
+      else
+      {
+         this.quotaEviction = null;
+      }
+
+      this.objectName = pc.isJmx() ? registerStatistics() : null;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public String getName()
+   {
+      return name;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public PoolConfiguration getConfiguration()
+   {
+      return pc;
+   }
+
+   /**
+    * Get the connection manager
+    * @return The value
+    */
+   public AbstractConnectionManager getConnectionManager()
+   {
+      return cm;
+   }
+
+   /**
+    * Get the managed connection factory
+    * @return The value
+    */
+   public ManagedConnectionFactory getManagedConnectionFactory()
+   {
+      return mcf;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public int getActiveCount()
+   {
+      return size.get();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public int getWaitingCount()
+   {
+      return permits.getQueueLength();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public int getInUseCount()
+   {
+      return workingSize.get() - permits.availablePermits() - reserved.get();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public int getWorkingSize()
+   {
+      return workingSize.get();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public int getIdleCount()
+   {
+      return Math.max(0, size.get() - getInUseCount());
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public PoolStatistics getStatistics()
+   {
+      return statistics;
+   }
+
+   /**
+    * Get the number of credential partitions
+    * @return The value
+    */
+   int getPartitionCount()
+   {
+      return partitions.size();
+   }
+
+   /**
+    * Get a connection listener
+    * @param credential The credential
+    * @return The connection listener, in the IN_USE state
+    * @exception ResourceException Thrown if a connection can't be obtained
+    */
+   public ConnectionListener getConnectionListener(Credential credential) throws ResourceException
+   {
+      if (shutdown.get())
+         throw new ResourceException(bundle.poolIsShutdown(name));
+
+      long start = System.nanoTime();
+      SubjectQuota quota = quota(credential);
+      long timeout = pc.getBlockingTimeout();
+      int taken = SubjectQuota.NONE;
+      SubjectQuota lender = null;
+
+      if (quota != null)
+      {
+         try
+         {
+            acquireMax(quota, timeout);
+         }
+         catch (ResourceException re)
+         {
+            quota.exit();
+            throw re;
+         }
+
+         timeout -= TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+         taken = quota.take();
+         if (taken == SubjectQuota.GUARANTEED)
+            lender = quota;
+      }
+
+      try
+      {
+         if (taken == SubjectQuota.NONE)
+            lender = borrow(quota, Math.max(timeout, 0L));
+      }
+      catch (ResourceException re)
+      {
+         if (quota != null)
+         {
+            quota.releaseMax();
+            quota.exit();
+         }
+         throw re;
+      }
+
+      int inUse = getInUseCount();
+      statistics.updateMaxUsedCount(inUse);
+
+      if (autoscaler != null)
+         autoscaler.recordInUse(inUse);
+
+      try
+      {
+         ConnectionListener cl = findOrCreate(credential, start);
+
+         // The borrow time is the last used timestamp; the stack is only captured for a sample
+         if (leakDetection != null)
+            cl.borrowed(captureAll || ThreadLocalRandom.current().nextInt(pc.getLeakSampleRate()) == 0 ?
+                        new Throwable() : null);
+
+         if (quotas != null)
+            cl.setPermit(quota, lender);
+
+         long now = System.nanoTime();
+         cl.setBorrowTime(now);
+         cl.setWaitTime(now - start);
+         statistics.recordWaitTime(now - start);
+
+         return cl;
+      }
+      catch (ResourceException re)
+      {
+         releasePermit(quota, lender);
+         throw re;
+      }
+      catch (RuntimeException re)
+      {
+         releasePermit(quota, lender);
+         throw re;
+      }
+      catch (Error e)
+      {
+         releasePermit(quota, lender);
+         throw e;
+      }
+   }
+
+   /**
+    * Get the quota of the Subject of a credential, and start a borrow on it
+    * @param credential The credential
+    * @return The quota, or <code>null</code> if quotas are disabled or the credential has no user name
+    */
+   private SubjectQuota quota(Credential credential)
+   {
+      if (quotas == null)
+         return null;
+
+      String user = credential.getUserName();
+      if (user == null)
+         return null;
+
+      for (;;)
+      {
+         SubjectQuota quota = quotas.get(user);
+         if (quota == null)
+         {
+            quota = new SubjectQuota(user, pc.getSubjectMinSize(), pc.getSubjectMaxSize(), reserved);
+            SubjectQuota existing = quotas.putIfAbsent(user, quota);
+            if (existing != null)
+            {
+               quota = existing;
+            }
+            else
+            {
+               quota.claim(permits);
+            }
+         }
+
+         if (quota.enter())
+            return quota;
+
+         // Evicted meanwhile
+         quotas.remove(user, quota);
+      }
+   }
+
+   /**
+    * Get the quota of a Subject
+    * @param user The user name of the Subject
+    * @return The quota, or <code>null</code> if the Subject has none
+    */
+   SubjectQuota getQuota(String user)
+   {
+      return quotas != null ? quotas.get(user) : null;
+   }
+
+   /**
+    * Wait for a permit of the maximum of a Subject quota
+    * @param quota The quota
+    * @param timeout The timeout in milliseconds
+    * @exception ResourceException Thrown if no permit is obtained within the timeout
+    */
+   private void acquireMax(SubjectQuota quota, long timeout) throws ResourceException
+   {
+      long start = System.nanoTime();
+      try
+      {
+         if (!quota.acquireMax(timeout))
+            throw new ResourceAllocationException(bundle.noManagedConnectionsAvailable(timeout));
+      }
+      catch (InterruptedException ie)
+      {
+         Thread.currentThread().interrupt();
+         throw new ResourceAllocationException(bundle.interruptedWhileRequestingPermit(
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+      }
+   }
+
+   /**
+    * Take a permit for a borrow which didn't get one from its own reserve: a free pool
+    * permit, else a free reserve permit of another Subject. Otherwise a borrow with a
+    * guarantee waits on its own reserve, and any other borrow waits for a pool permit
+    * @param quota The Subject quota of the borrow, or <code>null</code>
+    * @param timeout The timeout in milliseconds
+    * @return The Subject quota whose reserve the permit was taken from, or <code>null</code>
+    *         for a pool permit
+    * @exception ResourceException Thrown if no permit is obtained within the timeout
+    */
+   private SubjectQuota borrow(SubjectQuota quota, long timeout) throws ResourceException
+   {
+      if (tryAcquire())
+         return null;
+
+      if (quotas != null)
+      {
+         for (SubjectQuota other : quotas.values())
+         {
+            if (other != quota)
+            {
+               int taken = other.lend();
+               if (taken == SubjectQuota.GUARANTEED)
+                  return other;
+
+               if (taken == SubjectQuota.POOL)
+                  return null;
+            }
+         }
+      }
+
+      if (quota != null && quota.hasGuarantee())
+         return awaitReserve(quota, timeout);
+
+      acquire(timeout);
+      return null;
+   }
+
+   /**
+    * Wait on the reserve of a Subject quota. The reserve gets its lent permits back as the
+    * loans are returned, and pool permits released while the borrow waits are handed over
+    * @param quota The Subject quota
+    * @param timeout The timeout in milliseconds
+    * @return The Subject quota if a guaranteed permit was taken, or <code>null</code> for a pool permit
+    * @exception ResourceException Thrown if no permit is obtained within the timeout
+    */
+   private SubjectQuota awaitReserve(SubjectQuota quota, long timeout) throws ResourceException
+   {
+      long start = System.nanoTime();
+      quota.startWait();
+      reserveWaiters.incrementAndGet();
+      try
+      {
+         // A permit released before the waiter was counted is in the pool
+         if (autoscaler != null && grow(1) > 0 && tryAcquire())
+            return null;
+
+         if (tryAcquire())
+            return null;
+
+         int taken = quota.take(timeout);
+         if (taken == SubjectQuota.NONE)
+            throw new ResourceAllocationException(bundle.noManagedConnectionsAvailable(pc.getBlockingTimeout()));
+
+         return taken == SubjectQuota.GUARANTEED ? quota : null;
+      }
+      catch (InterruptedException ie)
+      {
+         Thread.currentThread().interrupt();
+         throw new ResourceAllocationException(bundle.interruptedWhileRequestingPermit(
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+      }
+      finally
+      {
+         reserveWaiters.decrementAndGet();
+
+         // Pool permits handed over after the last waiter gave up go back to the pool
+         if (quota.stopWait())
+         {
+            while (quota.takeExtra())
+            {
+               release();
+            }
+         }
+
+         if (autoscaler != null)
+            autoscaler.recordWait(System.nanoTime() - start);
+      }
+   }
+
+   /**
+    * Release a permit where it was taken from, and end the borrow on the Subject quota
+    * @param quota The Subject quota, or <code>null</code>
+    * @param lender The Subject quota whose reserve the permit was taken from, or <code>null</code>
+    */
+   private void releasePermit(SubjectQuota quota, SubjectQuota lender)
+   {
+      if (lender == null)
+      {
+         if (quota == null || !quota.repay())
+            release();
+      }
+      else if (lender == quota)
+      {
+         quota.returnReserve();
+      }
+      else if (!lender.returnLoan())
+      {
+         release();
+      }
+      else if (lender.isEvicted())
+      {
+         releaseReserve(lender);
+      }
+
+      if (quota != null)
+      {
+         quota.releaseMax();
+         quota.exit();
+      }
+   }
+
+   /**
+    * Release a pool permit. While borrows wait on their reserve, the permit is handed over
+    * to a reserve which is short of its guarantee, or to any of them if no borrow waits
+    * for a pool permit
+    */
+   private void release()
+   {
+      if (reserveWaiters.get() > 0)
+      {
+         boolean queued = permits.hasQueuedThreads();
+         for (SubjectQuota quota : quotas.values())
+         {
+            if (quota.handOver(queued))
+               return;
+         }
+      }
+
+      permits.release();
+   }
+
+   /**
+    * Release the free reserve permits of an evicted Subject quota to the pool
+    * @param quota The Subject quota
+    */
+   private void releaseReserve(SubjectQuota quota)
+   {
+      int free = quota.drain();
+      for (int i = 0; i < free; i++)
+      {
+         release();
+      }
+   }
+
+   /**
+    * Evict the quotas of the Subjects which haven't borrowed since the last run, and
+    * release their reserves to the pool. Permits which are lent out go back to the pool
+    * when the loans are returned
+    */
+   void evictQuotas()
+   {
+      for (SubjectQuota quota : quotas.values())
+      {
+         if (quota.evict())
+         {
+            quotas.remove(quota.getName(), quota);
+            releaseReserve(quota);
+         }
+      }
+   }
+
+   /**
+    * Take a permit, if one is available. A fair pool only hands out a permit
+    * when no other thread is waiting for one
+    * @return True if a permit is taken, otherwise false
+    * @exception ResourceException Thrown if the thread is interrupted
+    */
+   private boolean tryAcquire() throws ResourceException
+   {
+      if (!pc.isFair())
+         return permits.tryAcquire();
+
+      try
+      {
+         return permits.tryAcquire(0L, TimeUnit.NANOSECONDS);
+      }
+      catch (InterruptedException ie)
+      {
+         Thread.currentThread().interrupt();
+         throw new ResourceAllocationException(bundle.interruptedWhileRequestingPermit(0L));
+      }
+   }
+
+   /**
+    * Wait for a permit. The thread parks in the semaphore, and doesn't hold any
+    * monitor, so a virtual thread doesn't pin its carrier thread while it waits.
+    * An autoscaled pool grows its working size by one first, if it is below the maximum size
+    * @param timeout The timeout in milliseconds
+    * @exception ResourceException Thrown if no permit is obtained within the timeout
+    */
+   private void acquire(long timeout) throws ResourceException
+   {
+      long start = System.nanoTime();
+      try
+      {
+         if (autoscaler != null && grow(1) > 0 && tryAcquire())
+            return;
+
+         if (!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS))
+            throw new ResourceAllocationException(bundle.noManagedConnectionsAvailable(pc.getBlockingTimeout()));
+      }
+      catch (InterruptedException ie)
+      {
+         Thread.currentThread().interrupt();
+         throw new ResourceAllocationException(bundle.interruptedWhileRequestingPermit(
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+      }
+      finally
+      {
+         if (autoscaler != null)
+            autoscaler.recordWait(System.nanoTime() - start);
+      }
+   }
+
+   /**
+    * Report the connections which have been in use longer than the leak threshold,
+    * once per borrow. While there is a leak whose borrow site wasn't sampled, every
+    * borrow site is captured
+    */
+   void detectLeaks()
+   {
+      long now = System.currentTimeMillis();
+      long threshold = now - pc.getLeakThreshold();
+      boolean unexplained = false;
+
+      for (ConnectionListener cl : listeners)
+      {
+         long lastUsed = cl.getLastUsed();
+         if (cl.getState() == ConnectionListener.IN_USE && lastUsed <= threshold)
+         {
+            Throwable site = cl.getBorrowSite();
+            if (site == null)
+               unexplained = true;
+
+            if (cl.reportLeak())
+            {
+               statistics.deltaLeakCount();
+               log.connectionLeak(name, cl.getManagedConnection(), now - lastUsed, cl.getBorrower(), site);
+            }
+         }
+      }
+
+      captureAll = unexplained;
+   }
+
+   /**
+    * Is every borrow site captured
+    * @return The value
+    */
+   boolean isCaptureAll()
+   {
+      return captureAll;
+   }
+
+   /**
+    * Grow the working size of the pool
+    * @param delta The number of connections to add
+    * @return The number of connections added
+    */
+   int grow(int delta)
+   {
+      for (;;)
+      {
+         int current = workingSize.get();
+         int update = Math.min(current + delta, pc.getMaxSize());
+         if (update <= current)
+            return 0;
+
+         if (workingSize.compareAndSet(current, update))
+         {
+            permits.release(update - current);
+            return update - current;
+         }
+      }
+   }
+
+   /**
+    * Shrink the working size of the pool, and destroy the idle connections above it
+    * @param delta The number of connections to remove
+    * @return The number of connections removed
+    */
+   int shrink(int delta)
+   {
+      int removed = 0;
+      for (;;)
+      {
+         int current = workingSize.get();
+         int update = Math.max(current - delta, Math.max(pc.getMinSize(), 1));
+         if (update >= current)
+            break;
+
+         if (workingSize.compareAndSet(current, update))
+         {
+            permits.reduce(current - update);
+            removed = current - update;
+            break;
+         }
+      }
+
+      int stripe = stripe();
+      while (size.get() > workingSize.get())
+      {
+         ConnectionListener victim = steal(stripe);
+         if (victim == null)
+            break;
+
+         victim.setState(ConnectionListener.DESTROY);
+         destroy(victim);
+      }
+
+      return removed;
+   }
+
+   /**
+    * Get the autoscaler
+    * @return The value, or <code>null</code> if the pool isn't autoscaled
+    */
+   PoolAutoscaler getAutoscaler()
+   {
+      return autoscaler;
+   }
+
+   /**
+    * Return a connection listener
+    * @param cl The connection listener
+    * @param kill Should the connection be destroyed
+    */
+   public void returnConnectionListener(ConnectionListener cl, boolean kill)
+   {
+      if (cl.changeState(ConnectionListener.FREE, ConnectionListener.DESTROY))
+      {
+         // An idle connection reported an error
+         destroy(cl);
+         return;
+      }
+
+      if (!cl.changeState(ConnectionListener.IN_USE, ConnectionListener.RETURNING))
+         return;
+
+      finishReturn(cl, kill);
+   }
+
+   /**
+    * Dissociate the managed connection of a connection handle from all its handles,
+    * and return it to the pool
+    * @param connection The connection handle
+    * @return True if the handle was dissociated, otherwise false
+    * @exception ResourceException Thrown if the managed connection fails to dissociate
+    */
+   public boolean dissociate(Object connection) throws ResourceException
+   {
+      if (associations == null)
+         return false;
+
+      ConnectionListener cl = associations.get(connection);
+      // A connection enlisted in a transaction stays with its handles until the transaction completes
+      if (cl == null || !(cl.getManagedConnection() instanceof DissociatableManagedConnection) ||
+          cl.getTransaction() != null || !cl.changeState(ConnectionListener.IN_USE, ConnectionListener.RETURNING))
+         return false;
+
+      try
+      {
+         ((DissociatableManagedConnection)cl.getManagedConnection()).dissociateConnections();
+      }
+      catch (ResourceException re)
+      {
+         finishReturn(cl, true);
+         throw re;
+      }
+
+      finishReturn(cl, false);
+      return true;
+   }
+
+   /**
+    * Register a connection handle of a connection listener
+    * @param connection The connection handle
+    * @param cl The connection listener
+    */
+   void associated(Object connection, ConnectionListener cl)
+   {
+      if (associations != null)
+         associations.put(connection, cl);
+   }
+
+   /**
+    * Unregister a connection handle of a connection listener
+    * @param connection The connection handle
+    * @param cl The connection listener
+    */
+   void dissociated(Object connection, ConnectionListener cl)
+   {
+      if (associations != null)
+         associations.remove(connection, cl);
+   }
+
+   /**
+    * Release a connection listener in the RETURNING state, and its permit
+    * @param cl The connection listener
+    * @param kill Should the connection be destroyed
+    */
+   private void finishReturn(ConnectionListener cl, boolean kill)
+   {
+      statistics.recordHoldTime(System.nanoTime() - cl.getBorrowTime());
+      cl.clearConnections();
+
+      if (!kill)
+      {
+         Object event = FlightRecorderEvent.CLEANUP.begin();
+         try
+         {
+            cl.getManagedConnection().cleanup();
+            FlightRecorderEvent.CLEANUP.end(event, name, 0L, FlightRecorderEvent.SUCCESS);
+         }
+         catch (Throwable t)
+         {
+            FlightRecorderEvent.CLEANUP.end(event, name, 0L, FlightRecorderEvent.outcome(t));
+            log.cleanupFailed(cl.getManagedConnection(), t);
+            kill = true;
+         }
+      }
+
+      if (kill || shutdown.get() || cl.isRetired())
+      {
+         cl.setState(ConnectionListener.DESTROY);
+         destroy(cl);
+      }
+      else
+      {
+         cl.changeState(ConnectionListener.RETURNING, ConnectionListener.FREE);
+         partition(cl.getCredential()).offer(cl, stripe(), true);
+         transited();
+
+         if (pc.isThreadAffinity())
+            affinity.set(cl.getReference());
+      }
+
+      releasePermit(cl.getQuota(), cl.getLender());
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void flush()
+   {
+      flush(FlushStrategy.IDLE_CONNECTIONS);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void flush(FlushStrategy strategy)
+   {
+      if (strategy == FlushStrategy.FAILING_CONNECTION_ONLY)
+         return;
+
+      // A snapshot, so the connections created by the refill aren't flushed
+      for (ConnectionListener cl : new ArrayList<ConnectionListener>(listeners))
+      {
+         if (cl.changeState(ConnectionListener.FREE, ConnectionListener.DESTROY))
+         {
+            destroy(cl);
+         }
+         else if (strategy == FlushStrategy.GRACEFULLY)
+         {
+            // Destroyed when returned, or by the retire checks if it is being returned
+            cl.retire();
+         }
+      }
+   }
+
+   /**
+    * A connection reported an error, and has been destroyed. The flush strategy
+    * is applied to the rest of the pool on the pool filler, so the thread which
+    * got the error doesn't wait on the destruction of other connections, and errors
+    * reported together lead to a single flush
+    */
+   void connectionErrorOccurred()
+   {
+      if (pc.getFlushStrategy() == FlushStrategy.FAILING_CONNECTION_ONLY || shutdown.get() ||
+          !flushing.compareAndSet(false, true))
+         return;
+
+      PoolFiller.execute(new Runnable()
+      {
+         public void run()
+         {
+            flushing.set(false);
+            flush(pc.getFlushStrategy());
+         }
+      });
+   }
+
+   /**
+    * Validate the idle connections which haven't been used or validated within the
+    * background validation interval. The connections are claimed, passed to
+    * ValidatingManagedConnectionFactory.getInvalidConnections in a single batch, and
+    * the invalid connections are destroyed
+    */
+   void validate()
+   {
+      if (shutdown.get() || !(mcf instanceof ValidatingManagedConnectionFactory))
+         return;
+
+      long now = System.currentTimeMillis();
+      long threshold = now - pc.getBackgroundValidationMillis();
+      Map<ManagedConnection, ConnectionListener> batch = null;
+
+      for (ConnectionListener cl : listeners)
+      {
+         if (cl.getLastUsed() <= threshold && cl.getLastValidated() <= threshold &&
+             cl.changeState(ConnectionListener.FREE, ConnectionListener.VALIDATION))
+         {
+            if (batch == null)
+               batch = new IdentityHashMap<ManagedConnection, ConnectionListener>();
+
+            batch.put(cl.getManagedConnection(), cl);
+         }
+      }
+
+      if (batch == null)
+         return;
+
+      Set<?> invalid = null;
+      try
+      {
+         invalid = ((ValidatingManagedConnectionFactory)mcf).getInvalidConnections(
+            new HashSet<ManagedConnection>(batch.keySet()));
+      }
+      catch (Throwable t)
+      {
+         log.validationFailed(name, t);
+      }
+
+      int stripe = stripe();
+      for (ConnectionListener cl : batch.values())
+      {
+         if ((invalid != null && invalid.contains(cl.getManagedConnection())) || shutdown.get() ||
+             cl.isRetired())
+         {
+            cl.setState(ConnectionListener.DESTROY);
+            destroy(cl);
+         }
+         else
+         {
+            cl.setLastValidated(now);
+            cl.setState(ConnectionListener.FREE);
+            partition(cl.getCredential()).offer(cl, stripe, false);
+         }
+      }
+
+      transited();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void prefill()
+   {
+      if (profile != null)
+         warm();
+
+      fill();
+   }
+
+   /**
+    * Register the statistics with the platform MBeanServer
+    * @return The name, or <code>null</code> if the statistics aren't registered
+    */
+   private ObjectName registerStatistics()
+   {
+      try
+      {
+         ObjectName on = new ObjectName("org.ironjacamar:type=PoolStatistics,name=" + ObjectName.quote(name));
+         ManagementFactory.getPlatformMBeanServer().registerMBean(statistics, on);
+         return on;
+      }
+      catch (Exception e)
+      {
+         log.registerStatisticsFailed(name, e);
+         return null;
+      }
+   }
+
+   /**
+    * Unregister the statistics from the platform MBeanServer
+    */
+   private void unregisterStatistics()
+   {
+      try
+      {
+         ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+      }
+      catch (Exception e)
+      {
+         log.unregisterStatisticsFailed(name, e);
+      }
+   }
+
+   /**
+    * Get the warm start profile loaded at creation
+    * @return The value, or <code>null</code>
+    */
+   WarmStartProfile getWarmStartProfile()
+   {
+      return profile;
+   }
+
+   /**
+    * Load the warm start profile
+    * @return The profile, or <code>null</code> if there is none
+    */
+   private WarmStartProfile loadProfile()
+   {
+      if (pc.getWarmStartFile() == null)
+         return null;
+
+      try
+      {
+         return WarmStartProfile.load(new File(pc.getWarmStartFile()));
+      }
+      catch (IOException ioe)
+      {
+         log.warmStartLoadFailed(name, pc.getWarmStartFile(), ioe);
+         return null;
+      }
+   }
+
+   /**
+    * Save the warm start profile
+    */
+   private void saveProfile()
+   {
+      try
+      {
+         WarmStartProfile.create(size.get(), statistics.getMaxUsedCount(), listeners)
+            .save(new File(pc.getWarmStartFile()));
+      }
+      catch (IOException ioe)
+      {
+         log.warmStartSaveFailed(name, pc.getWarmStartFile(), ioe);
+      }
+   }
+
+   /**
+    * Schedule the creation of the connections of the warm start profile, up to the size
+    * of the profile. The connections without a ConnectionRequestInfo are created in
+    * parallel by the pool filler, the others once their ConnectionRequestInfo is
+    * requested; the WarmTask stops at the working size of the pool
+    */
+   private void warm()
+   {
+      for (Map.Entry<String, Integer> entry : profile.getDistribution().entrySet())
+      {
+         if (entry.getKey() != null)
+            warming.put(entry.getKey(), entry.getValue());
+      }
+
+      Integer anonymous = profile.getDistribution().get(null);
+      if (anonymous == null)
+         return;
+
+      int count = Math.min(anonymous.intValue(), Math.min(profile.getSize(), workingSize.get()) - size.get());
+      Credential credential = new Credential(null, null);
+      for (int i = 0; i < count; i++)
+      {
+         PoolFiller.execute(new WarmTask(credential));
+      }
+   }
+
+   /**
+    * Schedule the creation of the connections of the warm start profile of a credential,
+    * after the first connection of the credential was created for a request
+    * @param credential The credential
+    */
+   private void warm(Credential credential)
+   {
+      if (warming.isEmpty() || credential.getSubject() != null || credential.getConnectionRequestInfo() == null)
+         return;
+
+      String digest = profile.digest(credential.getConnectionRequestInfo());
+      Integer count = digest != null ? warming.remove(digest) : null;
+      if (count == null)
+         return;
+
+      for (int i = 1; i < count.intValue(); i++)
+      {
+         PoolFiller.execute(new WarmTask(credential));
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void shutdown()
+   {
+      if (shutdown.compareAndSet(false, true))
+      {
+         if (autoscaler != null)
+            autoscaler.stop();
+
+         if (validation != null)
+            validation.cancel(false);
+
+         if (leakDetection != null)
+            leakDetection.cancel(false);
+
+         if (quotaEviction != null)
+            quotaEviction.cancel(false);
+
+         if (pc.getWarmStartFile() != null)
+            saveProfile();
+
+         if (objectName != null)
+            unregisterStatistics();
+
+         flush();
+      }
+   }
+
+   /**
+    * Is the pool shutdown
+    * @return The value
+    */
+   public boolean isShutdown()
+   {
+      return shutdown.get();
+   }
+
+   /**
+    * Find a matching idle connection listener, or create a new one. When the pool is at
+    * its size and no idle connection is left, the connections are in transit, like under
+    * creation, validation or return, and the borrow waits for one of them until the
+    * blocking timeout
+    * @param credential The credential
+    * @param start The start of the borrow, from System.nanoTime
+    * @return The connection listener
+    * @exception ResourceException Thrown in case of an error
+    */
+   private ConnectionListener findOrCreate(Credential credential, long start) throws ResourceException
+   {
+      int stripe = stripe();
+
+      if (pc.isThreadAffinity())
+      {
+         WeakReference<ConnectionListener> reference = affinity.get();
+         ConnectionListener cl = reference != null ? reference.get() : null;
+         if (cl != null)
+         {
+            if (credential.equals(cl.getCredential()) &&
+                cl.changeState(ConnectionListener.FREE, ConnectionListener.IN_USE))
+            {
+               if (!cl.isRetired())
+               {
+                  statistics.deltaAffinityHitCount();
+                  statistics.deltaMatchSkippedCount();
+                  return cl;
+               }
+
+               cl.setState(ConnectionListener.DESTROY);
+               destroy(cl);
+            }
+
+            affinity.set(null);
+         }
+      }
+
+      FreeList partition = partitions.get(credential);
+      boolean waiting = false;
+      try
+      {
+         for (;;)
+         {
+            int seen = transitions.get();
+            if (partition == null)
+               partition = partitions.get(credential);
+
+            List<ConnectionListener> unmatched = null;
+            boolean skipped = true;
+            ConnectionListener cl = partition != null ? partition.poll(stripe) : null;
+
+            while (cl != null)
+            {
+               if (cl.changeState(ConnectionListener.FREE, ConnectionListener.IN_USE))
+               {
+                  skipped = false;
+
+                  if (cl.isRetired())
+                  {
+                     cl.setState(ConnectionListener.DESTROY);
+                     destroy(cl);
+                  }
+                  else if (matches(cl, credential))
+                  {
+                     release(unmatched, stripe);
+                     return cl;
+                  }
+
+                  if (cl.getState() == ConnectionListener.IN_USE)
+                  {
+                     if (unmatched == null)
+                        unmatched = new ArrayList<ConnectionListener>(1);
+
+                     unmatched.add(cl);
+                  }
+               }
+
+               cl = partition.poll(stripe);
+            }
+
+            if (reserve())
+            {
+               release(unmatched, stripe);
+
+               if (skipped)
+                  statistics.deltaMatchSkippedCount();
+
+               ConnectionListener created = create(credential);
+               warm(credential);
+               return created;
+            }
+
+            // Make room by destroying an idle connection which doesn't match
+            ConnectionListener victim = null;
+            if (unmatched != null)
+            {
+               victim = unmatched.remove(unmatched.size() - 1);
+            }
+            else
+            {
+               victim = steal(stripe);
+            }
+
+            if (victim != null)
+            {
+               victim.setState(ConnectionListener.DESTROY);
+               destroy(victim);
+               release(unmatched, stripe);
+            }
+            else if (waiting)
+            {
+               awaitTransit(seen, start);
+            }
+            else
+            {
+               // Scan once more after registering, so a transition in between isn't missed
+               transitWaiters.incrementAndGet();
+               waiting = true;
+            }
+         }
+      }
+      finally
+      {
+         if (waiting)
+            transitWaiters.decrementAndGet();
+      }
+   }
+
+   /**
+    * Wait until a connection becomes idle or the size goes down
+    * @param seen The number of transitions seen before the free lists were scanned
+    * @param start The start of the borrow, from System.nanoTime
+    * @exception ResourceException Thrown if the blocking timeout passes first
+    */
+   private void awaitTransit(int seen, long start) throws ResourceException
+   {
+      long deadline = start + TimeUnit.MILLISECONDS.toNanos(pc.getBlockingTimeout());
+      transitLock.lock();
+      try
+      {
+         while (transitions.get() == seen)
+         {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0L)
+               throw new ResourceAllocationException(bundle.noManagedConnectionsAvailable(pc.getBlockingTimeout()));
+
+            transit.awaitNanos(remaining);
+         }
+      }
+      catch (InterruptedException ie)
+      {
+         Thread.currentThread().interrupt();
+         throw new ResourceAllocationException(bundle.interruptedWhileRequestingPermit(
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+      }
+      finally
+      {
+         transitLock.unlock();
+      }
+   }
+
+   /**
+    * Wake the borrows waiting for a connection in transit, after a connection became
+    * idle or the size went down
+    */
+   private void transited()
+   {
+      if (transitWaiters.get() > 0)
+      {
+         transitLock.lock();
+         try
+         {
+            transitions.incrementAndGet();
+            transit.signalAll();
+         }
+         finally
+         {
+            transitLock.unlock();
+         }
+      }
+   }
+
+   /**
+    * Claim an idle connection listener from any partition
+    * @param stripe The stripe
+    * @return The connection listener, in the IN_USE state, or <code>null</code>
+    */
+   private ConnectionListener steal(int stripe)
+   {
+      for (FreeList partition : partitions.values())
+      {
+         ConnectionListener cl = partition.poll(stripe);
+         while (cl != null)
+         {
+            if (cl.changeState(ConnectionListener.FREE, ConnectionListener.IN_USE))
+               return cl;
+
+            cl = partition.poll(stripe);
+         }
+      }
+
+      return null;
+   }
+
+   /**
+    * Get the partition of a credential
+    * @param credential The credential
+    * @return The free list
+    */
+   private FreeList partition(Credential credential)
+   {
+      FreeList partition = partitions.get(credential);
+      if (partition == null)
+      {
+         partition = new FreeList(stripes);
+         FreeList existing = partitions.putIfAbsent(credential, partition);
+         if (existing != null)
+            partition = existing;
+      }
+      return partition;
+   }
+
+   /**
+    * Does the connection listener match the credential
+    * @param cl The connection listener, in the IN_USE state
+    * @param credential The credential
+    * @return True if matched, otherwise false
+    */
+   private boolean matches(ConnectionListener cl, Credential credential)
+   {
+      Object event = FlightRecorderEvent.MATCH.begin();
+      try
+      {
+         statistics.deltaMatchCount();
+
+         ManagedConnection mc = mcf.matchManagedConnections(Collections.singleton(cl.getManagedConnection()),
+                                                            credential.getSubject(),
+                                                            credential.getConnectionRequestInfo());
+         if (mc != null)
+         {
+            FlightRecorderEvent.MATCH.end(event, name, 0L, FlightRecorderEvent.SUCCESS);
+            return true;
+         }
+
+         FlightRecorderEvent.MATCH.end(event, name, 0L, FlightRecorderEvent.NO_MATCH);
+         statistics.deltaMatchFailedCount();
+         return false;
+      }
+      catch (Throwable t)
+      {
+         FlightRecorderEvent.MATCH.end(event, name, 0L, FlightRecorderEvent.outcome(t));
+         log.matchFailed(cl.getManagedConnection(), t);
+         cl.setState(ConnectionListener.DESTROY);
+         destroy(cl);
+         return false;
+      }
+   }
+
+   /**
+    * Create a connection listener; the caller must have reserved the capacity
+    * @param credential The credential
+    * @return The connection listener, in the IN_USE state
+    * @exception ResourceException Thrown in case of an error
+    */
+   private ConnectionListener create(Credential credential) throws ResourceException
+   {
+      ManagedConnection mc = null;
+      Object event = FlightRecorderEvent.CREATE.begin();
+      long start = System.nanoTime();
+      try
+      {
+         mc = mcf.createManagedConnection(credential.getSubject(), credential.getConnectionRequestInfo());
+         FlightRecorderEvent.CREATE.end(event, name, 0L, FlightRecorderEvent.SUCCESS);
+      }
+      catch (ResourceException re)
+      {
+         FlightRecorderEvent.CREATE.end(event, name, 0L, FlightRecorderEvent.outcome(re));
+         throw re;
+      }
+      catch (RuntimeException re)
+      {
+         FlightRecorderEvent.CREATE.end(event, name, 0L, FlightRecorderEvent.outcome(re));
+         throw re;
+      }
+      finally
+      {
+         if (mc == null)
+         {
+            size.decrementAndGet();
+            transited();
+         }
+      }
+
+      long elapsed = System.nanoTime() - start;
+      statistics.recordCreateTime(elapsed);
+
+      if (autoscaler != null)
+         autoscaler.recordCreate(elapsed);
+
+      ConnectionListener cl = new ConnectionListener(this, mc, credential, ConnectionListener.IN_USE);
+      mc.addConnectionEventListener(cl);
+      listeners.add(cl);
+
+      if (pc.getMaxLifetime() > 0)
+         cl.setLifetimeTimeout(PoolScheduler.getTimingWheel().scheduleAt(new RetireTask(cl),
+                               cl.getCreated() + jitter(pc.getMaxLifetime())));
+
+      if (pc.getIdleTimeout() > 0)
+         new IdleTask(cl, jitter(pc.getIdleTimeout())).schedule(cl.getCreated());
+
+      return cl;
+   }
+
+   /**
+    * Advance a timeout by a random fraction of up to JITTER
+    * @param time The timeout in milliseconds
+    * @return The value
+    */
+   private static long jitter(long time)
+   {
+      return time - (long)(ThreadLocalRandom.current().nextDouble() * JITTER * time);
+   }
+
+   /**
+    * Destroy an idle connection listener away from the timing wheel thread
+    * @param cl The connection listener, in the DESTROY state
+    */
+   private void destroyAsync(final ConnectionListener cl)
+   {
+      PoolFiller.execute(new Runnable()
+      {
+         public void run()
+         {
+            destroy(cl);
+         }
+      });
+   }
+
+   /**
+    * Destroy a connection listener, which must be in the DESTROY state
+    * @param cl The connection listener
+    */
+   private void destroy(ConnectionListener cl)
+   {
+      if (listeners.remove(cl))
+      {
+         size.decrementAndGet();
+         transited();
+
+         if (pc.isPrefill())
+            fill();
+      }
+
+      cl.clearConnections();
+      cl.cancelTimeouts();
+
+      Object event = null;
+      try
+      {
+         cl.getManagedConnection().removeConnectionEventListener(cl);
+
+         event = FlightRecorderEvent.DESTROY.begin();
+         long start = System.nanoTime();
+         cl.getManagedConnection().destroy();
+         statistics.recordDestroyTime(System.nanoTime() - start);
+         FlightRecorderEvent.DESTROY.end(event, name, 0L, FlightRecorderEvent.SUCCESS);
+      }
+      catch (Throwable t)
+      {
+         FlightRecorderEvent.DESTROY.end(event, name, 0L, FlightRecorderEvent.outcome(t));
+         log.destroyFailed(cl.getManagedConnection(), t);
+      }
+      finally
+      {
+         cl.setState(ConnectionListener.DESTROYED);
+      }
+   }
+
+   /**
+    * Schedule the creation of the connections missing to reach the minimum size
+    * of the pool. The connections are created in parallel by the pool filler
+    */
+   private void fill()
+   {
+      for (;;)
+      {
+         if (shutdown.get())
+            return;
+
+         int pending = filling.get();
+         int missing = pc.getMinSize() - size.get() - pending;
+         if (missing <= 0)
+            return;
+
+         if (filling.compareAndSet(pending, pending + missing))
+         {
+            for (int i = 0; i < missing; i++)
+            {
+               PoolFiller.execute(new FillTask());
+            }
+            return;
+         }
+      }
+   }
+
+   /**
+    * Create an idle connection; the caller must have reserved the capacity
+    * @param credential The credential
+    * @exception ResourceException Thrown in case of an error
+    */
+   private void createIdle(Credential credential) throws ResourceException
+   {
+      ConnectionListener cl = create(credential);
+      cl.changeState(ConnectionListener.IN_USE, ConnectionListener.FREE);
+      partition(cl.getCredential()).offer(cl, stripe(), false);
+      transited();
+
+      if (shutdown.get() && cl.changeState(ConnectionListener.FREE, ConnectionListener.DESTROY))
+         destroy(cl);
+   }
+
+   /**
+    * Reserve capacity for a new connection listener
+    * @return True if reserved, otherwise false
+    */
+   private boolean reserve()
+   {
+      for (;;)
+      {
+         int current = size.get();
+         if (current >= workingSize.get())
+            return false;
+
+         if (size.compareAndSet(current, current + 1))
+            return true;
+      }
+   }
+
+   /**
+    * Release unmatched connection listeners back to the free lists
+    * @param unmatched The connection listeners, in the IN_USE state
+    * @param stripe The stripe
+    */
+   private void release(List<ConnectionListener> unmatched, int stripe)
+   {
+      if (unmatched == null)
+         return;
+
+      for (ConnectionListener cl : unmatched)
+      {
+         if (cl.isRetired())
+         {
+            cl.setState(ConnectionListener.DESTROY);
+            destroy(cl);
+         }
+         else
+         {
+            cl.setState(ConnectionListener.FREE);
+            partition(cl.getCredential()).offer(cl, stripe, false);
+         }
+      }
+
+      transited();
+   }
+
+   /**
+    * Get the stripe of the current thread
+    * @return The value
+    */
+   private int stripe()
+   {
+      long id = Thread.currentThread().getId();
+      return (int)(id ^ (id >>> 16)) & (stripes - 1);
+   }
+
+   /**
+    * Retires a connection which has reached its maximum lifetime. An idle connection
+    * is destroyed right away, a connection in use is destroyed when it is returned
+    */
+   private class RetireTask implements Runnable
+   {
+      /** The connection listener */
+      private final ConnectionListener cl;
+
+      /**
+       * Constructor
+       * @param cl The connection listener
+       */
+      RetireTask(ConnectionListener cl)
+      {
+         this.cl = cl;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void run()
+      {
+         cl.retire();
+
+         if (cl.changeState(ConnectionListener.FREE, ConnectionListener.DESTROY))
+            destroyAsync(cl);
+      }
+   }
+
+   /**
+    * Destroys a connection which has been idle for the idle timeout, unless the
+    * pool is at its minimum size. The task reschedules itself for the time the
+    * connection can expire at the earliest, so there is one timeout per connection
+    */
+   private class IdleTask implements Runnable
+   {
+      /** The connection listener */
+      private final ConnectionListener cl;
+
+      /** The idle timeout of the connection */
+      private final long idleTimeout;
+
+      /**
+       * Constructor
+       * @param cl The connection listener
+       * @param idleTimeout The idle timeout in milliseconds
+       */
+      IdleTask(ConnectionListener cl, long idleTimeout)
+      {
+         this.cl = cl;
+         this.idleTimeout = idleTimeout;
+      }
+
+      /**
+       * Schedule the task
+       * @param from The time from which the connection is idle
+       */
+      void schedule(long from)
+      {
+         cl.setIdleTimeout(PoolScheduler.getTimingWheel().scheduleAt(this, from + idleTimeout));
+
+         // The listener may have been destroyed after the task checked it
+         int state = cl.getState();
+         if (state == ConnectionListener.DESTROY || state == ConnectionListener.DESTROYED)
+            cl.cancelTimeouts();
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void run()
+      {
+         int state = cl.getState();
+         if (state == ConnectionListener.DESTROY || state == ConnectionListener.DESTROYED || shutdown.get())
+            return;
+
+         long now = System.currentTimeMillis();
+         long lastUsed = cl.getLastUsed();
+
+         if (state == ConnectionListener.FREE && lastUsed + idleTimeout <= now && size.get() > pc.getMinSize() &&
+             cl.changeState(ConnectionListener.FREE, ConnectionListener.DESTROY))
+         {
+            // The idle tasks run one at a time on the wheel, so the size is reduced here
+            // to keep the next task from destroying below the minimum size
+            if (listeners.remove(cl))
+            {
+               size.decrementAndGet();
+               transited();
+            }
+
+            destroyAsync(cl);
+         }
+         else if (state == ConnectionListener.FREE && lastUsed + idleTimeout > now)
+         {
+            schedule(lastUsed);
+         }
+         else
+         {
+            schedule(now);
+         }
+      }
+   }
+
+   /**
+    * Creates an idle connection, unless the pool has reached its minimum size. The
+    * capacity is reserved before the connection is created, so a borrow which finds the
+    * pool full meanwhile waits for the connection, up to the blocking timeout
+    */
+   private class FillTask implements Runnable
+   {
+      /**
+       * {@inheritDoc}
+       */
+      public void run()
+      {
+         // A reserved connection is counted by the size, so the task stops counting
+         // as pending before it reserves; a concurrent fill may then schedule a task
+         // too many, which finds the minimum size reached
+         filling.decrementAndGet();
+
+         try
+         {
+            if (shutdown.get() || size.get() >= pc.getMinSize() || !reserve())
+               return;
+
+            createIdle(new Credential(null, null));
+         }
+         catch (Throwable t)
+         {
+            log.prefillFailed(name, t);
+         }
+      }
+   }
+
+   /**
+    * Creates an idle connection of the warm start profile, unless the pool is full.
+    * Like the FillTask, the capacity is reserved before the connection is created
+    */
+   private class WarmTask implements Runnable
+   {
+      /** The credential */
+      private final Credential credential;
+
+      /**
+       * Constructor
+       * @param credential The credential
+       */
+      WarmTask(Credential credential)
+      {
+         this.credential = credential;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void run()
+      {
+         try
+         {
+            if (shutdown.get() || !reserve())
+               return;
+
+            createIdle(credential);
+         }
+         catch (Throwable t)
+         {
+            log.prefillFailed(name, t);
+         }
+      }
+   }
+
+   /**
+    * A semaphore whose number of permits can be reduced
+    */
+   private static class Permits extends Semaphore
+   {
+      /** Serial version uid */
+      private static final long serialVersionUID = 1L;
+
+      /**
+       * Constructor
+       * @param permits The number of permits
+       * @param fair Is the semaphore fair
+       */
+      Permits(int permits, boolean fair)
+      {
+         super(permits, fair);
+      }
+
+      /**
+       * Reduce the number of permits
+       * @param reduction The number of permits to remove
+       */
+      void reduce(int reduction)
+      {
+         reducePermits(reduction);
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String toString()
+   {
+      StringBuilder sb = new StringBuilder();
+
+      sb.append("ConcurrentPool@").append(Integer.toHexString(System.identityHashCode(this)));
+      sb.append("[name=").append(name);
+      sb.append(" size=").append(size.get());
+      sb.append(" inUse=").append(getInUseCount());
+      sb.append(" workingSize=").append(workingSize.get());
+      sb.append("]");
+
+      return sb.toString();
+   }
+}
@@ -0,0 +1,595 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.pool;
+
+import org.ironjacamar.core.api.connectionmanager.DirectConnectionEventListener;
+import org.ironjacamar.core.connectionmanager.Credential;
+import org.ironjacamar.core.util.TimingWheel.Timeout;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.resource.spi.ConnectionEvent;
+import javax.resource.spi.ManagedConnection;
+import javax.transaction.Transaction;
+
+/**
+ * A connection listener, which tracks the state of a ManagedConnection
+ * inside the pool. All state changes are done through compare-and-set,
+ * so ownership of a listener is decided without any locks.
+ *
+ * The listener implements DirectConnectionEventListener, so resource adapters
+ * can notify it without creating a ConnectionEvent
+ */
+public class ConnectionListener implements DirectConnectionEventListener
+{
+   /** Free */
+   public static final int FREE = 0;
+
+   /** In use */
+   public static final int IN_USE = 1;
+
+   /** Being returned to the pool */
+   public static final int RETURNING = 2;
+
+   /** Being destroyed */
+   public static final int DESTROY = 3;
+
+   /** Destroyed */
+   public static final int DESTROYED = 4;
+
+   /** Being validated */
+   public static final int VALIDATION = 5;
+
+   /** The pool */
+   private final ConcurrentPool pool;
+
+   /** A weak reference to this listener, for the thread affinity of the pool */
+   private final WeakReference<ConnectionListener> reference;
+
+   /** The managed connection */
+   private final ManagedConnection mc;
+
+   /** The credential */
+   private final Credential credential;
+
+   /** The state */
+   private final AtomicInteger state;
+
+   /** Is the listener placed in a free list */
+   private final AtomicBoolean queued;
+
+   /** The connection handles */
+   private final Set<Object> connections;
+
+   /** Creation timestamp */
+   private final long created;
+
+   /** Timestamp of the last use */
+   private volatile long lastUsed;
+
+   /** Timestamp of the last validation */
+   private volatile long lastValidated;
+
+   /** Retired because of the maximum lifetime */
+   private volatile boolean retired;
+
+   /** The transaction the connection is enlisted in */
+   private final AtomicReference<Transaction> transaction;
+
+   /** The name of the thread which borrowed the connection */
+   private volatile String borrower;
+
+   /** The borrow site, if it was sampled */
+   private volatile Throwable borrowSite;
+
+   /** Is the current borrow reported as a leak */
+   private volatile boolean leakReported;
+
+   /** The time of the current borrow, from System.nanoTime */
+   private volatile long borrowTime;
+
+   /** The wait of the current borrow in nanoseconds */
+   private volatile long waitTime;
+
+   /** The Subject quota of the current borrow */
+   private volatile SubjectQuota quota;
+
+   /** The Subject quota whose reserve the permit of the current borrow was taken from */
+   private volatile SubjectQuota lender;
+
+   /** The timeout of the maximum lifetime */
+   private volatile Timeout lifetimeTimeout;
+
+   /** The timeout of the idle timeout */
+   private volatile Timeout idleTimeout;
+
+   /**
+    * Constructor
+    * @param pool The pool
+    * @param mc The managed connection
+    * @param credential The credential
+    * @param state The initial state
+    */
+   ConnectionListener(ConcurrentPool pool, ManagedConnection mc, Credential credential, int state)
+   {
+      this.pool = pool;
+      this.reference = new WeakReference<ConnectionListener>(this);
+      this.mc = mc;
+      this.credential = credential;
+      this.state = new AtomicInteger(state);
+      this.queued = new AtomicBoolean(false);
+      this.transaction = new AtomicReference<Transaction>();
+      this.connections = Collections.newSetFromMap(new ConcurrentHashMap<Object, Boolean>(4));
+      this.created = System.currentTimeMillis();
+      this.lastUsed = created;
+      this.lastValidated = created;
+   }
+
+   /**
+    * Get the managed connection
+    * @return The value
+    */
+   public ManagedConnection getManagedConnection()
+   {
+      return mc;
+   }
+
+   /**
+    * Get the credential
+    * @return The value
+    */
+   public Credential getCredential()
+   {
+      return credential;
+   }
+
+   /**
+    * Get the state
+    * @return The value
+    */
+   public int getState()
+   {
+      return state.get();
+   }
+
+   /**
+    * Change the state
+    * @param expect The expected state
+    * @param update The new state
+    * @return True if the state was changed, otherwise false
+    */
+   public boolean changeState(int expect, int update)
+   {
+      if (state.compareAndSet(expect, update))
+      {
+         if (update == IN_USE || expect == RETURNING)
+            lastUsed = System.currentTimeMillis();
+
+         return true;
+      }
+
+      return false;
+   }
+
+   /**
+    * Set the state
+    * @param v The value
+    */
+   void setState(int v)
+   {
+      state.set(v);
+   }
+
+   /**
+    * Mark the listener as placed in a free list
+    * @return True if the listener wasn't already in a free list, otherwise false
+    */
+   boolean enqueue()
+   {
+      return queued.compareAndSet(false, true);
+   }
+
+   /**
+    * Mark the listener as removed from a free list
+    */
+   void dequeue()
+   {
+      queued.set(false);
+   }
+
+   /**
+    * Get the creation timestamp
+    * @return The value
+    */
+   public long getCreated()
+   {
+      return created;
+   }
+
+   /**
+    * Get the timestamp of the last use
+    * @return The value
+    */
+   public long getLastUsed()
+   {
+      return lastUsed;
+   }
+
+   /**
+    * Get the timestamp of the last validation
+    * @return The value
+    */
+   public long getLastValidated()
+   {
+      return lastValidated;
+   }
+
+   /**
+    * Set the timestamp of the last validation
+    * @param v The value
+    */
+   void setLastValidated(long v)
+   {
+      lastValidated = v;
+   }
+
+   /**
+    * Is the listener retired, in which case it is destroyed instead of reused
+    * @return The value
+    */
+   public boolean isRetired()
+   {
+      return retired;
+   }
+
+   /**
+    * Retire the listener
+    */
+   void retire()
+   {
+      retired = true;
+   }
+
+   /**
+    * Set the timeout of the maximum lifetime
+    * @param v The value
+    */
+   void setLifetimeTimeout(Timeout v)
+   {
+      lifetimeTimeout = v;
+   }
+
+   /**
+    * Set the timeout of the idle timeout
+    * @param v The value
+    */
+   void setIdleTimeout(Timeout v)
+   {
+      idleTimeout = v;
+   }
+
+   /**
+    * Cancel the timeouts, so the timing wheel lets go of a destroyed listener
+    */
+   void cancelTimeouts()
+   {
+      Timeout timeout = lifetimeTimeout;
+      if (timeout != null)
+         timeout.cancel();
+
+      timeout = idleTimeout;
+      if (timeout != null)
+         timeout.cancel();
+   }
+
+   /**
+    * Get the transaction the connection is enlisted in
+    * @return The value, or <code>null</code>
+    */
+   public Transaction getTransaction()
+   {
+      return transaction.get();
+   }
+
+   /**
+    * Change the transaction the connection is enlisted in
+    * @param expect The expected transaction
+    * @param update The new transaction
+    * @return True if changed, otherwise false
+    */
+   public boolean changeTransaction(Transaction expect, Transaction update)
+   {
+      return transaction.compareAndSet(expect, update);
+   }
+
+   /**
+    * Record a borrow of the connection
+    * @param site The borrow site, or <code>null</code>
+    */
+   void borrowed(Throwable site)
+   {
+      borrower = Thread.currentThread().getName();
+      borrowSite = site;
+      leakReported = false;
+   }
+
+   /**
+    * Set the time of the current borrow
+    * @param nanos The value, from System.nanoTime
+    */
+   void setBorrowTime(long nanos)
+   {
+      borrowTime = nanos;
+   }
+
+   /**
+    * Get the time of the current borrow
+    * @return The value, from System.nanoTime
+    */
+   long getBorrowTime()
+   {
+      return borrowTime;
+   }
+
+   /**
+    * Set the wait of the current borrow
+    * @param nanos The value in nanoseconds
+    */
+   void setWaitTime(long nanos)
+   {
+      waitTime = nanos;
+   }
+
+   /**
+    * Get the wait of the current borrow
+    * @return The value in nanoseconds
+    */
+   public long getWaitTime()
+   {
+      return waitTime;
+   }
+
+   /**
+    * Get a weak reference to this listener
+    * @return The value
+    */
+   WeakReference<ConnectionListener> getReference()
+   {
+      return reference;
+   }
+
+   /**
+    * Record where the permit of the current borrow was taken from
+    * @param quota The Subject quota, or <code>null</code>
+    * @param lender The Subject quota whose reserve the permit was taken from, or <code>null</code>
+    *               for a pool permit
+    */
+   void setPermit(SubjectQuota quota, SubjectQuota lender)
+   {
+      this.quota = quota;
+      this.lender = lender;
+   }
+
+   /**
+    * Get the Subject quota of the current borrow
+    * @return The value, or <code>null</code>
+    */
+   SubjectQuota getQuota()
+   {
+      return quota;
+   }
+
+   /**
+    * Get the Subject quota whose reserve the permit of the current borrow was taken from
+    * @return The value, or <code>null</code> for a pool permit
+    */
+   SubjectQuota getLender()
+   {
+      return lender;
+   }
+
+   /**
+    * Get the name of the thread which borrowed the connection
+    * @return The value
+    */
+   String getBorrower()
+   {
+      return borrower;
+   }
+
+   /**
+    * Get the borrow site
+    * @return The value, or <code>null</code> if it wasn't sampled
+    */
+   Throwable getBorrowSite()
+   {
+      return borrowSite;
+   }
+
+   /**
+    * Mark the current borrow as reported leak
+    * @return True if it wasn't reported before, otherwise false
+    */
+   boolean reportLeak()
+   {
+      if (leakReported)
+         return false;
+
+      leakReported = true;
+      return true;
+   }
+
+   /**
+    * Add a connection handle
+    * @param c The connection handle
+    */
+   public void addConnection(Object c)
+   {
+      connections.add(c);
+      pool.associated(c, this);
+   }
+
+   /**
+    * Remove a connection handle
+    * @param c The connection handle
+    * @return True if there are no connection handles left, otherwise false
+    */
+   public boolean removeConnection(Object c)
+   {
+      connections.remove(c);
+      pool.dissociated(c, this);
+      return connections.isEmpty();
+   }
+
+   /**
+    * Clear all connection handles
+    */
+   void clearConnections()
+   {
+      for (Object c : connections)
+      {
+         pool.dissociated(c, this);
+      }
+      connections.clear();
+   }
+
+   /**
+    * Get the number of connection handles
+    * @return The value
+    */
+   public int getConnectionCount()
+   {
+      return connections.size();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void connectionClosed(ConnectionEvent event)
+   {
+      connectionClosed((ManagedConnection)event.getSource(), event.getConnectionHandle());
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void connectionClosed(ManagedConnection mc, Object handle)
+   {
+      boolean empty;
+
+      if (handle != null)
+      {
+         empty = removeConnection(handle);
+      }
+      else
+      {
+         clearConnections();
+         empty = true;
+      }
+
+      if (empty)
+         pool.getConnectionManager().returnConnectionListener(this, false);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void localTransactionStarted(ConnectionEvent event)
+   {
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void localTransactionCommitted(ConnectionEvent event)
+   {
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void localTransactionRolledback(ConnectionEvent event)
+   {
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void localTransactionStarted(ManagedConnection mc, Object handle)
+   {
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void localTransactionCommitted(ManagedConnection mc, Object handle)
+   {
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void localTransactionRolledback(ManagedConnection mc, Object handle)
+   {
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void connectionErrorOccurred(ConnectionEvent event)
+   {
+      connectionErrorOccurred((ManagedConnection)event.getSource(), event.getConnectionHandle(),
+                              event.getException());
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void connectionErrorOccurred(ManagedConnection mc, Object handle, Exception exception)
+   {
+      pool.getConnectionManager().returnConnectionListener(this, true);
+      pool.connectionErrorOccurred();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String toString()
+   {
+      StringBuilder sb = new StringBuilder();
+
+      sb.append("ConnectionListener@").append(Integer.toHexString(System.identityHashCode(this)));
+      sb.append("[state=").append(state.get());
+      sb.append(" mc=").append(mc);
+      sb.append(" connections=").append(connections.size());
+      sb.append("]");
+
+      return sb.toString();
+   }
+}
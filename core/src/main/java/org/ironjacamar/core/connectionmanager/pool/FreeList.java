@@ -0,0 +1,93 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.pool;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * A striped, lock-free list of idle connection listeners
+ */
+class FreeList
+{
+   /** The stripes */
+   private final ConcurrentLinkedDeque<ConnectionListener>[] stripes;
+
+   /** The stripe mask */
+   private final int mask;
+
+   /**
+    * Constructor
+    * @param count The number of stripes, which must be a power of two
+    */
+   @SuppressWarnings("unchecked")
+   FreeList(int count)
+   {
+      this.stripes = new ConcurrentLinkedDeque[count];
+      for (int i = 0; i < count; i++)
+      {
+         stripes[i] = new ConcurrentLinkedDeque<ConnectionListener>();
+      }
+      this.mask = count - 1;
+   }
+
+   /**
+    * Place a free connection listener in the list, unless it is still in a list
+    * because it was handed out through the thread affinity cache
+    * @param cl The connection listener
+    * @param stripe The stripe
+    * @param first Place the listener at the head of the stripe
+    */
+   void offer(ConnectionListener cl, int stripe, boolean first)
+   {
+      if (cl.enqueue())
+      {
+         if (first)
+         {
+            stripes[stripe & mask].offerFirst(cl);
+         }
+         else
+         {
+            stripes[stripe & mask].offerLast(cl);
+         }
+      }
+   }
+
+   /**
+    * Poll a connection listener, starting with the specified stripe
+    * @param stripe The stripe
+    * @return The connection listener, or <code>null</code>
+    */
+   ConnectionListener poll(int stripe)
+   {
+      for (int i = 0; i <= mask; i++)
+      {
+         ConnectionListener cl = stripes[(stripe + i) & mask].pollFirst();
+         if (cl != null)
+         {
+            cl.dequeue();
+            return cl;
+         }
+      }
+
+      return null;
+   }
+}
@@ -0,0 +1,224 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.pool;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The autoscaler of a pool, which moves the working size of the pool between its
+ * minimum and maximum size.
+ *
+ * The borrow path only records its signals: the number of requests which had to
+ * wait for a permit and for how long, the peak number of connections in use, and
+ * the time spent creating connections. Each interval the autoscaler grows the working
+ * size when requests waited or the utilization was high, with a headroom that scales
+ * with the creation latency of the EIS. It shrinks the working size, and destroys the
+ * idle connections above it, only after several intervals of low utilization, so short
+ * dips in the load don't cause connections to be destroyed and created again.
+ */
+class PoolAutoscaler implements Runnable
+{
+   /** The utilization above which the pool grows */
+   private static final double HIGH_UTILIZATION = 0.85;
+
+   /** The utilization below which the pool shrinks */
+   private static final double LOW_UTILIZATION = 0.5;
+
+   /** The number of intervals of low utilization before the pool shrinks */
+   private static final int SHRINK_INTERVALS = 3;
+
+   /** The pool */
+   private final ConcurrentPool pool;
+
+   /** The interval in milliseconds */
+   private final long interval;
+
+   /** The number of requests which waited for a permit */
+   private final AtomicLong waitCount;
+
+   /** The time requests waited for a permit in nanoseconds */
+   private final AtomicLong waitTime;
+
+   /** The number of created connections */
+   private final AtomicLong createCount;
+
+   /** The time spent creating connections in nanoseconds */
+   private final AtomicLong createTime;
+
+   /** The peak number of connections in use */
+   private final AtomicInteger peakInUse;
+
+   /** The average creation latency in nanoseconds */
+   private volatile long createLatency;
+
+   /** The number of consecutive intervals of low utilization */
+   private int lowIntervals;
+
+   /** The future of the scheduled task */
+   private ScheduledFuture<?> future;
+
+   /**
+    * Constructor
+    * @param pool The pool
+    * @param interval The interval in milliseconds
+    */
+   PoolAutoscaler(ConcurrentPool pool, long interval)
+   {
+      this.pool = pool;
+      this.interval = interval;
+      this.waitCount = new AtomicLong(0L);
+      this.waitTime = new AtomicLong(0L);
+      this.createCount = new AtomicLong(0L);
+      this.createTime = new AtomicLong(0L);
+      this.peakInUse = new AtomicInteger(0);
+      this.createLatency = 0L;
+      this.lowIntervals = 0;
+   }
+
+   /**
+    * Start the autoscaler
+    */
+   synchronized void start()
+   {
+      if (future == null)
+         future = PoolScheduler.schedule(this, interval);
+   }
+
+   /**
+    * Stop the autoscaler
+    */
+   synchronized void stop()
+   {
+      if (future != null)
+      {
+         future.cancel(false);
+         future = null;
+      }
+   }
+
+   /**
+    * Record a request which waited for a permit
+    * @param nanos The time waited in nanoseconds
+    */
+   void recordWait(long nanos)
+   {
+      waitCount.incrementAndGet();
+      waitTime.addAndGet(nanos);
+   }
+
+   /**
+    * Record the creation of a connection
+    * @param nanos The creation time in nanoseconds
+    */
+   void recordCreate(long nanos)
+   {
+      createCount.incrementAndGet();
+      createTime.addAndGet(nanos);
+   }
+
+   /**
+    * Record the number of connections in use
+    * @param inUse The value
+    */
+   void recordInUse(int inUse)
+   {
+      int peak = peakInUse.get();
+      while (inUse > peak && !peakInUse.compareAndSet(peak, inUse))
+      {
+         peak = peakInUse.get();
+      }
+   }
+
+   /**
+    * Get the average creation latency
+    * @return The value in nanoseconds
+    */
+   long getCreateLatency()
+   {
+      return createLatency;
+   }
+
+   /**
+    * Adjust the working size of the pool
+    */
+   public void run()
+   {
+      if (pool.isShutdown())
+         return;
+
+      long waits = waitCount.getAndSet(0L);
+      long waited = waitTime.getAndSet(0L);
+      long creates = createCount.getAndSet(0L);
+      long created = createTime.getAndSet(0L);
+
+      if (creates > 0)
+      {
+         long latency = created / creates;
+         createLatency = createLatency == 0L ? latency : (3 * createLatency + latency) / 4;
+      }
+
+      int working = pool.getWorkingSize();
+      int inUse = pool.getInUseCount();
+      int peak = Math.max(peakInUse.getAndSet(inUse), inUse);
+      double utilization = (double)peak / working;
+
+      // Keep enough headroom to serve the requests arriving while new connections are created
+      double headroom = 0.1 + Math.min(1.0, (double)createLatency / TimeUnit.MILLISECONDS.toNanos(interval));
+      int target = (int)Math.ceil(peak * (1.0 + headroom));
+
+      if (waits > 0 || utilization >= HIGH_UTILIZATION)
+      {
+         lowIntervals = 0;
+
+         if (waits > 0)
+         {
+            // Waits longer than a creation justify more connections
+            long avgWait = waited / waits;
+            long extra = waits * avgWait / Math.max(createLatency, 1L);
+            target = Math.max(target, working + (int)Math.max(1L, Math.min(extra, (long)working)));
+         }
+
+         if (target > working)
+            pool.grow(target - working);
+      }
+      else if (utilization < LOW_UTILIZATION)
+      {
+         lowIntervals++;
+
+         if (lowIntervals >= SHRINK_INTERVALS)
+         {
+            lowIntervals = 0;
+
+            int excess = working - target;
+            if (excess > 0)
+               pool.shrink(Math.max(1, excess / 2));
+         }
+      }
+      else
+      {
+         lowIntervals = 0;
+      }
+   }
+}
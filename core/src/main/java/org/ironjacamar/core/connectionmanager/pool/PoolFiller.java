@@ -0,0 +1,86 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.pool;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The pool filler, which creates connections for the pools in the background.
+ *
+ * Creating a connection is bound by the latency of the EIS rather than by the CPU,
+ * so the filler runs several creations in parallel. Its threads are daemon threads
+ * which are released when there is nothing to fill.
+ */
+class PoolFiller
+{
+   /** The number of threads */
+   private static final int THREADS = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+   /** The executor */
+   private static final ThreadPoolExecutor EXECUTOR;
+
+   static
+   {
+      EXECUTOR = new ThreadPoolExecutor(THREADS, THREADS, 60L, TimeUnit.SECONDS,
+                                        new LinkedBlockingQueue<Runnable>(), new FillerThreadFactory());
+      EXECUTOR.allowCoreThreadTimeOut(true);
+   }
+
+   /**
+    * Private constructor
+    */
+   private PoolFiller()
+   {
+   }
+
+   /**
+    * Execute a fill task
+    * @param task The task
+    */
+   static void execute(Runnable task)
+   {
+      EXECUTOR.execute(task);
+   }
+
+   /**
+    * The thread factory of the pool filler
+    */
+   static class FillerThreadFactory implements ThreadFactory
+   {
+      /** The thread number */
+      private final AtomicInteger number = new AtomicInteger(1);
+
+      /**
+       * {@inheritDoc}
+       */
+      public Thread newThread(Runnable r)
+      {
+         Thread t = new Thread(r, "IronJacamar PoolFiller-" + number.getAndIncrement());
+         t.setDaemon(true);
+         return t;
+      }
+   }
+}
@@ -0,0 +1,99 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.pool;
+
+import org.ironjacamar.core.util.TimingWheel;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The pool scheduler, which runs the periodic maintenance tasks of the pools
+ * on a single daemon thread, away from the request path, and owns the timing
+ * wheel for the timeouts of the connections
+ */
+class PoolScheduler
+{
+   /** The tick of the timing wheel in milliseconds */
+   private static final long TICK = 100L;
+
+   /** The number of buckets of each wheel */
+   private static final int WHEEL_SIZE = 512;
+
+   /** The executor */
+   private static final ScheduledThreadPoolExecutor EXECUTOR;
+
+   /** The timing wheel */
+   private static final TimingWheel WHEEL;
+
+   static
+   {
+      EXECUTOR = new ScheduledThreadPoolExecutor(1, new SchedulerThreadFactory());
+      EXECUTOR.setRemoveOnCancelPolicy(true);
+      WHEEL = new TimingWheel("IronJacamar PoolTimer", TICK, WHEEL_SIZE);
+   }
+
+   /**
+    * Private constructor
+    */
+   private PoolScheduler()
+   {
+   }
+
+   /**
+    * Schedule a periodic task
+    * @param task The task
+    * @param interval The interval in milliseconds
+    * @return The future of the task
+    */
+   static ScheduledFuture<?> schedule(Runnable task, long interval)
+   {
+      return EXECUTOR.scheduleWithFixedDelay(task, interval, interval, TimeUnit.MILLISECONDS);
+   }
+
+   /**
+    * Get the timing wheel
+    * @return The value
+    */
+   static TimingWheel getTimingWheel()
+   {
+      return WHEEL;
+   }
+
+   /**
+    * The thread factory of the pool scheduler
+    */
+   static class SchedulerThreadFactory implements ThreadFactory
+   {
+      /**
+       * {@inheritDoc}
+       */
+      public Thread newThread(Runnable r)
+      {
+         Thread t = new Thread(r, "IronJacamar PoolScheduler");
+         t.setDaemon(true);
+         return t;
+      }
+   }
+}
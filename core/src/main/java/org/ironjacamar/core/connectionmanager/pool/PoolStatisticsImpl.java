@@ -0,0 +1,306 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.pool;
+
+import org.ironjacamar.core.api.connectionmanager.pool.PoolStatistics;
+import org.ironjacamar.core.api.util.LatencyHistogram;
+import org.ironjacamar.core.util.StripedHistogram;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The statistics of a pool
+ */
+public class PoolStatisticsImpl implements PoolStatistics
+{
+   /** The pool */
+   private final ConcurrentPool pool;
+
+   /** Match count */
+   private final AtomicLong matchCount;
+
+   /** Match failed count */
+   private final AtomicLong matchFailedCount;
+
+   /** Match skipped count */
+   private final AtomicLong matchSkippedCount;
+
+   /** Affinity hit count */
+   private final AtomicLong affinityHitCount;
+
+   /** Leak count */
+   private final AtomicLong leakCount;
+
+   /** Max used count */
+   private final AtomicInteger maxUsedCount;
+
+   /** Wait time */
+   private final StripedHistogram waitTime;
+
+   /** Hold time */
+   private final StripedHistogram holdTime;
+
+   /** Create time */
+   private final StripedHistogram createTime;
+
+   /** Destroy time */
+   private final StripedHistogram destroyTime;
+
+   /**
+    * Constructor
+    * @param pool The pool
+    */
+   PoolStatisticsImpl(ConcurrentPool pool)
+   {
+      this.pool = pool;
+      this.matchCount = new AtomicLong(0L);
+      this.matchFailedCount = new AtomicLong(0L);
+      this.matchSkippedCount = new AtomicLong(0L);
+      this.affinityHitCount = new AtomicLong(0L);
+      this.leakCount = new AtomicLong(0L);
+      this.maxUsedCount = new AtomicInteger(0);
+      this.waitTime = new StripedHistogram();
+      this.holdTime = new StripedHistogram();
+      this.createTime = new StripedHistogram();
+      this.destroyTime = new StripedHistogram();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public long getMatchCount()
+   {
+      return matchCount.get();
+   }
+
+   /**
+    * Delta the match count
+    */
+   void deltaMatchCount()
+   {
+      matchCount.incrementAndGet();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public long getMatchFailedCount()
+   {
+      return matchFailedCount.get();
+   }
+
+   /**
+    * Delta the match failed count
+    */
+   void deltaMatchFailedCount()
+   {
+      matchFailedCount.incrementAndGet();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public long getMatchSkippedCount()
+   {
+      return matchSkippedCount.get();
+   }
+
+   /**
+    * Delta the match skipped count
+    */
+   void deltaMatchSkippedCount()
+   {
+      matchSkippedCount.incrementAndGet();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public long getAffinityHitCount()
+   {
+      return affinityHitCount.get();
+   }
+
+   /**
+    * Delta the affinity hit count
+    */
+   void deltaAffinityHitCount()
+   {
+      affinityHitCount.incrementAndGet();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public long getLeakCount()
+   {
+      return leakCount.get();
+   }
+
+   /**
+    * Delta the leak count
+    */
+   void deltaLeakCount()
+   {
+      leakCount.incrementAndGet();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public int getMaxUsedCount()
+   {
+      return maxUsedCount.get();
+   }
+
+   /**
+    * Update the max used count
+    * @param inUse The number of connections in use
+    */
+   void updateMaxUsedCount(int inUse)
+   {
+      int current = maxUsedCount.get();
+      while (inUse > current && !maxUsedCount.compareAndSet(current, inUse))
+      {
+         current = maxUsedCount.get();
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public LatencyHistogram getWaitTime()
+   {
+      return waitTime.snapshot();
+   }
+
+   /**
+    * Record a wait time
+    * @param nanos The value in nanoseconds
+    */
+   void recordWaitTime(long nanos)
+   {
+      waitTime.record(nanos);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public LatencyHistogram getHoldTime()
+   {
+      return holdTime.snapshot();
+   }
+
+   /**
+    * Record a hold time
+    * @param nanos The value in nanoseconds
+    */
+   void recordHoldTime(long nanos)
+   {
+      holdTime.record(nanos);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public LatencyHistogram getCreateTime()
+   {
+      return createTime.snapshot();
+   }
+
+   /**
+    * Record a create time
+    * @param nanos The value in nanoseconds
+    */
+   void recordCreateTime(long nanos)
+   {
+      createTime.record(nanos);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public LatencyHistogram getDestroyTime()
+   {
+      return destroyTime.snapshot();
+   }
+
+   /**
+    * Record a destroy time
+    * @param nanos The value in nanoseconds
+    */
+   void recordDestroyTime(long nanos)
+   {
+      destroyTime.record(nanos);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public int getPartitionCount()
+   {
+      return pool.getPartitionCount();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void clear()
+   {
+      matchCount.set(0L);
+      matchFailedCount.set(0L);
+      matchSkippedCount.set(0L);
+      affinityHitCount.set(0L);
+      leakCount.set(0L);
+      maxUsedCount.set(0);
+      waitTime.reset();
+      holdTime.reset();
+      createTime.reset();
+      destroyTime.reset();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String toString()
+   {
+      StringBuilder sb = new StringBuilder();
+
+      sb.append("PoolStatistics@").append(Integer.toHexString(System.identityHashCode(this)));
+      sb.append("[matchCount=").append(getMatchCount());
+      sb.append(" matchFailedCount=").append(getMatchFailedCount());
+      sb.append(" matchSkippedCount=").append(getMatchSkippedCount());
+      sb.append(" affinityHitCount=").append(getAffinityHitCount());
+      sb.append(" partitionCount=").append(getPartitionCount());
+      sb.append(" leakCount=").append(getLeakCount());
+      sb.append(" maxUsedCount=").append(getMaxUsedCount());
+      sb.append(" waitTime=").append(getWaitTime());
+      sb.append(" holdTime=").append(getHoldTime());
+      sb.append(" createTime=").append(getCreateTime());
+      sb.append(" destroyTime=").append(getDestroyTime());
+      sb.append("]");
+
+      return sb.toString();
+   }
+}
@@ -0,0 +1,461 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.pool;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The quota of a Subject in a pool.
+ *
+ * The guaranteed connections of a Subject are permits taken from the pool into a
+ * reserve of the quota when the Subject is first seen. A borrow first takes a permit
+ * from the reserve, and otherwise takes one of the pool permits which aren't guaranteed
+ * to any Subject, up to the maximum of the quota. A permit is returned where it was
+ * taken from. If the pool had fewer free permits than the guarantee when the Subject
+ * was first seen, the missing permits are owed to the reserve, and taken from the pool
+ * permits the Subject returns.
+ *
+ * The guarantee only holds back capacity under contention: a borrow which finds the
+ * pool empty lends a free permit from the reserve of another Subject. A Subject which
+ * finds its own reserve lent out waits on the reserve, and gets the permits back as the
+ * loans are returned, or as pool permits are released while it waits. A quota without
+ * borrows for an eviction interval is evicted, and its reserve goes back to the pool.
+ *
+ * All counters are atomic, so the quota doesn't add a lock to the borrow path
+ */
+class SubjectQuota
+{
+   /** No permit was taken */
+   static final int NONE = 0;
+
+   /** A guaranteed permit of the reserve was taken */
+   static final int GUARANTEED = 1;
+
+   /** A pool permit handed over to the reserve was taken */
+   static final int POOL = 2;
+
+   /** The user name of the Subject */
+   private final String name;
+
+   /** The number of guaranteed connections */
+   private final int min;
+
+   /** The permits of the maximum, or <code>null</code> if there is no maximum */
+   private final Semaphore max;
+
+   /** The free permits of the reserve */
+   private final Semaphore reserve;
+
+   /** The pool permits among the free permits of the reserve */
+   private final AtomicInteger extra;
+
+   /** The permits owed to the reserve */
+   private final AtomicInteger owed;
+
+   /** The guaranteed permits lent to other borrows */
+   private final AtomicInteger lent;
+
+   /** The borrows of the Subject in progress, or -1 once the quota is evicted */
+   private final AtomicInteger holders;
+
+   /** The borrows of the Subject waiting on the reserve */
+   private final AtomicInteger waiting;
+
+   /** Has the Subject borrowed since the last eviction check */
+   private volatile boolean used;
+
+   /** The free reserve permits of all quotas of the pool */
+   private final AtomicInteger reserved;
+
+   /**
+    * Constructor
+    * @param name The user name of the Subject
+    * @param min The number of guaranteed connections
+    * @param max The maximum number of connections, or 0 for no maximum
+    * @param reserved The free reserve permits of all quotas of the pool
+    */
+   SubjectQuota(String name, int min, int max, AtomicInteger reserved)
+   {
+      this.name = name;
+      this.min = max > 0 ? Math.min(min, max) : min;
+      this.max = max > 0 ? new Semaphore(max) : null;
+      this.reserve = new Semaphore(0);
+      this.extra = new AtomicInteger(0);
+      this.owed = new AtomicInteger(0);
+      this.lent = new AtomicInteger(0);
+      this.holders = new AtomicInteger(0);
+      this.waiting = new AtomicInteger(0);
+      this.used = true;
+      this.reserved = reserved;
+   }
+
+   /**
+    * Take the guaranteed permits from the pool, once the quota is registered
+    * @param permits The pool permits
+    */
+   void claim(Semaphore permits)
+   {
+      for (int i = 0; i < min; i++)
+      {
+         if (permits.tryAcquire())
+         {
+            give();
+         }
+         else
+         {
+            owed.incrementAndGet();
+         }
+      }
+   }
+
+   /**
+    * Get the user name of the Subject
+    * @return The value
+    */
+   String getName()
+   {
+      return name;
+   }
+
+   /**
+    * Does the quota guarantee connections
+    * @return The value
+    */
+   boolean hasGuarantee()
+   {
+      return min > 0;
+   }
+
+   /**
+    * Get the number of free reserve permits
+    * @return The value
+    */
+   int getReserve()
+   {
+      return reserve.availablePermits();
+   }
+
+   /**
+    * Get the number of permits owed to the reserve
+    * @return The value
+    */
+   int getOwed()
+   {
+      return owed.get();
+   }
+
+   /**
+    * Get the number of guaranteed permits lent to other borrows
+    * @return The value
+    */
+   int getLent()
+   {
+      return lent.get();
+   }
+
+   /**
+    * Start a borrow of the Subject
+    * @return True if the quota is in use, false if it is evicted
+    */
+   boolean enter()
+   {
+      for (;;)
+      {
+         int current = holders.get();
+         if (current < 0)
+            return false;
+
+         if (holders.compareAndSet(current, current + 1))
+         {
+            used = true;
+            return true;
+         }
+      }
+   }
+
+   /**
+    * End a borrow of the Subject
+    */
+   void exit()
+   {
+      holders.decrementAndGet();
+   }
+
+   /**
+    * Evict the quota, if the Subject hasn't borrowed since the last check and
+    * holds no connection
+    * @return True if the quota is evicted, otherwise false
+    */
+   boolean evict()
+   {
+      if (used)
+      {
+         used = false;
+         return false;
+      }
+
+      return holders.compareAndSet(0, -1);
+   }
+
+   /**
+    * Is the quota evicted
+    * @return The value
+    */
+   boolean isEvicted()
+   {
+      return holders.get() < 0;
+   }
+
+   /**
+    * Wait for a permit of the maximum
+    * @param timeout The timeout in milliseconds
+    * @return True if a permit is taken, otherwise false
+    * @exception InterruptedException Thrown if the thread is interrupted
+    */
+   boolean acquireMax(long timeout) throws InterruptedException
+   {
+      return max == null || max.tryAcquire(timeout, TimeUnit.MILLISECONDS);
+   }
+
+   /**
+    * Release a permit of the maximum
+    */
+   void releaseMax()
+   {
+      if (max != null)
+         max.release();
+   }
+
+   /**
+    * Take a permit from the reserve
+    * @return NONE, GUARANTEED or POOL
+    */
+   int take()
+   {
+      if (!reserve.tryAcquire())
+         return NONE;
+
+      return taken();
+   }
+
+   /**
+    * Wait for a permit of the reserve
+    * @param timeout The timeout in milliseconds
+    * @return NONE, GUARANTEED or POOL
+    * @exception InterruptedException Thrown if the thread is interrupted
+    */
+   int take(long timeout) throws InterruptedException
+   {
+      if (!reserve.tryAcquire(timeout, TimeUnit.MILLISECONDS))
+         return NONE;
+
+      return taken();
+   }
+
+   /**
+    * Lend a free permit of the reserve to a borrow of another Subject
+    * @return NONE, GUARANTEED or POOL
+    */
+   int lend()
+   {
+      if (!reserve.tryAcquire())
+         return NONE;
+
+      int kind = taken();
+      if (kind == GUARANTEED)
+         lent.incrementAndGet();
+
+      return kind;
+   }
+
+   /**
+    * Account for a permit taken from the reserve
+    * @return GUARANTEED or POOL
+    */
+   private int taken()
+   {
+      reserved.decrementAndGet();
+
+      for (;;)
+      {
+         int current = extra.get();
+         if (current <= 0)
+            return GUARANTEED;
+
+         if (extra.compareAndSet(current, current - 1))
+            return POOL;
+      }
+   }
+
+   /**
+    * Return a lent permit to the reserve
+    * @return True if the permit is kept, false if the loan was settled with a pool permit
+    */
+   boolean returnLoan()
+   {
+      if (!decrement(lent))
+         return false;
+
+      give();
+      return true;
+   }
+
+   /**
+    * Return a pool permit to the reserve, if it is owed one
+    * @return True if the permit is kept, otherwise false
+    */
+   boolean repay()
+   {
+      if (!decrement(owed))
+         return false;
+
+      give();
+      return true;
+   }
+
+   /**
+    * Return a permit to the reserve
+    */
+   void returnReserve()
+   {
+      give();
+   }
+
+   /**
+    * Start waiting on the reserve
+    */
+   void startWait()
+   {
+      waiting.incrementAndGet();
+   }
+
+   /**
+    * Stop waiting on the reserve
+    * @return True if no borrow of the Subject waits on the reserve anymore
+    */
+   boolean stopWait()
+   {
+      return waiting.decrementAndGet() == 0;
+   }
+
+   /**
+    * Hand a released pool permit over to a borrow waiting on the reserve. The permit
+    * settles a loan or a debt of the reserve first
+    * @param guaranteedOnly Only hand the permit over if the reserve is short of its guarantee
+    * @return True if the permit is kept, otherwise false
+    */
+   boolean handOver(boolean guaranteedOnly)
+   {
+      if (waiting.get() <= 0)
+         return false;
+
+      if (!decrement(lent) && !decrement(owed))
+      {
+         if (guaranteedOnly)
+            return false;
+
+         extra.incrementAndGet();
+      }
+
+      give();
+      return true;
+   }
+
+   /**
+    * Take a pool permit which was handed over to the reserve
+    * @return True if a pool permit is taken, otherwise false
+    */
+   boolean takeExtra()
+   {
+      if (extra.get() <= 0 || !reserve.tryAcquire())
+         return false;
+
+      if (taken() == POOL)
+         return true;
+
+      give();
+      return false;
+   }
+
+   /**
+    * Take all free permits of the reserve, once the quota is evicted
+    * @return The number of permits
+    */
+   int drain()
+   {
+      int permits = reserve.drainPermits();
+      if (permits > 0)
+      {
+         reserved.addAndGet(-permits);
+         extra.set(0);
+      }
+      return permits;
+   }
+
+   /**
+    * Add a free permit to the reserve
+    */
+   private void give()
+   {
+      reserved.incrementAndGet();
+      reserve.release();
+   }
+
+   /**
+    * Decrement a counter which is above zero
+    * @param counter The counter
+    * @return True if decremented, otherwise false
+    */
+   private static boolean decrement(AtomicInteger counter)
+   {
+      for (;;)
+      {
+         int current = counter.get();
+         if (current <= 0)
+            return false;
+
+         if (counter.compareAndSet(current, current - 1))
+            return true;
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String toString()
+   {
+      StringBuilder sb = new StringBuilder();
+
+      sb.append("SubjectQuota@").append(Integer.toHexString(System.identityHashCode(this)));
+      sb.append("[name=").append(name);
+      sb.append(" reserve=").append(reserve.availablePermits());
+      sb.append(" owed=").append(owed.get());
+      sb.append(" lent=").append(lent.get());
+      sb.append(" max=").append(max != null ? Integer.toString(max.availablePermits()) : "-");
+      sb.append("]");
+
+      return sb.toString();
+   }
+}
@@ -0,0 +1,301 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.pool;
+
+import org.ironjacamar.core.CoreBundle;
+import org.ironjacamar.core.connectionmanager.Credential;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.resource.spi.ConnectionRequestInfo;
+
+import org.jboss.logging.Messages;
+
+/**
+ * The warm start profile of a pool: the number of connections it had, the maximum
+ * number of connections in use at the same time, and the number of connections of
+ * each ConnectionRequestInfo.
+ *
+ * A ConnectionRequestInfo can carry a user name and password, so it isn't written to
+ * the file. It is identified by a salted SHA-256 digest of its serialized form, and
+ * the file only holds numbers and digests, which are read back without deserializing
+ * any object. Connections obtained with a Subject aren't part of the distribution,
+ * and neither are connections whose ConnectionRequestInfo isn't Serializable. The file
+ * is replaced atomically, so a crash while it is saved leaves the previous profile in place
+ */
+public class WarmStartProfile
+{
+   /** The bundle */
+   private static CoreBundle bundle = Messages.getBundle(CoreBundle.class);
+
+   /** The format version */
+   private static final int VERSION = 2;
+
+   /** The length of the salt */
+   private static final int SALT_LENGTH = 16;
+
+   /** The hex digits */
+   private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+   /** The number of connections */
+   private final int size;
+
+   /** The maximum number of connections in use */
+   private final int peak;
+
+   /** The salt of the digests */
+   private final byte[] salt;
+
+   /** The number of connections of each ConnectionRequestInfo digest */
+   private final Map<String, Integer> distribution;
+
+   /**
+    * Constructor
+    * @param size The number of connections
+    * @param peak The maximum number of connections in use
+    * @param salt The salt of the digests
+    * @param distribution The number of connections of each ConnectionRequestInfo digest
+    */
+   WarmStartProfile(int size, int peak, byte[] salt, Map<String, Integer> distribution)
+   {
+      this.size = size;
+      this.peak = peak;
+      this.salt = salt;
+      this.distribution = Collections.unmodifiableMap(distribution);
+   }
+
+   /**
+    * Create the profile of a pool
+    * @param size The number of connections
+    * @param peak The maximum number of connections in use
+    * @param listeners The connection listeners
+    * @return The profile
+    */
+   static WarmStartProfile create(int size, int peak, Collection<ConnectionListener> listeners)
+   {
+      byte[] salt = new byte[SALT_LENGTH];
+      new SecureRandom().nextBytes(salt);
+
+      WarmStartProfile profile = new WarmStartProfile(size, peak, salt, Collections.<String, Integer>emptyMap());
+      Map<String, Integer> distribution = new LinkedHashMap<String, Integer>();
+
+      for (ConnectionListener cl : listeners)
+      {
+         Credential credential = cl.getCredential();
+         ConnectionRequestInfo cri = credential.getConnectionRequestInfo();
+
+         if (credential.getSubject() == null)
+         {
+            String digest = cri != null ? profile.digest(cri) : null;
+            if (cri == null || digest != null)
+            {
+               Integer count = distribution.get(digest);
+               distribution.put(digest, Integer.valueOf(count != null ? count.intValue() + 1 : 1));
+            }
+         }
+      }
+
+      return new WarmStartProfile(size, peak, salt, distribution);
+   }
+
+   /**
+    * Get the number of connections
+    * @return The value
+    */
+   public int getSize()
+   {
+      return size;
+   }
+
+   /**
+    * Get the maximum number of connections in use at the same time
+    * @return The value
+    */
+   public int getPeak()
+   {
+      return peak;
+   }
+
+   /**
+    * Get the number of connections of each ConnectionRequestInfo, by the digest of the
+    * ConnectionRequestInfo; the <code>null</code> key is for connections without one
+    * @return The value
+    */
+   public Map<String, Integer> getDistribution()
+   {
+      return distribution;
+   }
+
+   /**
+    * Get the digest of a ConnectionRequestInfo
+    * @param cri The ConnectionRequestInfo
+    * @return The value, or <code>null</code> if it can't be serialized
+    */
+   public String digest(ConnectionRequestInfo cri)
+   {
+      if (!(cri instanceof Serializable))
+         return null;
+
+      try
+      {
+         ByteArrayOutputStream baos = new ByteArrayOutputStream();
+         ObjectOutputStream oos = new ObjectOutputStream(baos);
+         oos.writeObject(cri);
+         oos.close();
+
+         MessageDigest md = MessageDigest.getInstance("SHA-256");
+         md.update(salt);
+         byte[] value = md.digest(baos.toByteArray());
+
+         char[] hex = new char[value.length * 2];
+         for (int i = 0; i < value.length; i++)
+         {
+            hex[i * 2] = HEX[(value[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX[value[i] & 0xf];
+         }
+         return new String(hex);
+      }
+      catch (IOException ioe)
+      {
+         return null;
+      }
+      catch (NoSuchAlgorithmException nsae)
+      {
+         return null;
+      }
+   }
+
+   /**
+    * Load a profile
+    * @param file The file
+    * @return The profile, or <code>null</code> if the file doesn't exist
+    * @exception IOException Thrown if the file can't be read
+    */
+   public static WarmStartProfile load(File file) throws IOException
+   {
+      if (!file.exists())
+         return null;
+
+      DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      try
+      {
+         int version = dis.readInt();
+         if (version != VERSION)
+            throw new IOException(bundle.unsupportedWarmStartVersion(version));
+
+         int size = dis.readInt();
+         int peak = dis.readInt();
+
+         byte[] salt = new byte[SALT_LENGTH];
+         dis.readFully(salt);
+
+         int entries = dis.readInt();
+
+         Map<String, Integer> distribution = new LinkedHashMap<String, Integer>();
+         for (int i = 0; i < entries; i++)
+         {
+            String digest = dis.readBoolean() ? dis.readUTF() : null;
+            distribution.put(digest, Integer.valueOf(dis.readInt()));
+         }
+
+         return new WarmStartProfile(size, peak, salt, distribution);
+      }
+      finally
+      {
+         dis.close();
+      }
+   }
+
+   /**
+    * Save the profile
+    * @param file The file
+    * @exception IOException Thrown if the file can't be written
+    */
+   public void save(File file) throws IOException
+   {
+      File dir = file.getAbsoluteFile().getParentFile();
+      if (dir != null && !dir.exists() && !dir.mkdirs())
+         throw new IOException(bundle.unableToCreateDirectory(dir));
+
+      File tmp = new File(dir, file.getName() + ".tmp");
+
+      DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+      try
+      {
+         dos.writeInt(VERSION);
+         dos.writeInt(size);
+         dos.writeInt(peak);
+         dos.write(salt);
+         dos.writeInt(distribution.size());
+
+         for (Map.Entry<String, Integer> entry : distribution.entrySet())
+         {
+            dos.writeBoolean(entry.getKey() != null);
+            if (entry.getKey() != null)
+               dos.writeUTF(entry.getKey());
+            dos.writeInt(entry.getValue().intValue());
+         }
+      }
+      finally
+      {
+         dos.close();
+      }
+
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String toString()
+   {
+      StringBuilder sb = new StringBuilder();
+
+      sb.append("WarmStartProfile@").append(Integer.toHexString(System.identityHashCode(this)));
+      sb.append("[size=").append(size);
+      sb.append(" peak=").append(peak);
+      sb.append(" distribution=").append(distribution.values());
+      sb.append("]");
+
+      return sb.toString();
+   }
+}
@@ -0,0 +1,269 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.util;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A JDK Flight Recorder event type, with the name of a pool, the wait for a connection and
+ * an outcome as fields.
+ *
+ * The event types are defined through jdk.jfr.EventFactory and called through method
+ * handles, so they work on every runtime with Flight Recorder, while the code stays
+ * loadable on runtimes without it. The duration of an event is the time between
+ * {@link #begin} and {@link #end}. When Flight Recorder isn't available, or the event
+ * type isn't enabled in a recording, begin returns <code>null</code> and nothing is
+ * allocated.
+ */
+public class FlightRecorderEvent
+{
+   /** The outcome of a successful operation */
+   public static final String SUCCESS = "success";
+
+   /** The outcome of a match which didn't match */
+   public static final String NO_MATCH = "no match";
+
+   /** The category of the events */
+   private static final String[] CATEGORY = new String[] {"IronJacamar", "Connection Manager"};
+
+   /** ConnectionManager.allocateConnection */
+   public static final FlightRecorderEvent ALLOCATE =
+      new FlightRecorderEvent("org.ironjacamar.AllocateConnection", "Allocate Connection",
+                              "ConnectionManager.allocateConnection, including the wait for a connection");
+
+   /** ManagedConnectionFactory.matchManagedConnections */
+   public static final FlightRecorderEvent MATCH =
+      new FlightRecorderEvent("org.ironjacamar.MatchManagedConnections", "Match Managed Connections",
+                              "ManagedConnectionFactory.matchManagedConnections");
+
+   /** ManagedConnectionFactory.createManagedConnection */
+   public static final FlightRecorderEvent CREATE =
+      new FlightRecorderEvent("org.ironjacamar.CreateManagedConnection", "Create Managed Connection",
+                              "ManagedConnectionFactory.createManagedConnection");
+
+   /** ManagedConnection.cleanup */
+   public static final FlightRecorderEvent CLEANUP =
+      new FlightRecorderEvent("org.ironjacamar.CleanupManagedConnection", "Cleanup Managed Connection",
+                              "ManagedConnection.cleanup");
+
+   /** ManagedConnection.destroy */
+   public static final FlightRecorderEvent DESTROY =
+      new FlightRecorderEvent("org.ironjacamar.DestroyManagedConnection", "Destroy Managed Connection",
+                              "ManagedConnection.destroy");
+
+   /** The name */
+   private final String name;
+
+   /** EventType.isEnabled bound to the event type, or <code>null</code> if not available */
+   private final MethodHandle enabled;
+
+   /** EventFactory.newEvent bound to the event factory */
+   private final MethodHandle newEvent;
+
+   /** Event.begin */
+   private final MethodHandle begin;
+
+   /** Event.end */
+   private final MethodHandle end;
+
+   /** Event.set */
+   private final MethodHandle set;
+
+   /** Event.commit */
+   private final MethodHandle commit;
+
+   /**
+    * Constructor
+    * @param name The name
+    * @param label The label
+    * @param description The description
+    */
+   private FlightRecorderEvent(String name, String label, String description)
+   {
+      this.name = name;
+
+      MethodHandle[] handles = null;
+      try
+      {
+         handles = define(name, label, description);
+      }
+      catch (Throwable t)
+      {
+         // No Flight Recorder
+      }
+
+      this.enabled = handles != null ? handles[0] : null;
+      this.newEvent = handles != null ? handles[1] : null;
+      this.begin = handles != null ? handles[2] : null;
+      this.end = handles != null ? handles[3] : null;
+      this.set = handles != null ? handles[4] : null;
+      this.commit = handles != null ? handles[5] : null;
+   }
+
+   /**
+    * Get the name
+    * @return The value
+    */
+   public String getName()
+   {
+      return name;
+   }
+
+   /**
+    * Is Flight Recorder available
+    * @return The value
+    */
+   public boolean isAvailable()
+   {
+      return enabled != null;
+   }
+
+   /**
+    * Begin an event
+    * @return The event, or <code>null</code> if the event type isn't enabled
+    */
+   public Object begin()
+   {
+      if (enabled == null)
+         return null;
+
+      try
+      {
+         if (!((Boolean)enabled.invoke()).booleanValue())
+            return null;
+
+         Object event = newEvent.invoke();
+         begin.invoke(event);
+         return event;
+      }
+      catch (Throwable t)
+      {
+         return null;
+      }
+   }
+
+   /**
+    * End and commit an event
+    * @param event The event from {@link #begin}, or <code>null</code>
+    * @param pool The name of the pool
+    * @param waitTime The wait for a connection in nanoseconds, or 0 if there was none
+    * @param outcome The outcome
+    */
+   public void end(Object event, String pool, long waitTime, String outcome)
+   {
+      if (event == null)
+         return;
+
+      try
+      {
+         end.invoke(event);
+         set.invoke(event, 0, (Object)pool);
+         set.invoke(event, 1, (Object)Long.valueOf(waitTime));
+         set.invoke(event, 2, (Object)outcome);
+         commit.invoke(event);
+      }
+      catch (Throwable t)
+      {
+         // Event lost
+      }
+   }
+
+   /**
+    * Get the outcome of a failure
+    * @param t The exception
+    * @return The value
+    */
+   public static String outcome(Throwable t)
+   {
+      return t.getClass().getName();
+   }
+
+   /**
+    * Define an event type through jdk.jfr.EventFactory
+    * @param name The name
+    * @param label The label
+    * @param description The description
+    * @return The handles of isEnabled, newEvent, begin, end, set and commit
+    * @exception Throwable Thrown if Flight Recorder isn't available
+    */
+   private static MethodHandle[] define(String name, String label, String description) throws Throwable
+   {
+      ClassLoader cl = FlightRecorderEvent.class.getClassLoader();
+      Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement", true, cl);
+      Class<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor", true, cl);
+      Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory", true, cl);
+      Class<?> eventType = Class.forName("jdk.jfr.EventType", true, cl);
+      Class<?> event = Class.forName("jdk.jfr.Event", true, cl);
+
+      Constructor<?> ae = annotationElement.getConstructor(Class.class, Object.class);
+      Constructor<?> vd = valueDescriptor.getConstructor(Class.class, String.class, List.class);
+
+      List<Object> annotations = new ArrayList<Object>();
+      annotations.add(ae.newInstance(annotation("jdk.jfr.Name"), name));
+      annotations.add(ae.newInstance(annotation("jdk.jfr.Label"), label));
+      annotations.add(ae.newInstance(annotation("jdk.jfr.Description"), description));
+      annotations.add(ae.newInstance(annotation("jdk.jfr.Category"), CATEGORY));
+
+      List<Object> fields = new ArrayList<Object>();
+      fields.add(vd.newInstance(String.class, "pool",
+         Collections.singletonList(ae.newInstance(annotation("jdk.jfr.Label"), "Pool"))));
+      List<Object> waitTime = new ArrayList<Object>();
+      waitTime.add(ae.newInstance(annotation("jdk.jfr.Label"), "Wait Time"));
+      waitTime.add(ae.newInstance(annotation("jdk.jfr.Timespan"), "NANOSECONDS"));
+      fields.add(vd.newInstance(long.class, "waitTime", waitTime));
+      fields.add(vd.newInstance(String.class, "outcome",
+         Collections.singletonList(ae.newInstance(annotation("jdk.jfr.Label"), "Outcome"))));
+
+      Method create = eventFactory.getMethod("create", List.class, List.class);
+      Object factory = create.invoke(null, annotations, fields);
+      Object type = eventFactory.getMethod("getEventType").invoke(factory);
+
+      MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+      return new MethodHandle[] {
+         lookup.unreflect(eventType.getMethod("isEnabled")).bindTo(type),
+         lookup.unreflect(eventFactory.getMethod("newEvent")).bindTo(factory),
+         lookup.unreflect(event.getMethod("begin")),
+         lookup.unreflect(event.getMethod("end")),
+         lookup.unreflect(event.getMethod("set", int.class, Object.class)),
+         lookup.unreflect(event.getMethod("commit"))
+      };
+   }
+
+   /**
+    * Load an annotation type
+    * @param name The name of the class
+    * @return The value
+    * @exception ClassNotFoundException Thrown if the class isn't found
+    */
+   @SuppressWarnings("unchecked")
+   private static Class<? extends Annotation> annotation(String name) throws ClassNotFoundException
+   {
+      return (Class<? extends Annotation>)Class.forName(name, true, FlightRecorderEvent.class.getClassLoader());
+   }
+}
@@ -0,0 +1,308 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.util;
+
+import org.ironjacamar.core.api.util.LatencyHistogram;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A latency histogram which records without blocking.
+ *
+ * The buckets are log-linear: each power of two is split into 8 buckets, so a value is
+ * counted within 12.5% of its magnitude, from 1 ns to over an hour. Each stripe is an
+ * array of atomic counters, and a thread records into the stripe selected by its
+ * identifier, so concurrent threads rarely update the same counter. A snapshot sums
+ * the stripes, and isn't atomic with respect to concurrent recording
+ */
+public class StripedHistogram
+{
+   /** The number of bits of the sub-bucket index */
+   private static final int SUB_BITS = 3;
+
+   /** The number of sub-buckets of a power of two */
+   private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+   /** The highest power of two with its own buckets; larger values count in the last bucket */
+   private static final int MAX_EXPONENT = 42;
+
+   /** The number of buckets */
+   static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) << SUB_BITS;
+
+   /** The index of the sum in a stripe */
+   private static final int SUM = BUCKETS;
+
+   /** The index of the maximum in a stripe */
+   private static final int MAX = BUCKETS + 1;
+
+   /** Maximum number of stripes */
+   private static final int MAX_STRIPES = 8;
+
+   /** The stripes */
+   private final AtomicLongArray[] stripes;
+
+   /**
+    * Constructor
+    */
+   public StripedHistogram()
+   {
+      int count = 1;
+      int target = Math.min(Runtime.getRuntime().availableProcessors(), MAX_STRIPES);
+      while (count < target)
+      {
+         count <<= 1;
+      }
+
+      this.stripes = new AtomicLongArray[count];
+      for (int i = 0; i < count; i++)
+      {
+         stripes[i] = new AtomicLongArray(BUCKETS + 2);
+      }
+   }
+
+   /**
+    * Record a value
+    * @param value The value in nanoseconds
+    */
+   public void record(long value)
+   {
+      if (value < 0L)
+         value = 0L;
+
+      long id = Thread.currentThread().getId();
+      AtomicLongArray stripe = stripes[(int)(id ^ (id >>> 16)) & (stripes.length - 1)];
+
+      stripe.incrementAndGet(index(value));
+      stripe.addAndGet(SUM, value);
+
+      long max = stripe.get(MAX);
+      while (value > max && !stripe.compareAndSet(MAX, max, value))
+      {
+         max = stripe.get(MAX);
+      }
+   }
+
+   /**
+    * Reset the histogram
+    */
+   public void reset()
+   {
+      for (AtomicLongArray stripe : stripes)
+      {
+         for (int i = 0; i < stripe.length(); i++)
+         {
+            stripe.set(i, 0L);
+         }
+      }
+   }
+
+   /**
+    * Take a snapshot
+    * @return The value
+    */
+   public LatencyHistogram snapshot()
+   {
+      long[] counts = new long[BUCKETS];
+      long count = 0L;
+      long sum = 0L;
+      long max = 0L;
+
+      for (AtomicLongArray stripe : stripes)
+      {
+         for (int i = 0; i < BUCKETS; i++)
+         {
+            long c = stripe.get(i);
+            counts[i] += c;
+            count += c;
+         }
+         sum += stripe.get(SUM);
+         max = Math.max(max, stripe.get(MAX));
+      }
+
+      return new Snapshot(counts, count, sum, max);
+   }
+
+   /**
+    * Get the bucket of a value
+    * @param value The value
+    * @return The index
+    */
+   static int index(long value)
+   {
+      if (value < SUB_BUCKETS)
+         return (int)value;
+
+      int exponent = 63 - Long.numberOfLeadingZeros(value);
+      if (exponent > MAX_EXPONENT)
+         return BUCKETS - 1;
+
+      int shift = exponent - SUB_BITS;
+      return ((shift + 1) << SUB_BITS) + (int)((value >>> shift) & (SUB_BUCKETS - 1));
+   }
+
+   /**
+    * Get the highest value of a bucket
+    * @param index The index
+    * @return The value
+    */
+   static long highestValue(int index)
+   {
+      if (index < SUB_BUCKETS)
+         return index;
+
+      int shift = (index >>> SUB_BITS) - 1;
+      long lowest = (long)(SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+      return lowest + (1L << shift) - 1L;
+   }
+
+   /**
+    * A snapshot of the histogram
+    */
+   static class Snapshot implements LatencyHistogram
+   {
+      /** The bucket counts */
+      private final long[] counts;
+
+      /** The count */
+      private final long count;
+
+      /** The sum */
+      private final long sum;
+
+      /** The maximum */
+      private final long max;
+
+      /**
+       * Constructor
+       * @param counts The bucket counts
+       * @param count The count
+       * @param sum The sum
+       * @param max The maximum
+       */
+      Snapshot(long[] counts, long count, long sum, long max)
+      {
+         this.counts = counts;
+         this.count = count;
+         this.sum = sum;
+         this.max = max;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public long getCount()
+      {
+         return count;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public long getMean()
+      {
+         return count > 0L ? sum / count : 0L;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public long getMax()
+      {
+         return max;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public long getP50()
+      {
+         return valueAtPercentile(50.0);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public long getP90()
+      {
+         return valueAtPercentile(90.0);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public long getP99()
+      {
+         return valueAtPercentile(99.0);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public long getP999()
+      {
+         return valueAtPercentile(99.9);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public long valueAtPercentile(double percentile)
+      {
+         if (count == 0L)
+            return 0L;
+
+         long rank = (long)Math.ceil(Math.min(Math.max(percentile, 0.0), 100.0) / 100.0 * count);
+         if (rank < 1L)
+            rank = 1L;
+
+         long seen = 0L;
+         for (int i = 0; i < counts.length; i++)
+         {
+            seen += counts[i];
+            if (seen >= rank)
+               return Math.min(highestValue(i), max);
+         }
+
+         return max;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public String toString()
+      {
+         StringBuilder sb = new StringBuilder();
+
+         sb.append("LatencyHistogram@").append(Integer.toHexString(System.identityHashCode(this)));
+         sb.append("[count=").append(count);
+         sb.append(" mean=").append(getMean());
+         sb.append(" p50=").append(getP50());
+         sb.append(" p99=").append(getP99());
+         sb.append(" p999=").append(getP999());
+         sb.append(" max=").append(max);
+         sb.append("]");
+
+         return sb.toString();
+      }
+   }
+}
@@ -0,0 +1,457 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.util;
+
+import org.ironjacamar.core.CoreLogger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.jboss.logging.Logger;
+
+/**
+ * A hierarchical timing wheel.
+ *
+ * Scheduling a task is lock-free: the timeout is placed in a queue which the ticker
+ * thread drains at every tick into the buckets of the wheels. The first wheel has one
+ * bucket per tick, and each overflow wheel has buckets as wide as the whole wheel
+ * below it, so a timeout costs the same independent of its delay, and a bucket is only
+ * visited when its time has come. Timeouts of an overflow bucket are cascaded into the
+ * lower wheels when the bucket is reached.
+ *
+ * A task never runs before its deadline, and runs at most one tick after it. Tasks run
+ * on the ticker thread, so they must be short and hand any blocking work to an executor.
+ * Cancelled timeouts release their task right away, and are skipped when their bucket
+ * is reached. When they make up half of the timeouts in the buckets the ticker purges
+ * them, so timeouts which are cancelled long before their deadline don't pile up.
+ */
+public class TimingWheel
+{
+   /** The logger */
+   private static CoreLogger log = Logger.getMessageLogger(CoreLogger.class, TimingWheel.class.getName());
+
+   /** The minimum number of cancelled timeouts for a purge */
+   private static final int PURGE_THRESHOLD = 1024;
+
+   /** The tick in milliseconds */
+   private final long tick;
+
+   /** The number of buckets of each wheel */
+   private final int wheelSize;
+
+   /** The scheduled timeouts which haven't been placed in a bucket yet */
+   private final ConcurrentLinkedQueue<Timeout> pending;
+
+   /** The first wheel, only accessed by the ticker thread */
+   private final Wheel wheel;
+
+   /** The ticker thread */
+   private final Thread ticker;
+
+   /** The number of cancelled timeouts which are still held */
+   private final AtomicInteger cancelled;
+
+   /** The number of timeouts in the buckets, only accessed by the ticker thread */
+   private int held;
+
+   /** Running */
+   private volatile boolean running;
+
+   /**
+    * Constructor
+    * @param name The name of the ticker thread
+    * @param tick The tick in milliseconds
+    * @param wheelSize The number of buckets of each wheel
+    */
+   public TimingWheel(String name, long tick, int wheelSize)
+   {
+      this.tick = tick;
+      this.wheelSize = wheelSize;
+      this.pending = new ConcurrentLinkedQueue<Timeout>();
+      this.cancelled = new AtomicInteger(0);
+      this.wheel = new Wheel(tick, ceil(System.currentTimeMillis(), tick) - tick);
+      this.running = true;
+
+      this.ticker = new Thread(new Ticker(), name);
+      this.ticker.setDaemon(true);
+      this.ticker.start();
+   }
+
+   /**
+    * Get the tick
+    * @return The value in milliseconds
+    */
+   public long getTick()
+   {
+      return tick;
+   }
+
+   /**
+    * Schedule a task
+    * @param task The task
+    * @param delay The delay
+    * @param unit The unit of the delay
+    * @return The timeout
+    */
+   public Timeout schedule(Runnable task, long delay, TimeUnit unit)
+   {
+      return scheduleAt(task, System.currentTimeMillis() + unit.toMillis(delay));
+   }
+
+   /**
+    * Schedule a task at a deadline
+    * @param task The task
+    * @param deadline The deadline in milliseconds since the epoch
+    * @return The timeout
+    */
+   public Timeout scheduleAt(Runnable task, long deadline)
+   {
+      Timeout timeout = new Timeout(this, task, ceil(deadline, tick));
+      pending.offer(timeout);
+      return timeout;
+   }
+
+   /**
+    * Stop the wheel; the timeouts which haven't expired are discarded
+    */
+   public void stop()
+   {
+      running = false;
+      LockSupport.unpark(ticker);
+   }
+
+   /**
+    * Round a time up to a multiple of a unit
+    * @param time The time
+    * @param unit The unit
+    * @return The value
+    */
+   private static long ceil(long time, long unit)
+   {
+      long r = time % unit;
+      return r == 0 ? time : time - r + unit;
+   }
+
+   /**
+    * Add a timeout to the wheels, or run it when its deadline is reached
+    * @param timeout The timeout
+    */
+   private void add(Timeout timeout)
+   {
+      if (timeout.isCancelled())
+      {
+         cancelled.decrementAndGet();
+         return;
+      }
+
+      if (wheel.add(timeout))
+      {
+         held++;
+      }
+      else
+      {
+         timeout.expire();
+      }
+   }
+
+   /**
+    * Remove the cancelled timeouts from the buckets, once they make up half of them
+    */
+   private void purge()
+   {
+      int count = cancelled.get();
+      if (count >= PURGE_THRESHOLD && 2 * count >= held)
+      {
+         int removed = wheel.purge();
+         held -= removed;
+         cancelled.addAndGet(-removed);
+      }
+   }
+
+   /**
+    * A scheduled task
+    */
+   public static class Timeout
+   {
+      /** Waiting */
+      private static final int WAITING = 0;
+
+      /** Cancelled */
+      private static final int CANCELLED = 1;
+
+      /** Expired */
+      private static final int EXPIRED = 2;
+
+      /** The wheel */
+      private final TimingWheel wheel;
+
+      /** The task, released when the timeout is cancelled */
+      private Runnable task;
+
+      /** The deadline, rounded up to a tick */
+      private final long deadline;
+
+      /** The state */
+      private final AtomicInteger state;
+
+      /**
+       * Constructor
+       * @param wheel The wheel
+       * @param task The task
+       * @param deadline The deadline
+       */
+      Timeout(TimingWheel wheel, Runnable task, long deadline)
+      {
+         this.wheel = wheel;
+         this.task = task;
+         this.deadline = deadline;
+         this.state = new AtomicInteger(WAITING);
+      }
+
+      /**
+       * Get the deadline
+       * @return The value in milliseconds since the epoch
+       */
+      public long getDeadline()
+      {
+         return deadline;
+      }
+
+      /**
+       * Cancel the timeout
+       * @return True if the task won't run, false if it already ran
+       */
+      public boolean cancel()
+      {
+         if (state.compareAndSet(WAITING, CANCELLED))
+         {
+            task = null;
+            wheel.cancelled.incrementAndGet();
+            return true;
+         }
+
+         return state.get() == CANCELLED;
+      }
+
+      /**
+       * Is the timeout cancelled
+       * @return The value
+       */
+      public boolean isCancelled()
+      {
+         return state.get() == CANCELLED;
+      }
+
+      /**
+       * Has the timeout expired
+       * @return The value
+       */
+      public boolean isExpired()
+      {
+         return state.get() == EXPIRED;
+      }
+
+      /**
+       * Run the task, unless the timeout was cancelled
+       */
+      void expire()
+      {
+         if (state.compareAndSet(WAITING, EXPIRED))
+         {
+            try
+            {
+               task.run();
+            }
+            catch (Throwable t)
+            {
+               log.timeoutTaskFailed(task, t);
+            }
+         }
+      }
+   }
+
+   /**
+    * A wheel of buckets
+    */
+   private class Wheel
+   {
+      /** The width of a bucket in milliseconds */
+      private final long bucketWidth;
+
+      /** The time covered by the wheel */
+      private final long interval;
+
+      /** The buckets */
+      private final List<Timeout>[] buckets;
+
+      /** The start of the current bucket */
+      private long currentTime;
+
+      /** The overflow wheel */
+      private Wheel overflow;
+
+      /**
+       * Constructor
+       * @param bucketWidth The width of a bucket in milliseconds
+       * @param time The current time
+       */
+      @SuppressWarnings("unchecked")
+      Wheel(long bucketWidth, long time)
+      {
+         this.bucketWidth = bucketWidth;
+         this.interval = bucketWidth * wheelSize;
+         this.buckets = new List[wheelSize];
+         this.currentTime = time - (time % bucketWidth);
+      }
+
+      /**
+       * Add a timeout
+       * @param timeout The timeout
+       * @return False if the deadline of the timeout is reached, otherwise true
+       */
+      boolean add(Timeout timeout)
+      {
+         long deadline = timeout.getDeadline();
+
+         if (deadline <= currentTime)
+            return false;
+
+         if (deadline < currentTime + interval)
+         {
+            int index = (int)((deadline / bucketWidth) % wheelSize);
+            if (buckets[index] == null)
+               buckets[index] = new ArrayList<Timeout>();
+
+            buckets[index].add(timeout);
+            return true;
+         }
+
+         if (overflow == null)
+            overflow = new Wheel(interval, currentTime);
+
+         return overflow.add(timeout);
+      }
+
+      /**
+       * Advance the wheel. The overflow wheels cascade first, once the current time
+       * of this wheel is moved, so their timeouts land in the right buckets
+       * @param time The time, which is a multiple of the tick
+       */
+      void advance(long time)
+      {
+         long start = time - (time % bucketWidth);
+         boolean moved = start > currentTime;
+
+         if (moved)
+            currentTime = start;
+
+         if (overflow != null)
+            overflow.advance(time);
+
+         if (moved)
+         {
+            int index = (int)((start / bucketWidth) % wheelSize);
+            List<Timeout> bucket = buckets[index];
+            if (bucket != null)
+            {
+               buckets[index] = null;
+               held -= bucket.size();
+               for (Timeout timeout : bucket)
+               {
+                  TimingWheel.this.add(timeout);
+               }
+            }
+         }
+      }
+
+      /**
+       * Remove the cancelled timeouts from the buckets of this wheel and its overflow wheels
+       * @return The number of removed timeouts
+       */
+      int purge()
+      {
+         int removed = 0;
+
+         for (int i = 0; i < buckets.length; i++)
+         {
+            List<Timeout> bucket = buckets[i];
+            if (bucket != null)
+            {
+               List<Timeout> live = new ArrayList<Timeout>(bucket.size());
+               for (Timeout timeout : bucket)
+               {
+                  if (!timeout.isCancelled())
+                     live.add(timeout);
+               }
+
+               removed += bucket.size() - live.size();
+               buckets[i] = live.isEmpty() ? null : live;
+            }
+         }
+
+         if (overflow != null)
+            removed += overflow.purge();
+
+         return removed;
+      }
+   }
+
+   /**
+    * The ticker
+    */
+   private class Ticker implements Runnable
+   {
+      /**
+       * {@inheritDoc}
+       */
+      public void run()
+      {
+         long time = wheel.currentTime;
+
+         while (running)
+         {
+            long now = System.currentTimeMillis();
+
+            Timeout timeout = pending.poll();
+            while (timeout != null)
+            {
+               TimingWheel.this.add(timeout);
+               timeout = pending.poll();
+            }
+
+            purge();
+
+            while (time + tick <= now)
+            {
+               time += tick;
+               wheel.advance(time);
+            }
+
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(time + tick - now));
+         }
+      }
+   }
+}
@@ -0,0 +1,651 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.workmanager;
+
+import org.ironjacamar.core.CoreBundle;
+import org.ironjacamar.core.CoreLogger;
+import org.ironjacamar.core.api.util.LatencyHistogram;
+import org.ironjacamar.core.api.workmanager.WorkManager;
+import org.ironjacamar.core.api.workmanager.WorkManagerConfiguration;
+import org.ironjacamar.core.util.StripedHistogram;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.resource.spi.work.ExecutionContext;
+import javax.resource.spi.work.Work;
+import javax.resource.spi.work.WorkEvent;
+import javax.resource.spi.work.WorkException;
+import javax.resource.spi.work.WorkListener;
+import javax.resource.spi.work.WorkRejectedException;
+
+import org.jboss.logging.Logger;
+import org.jboss.logging.Messages;
+
+/**
+ * The base class for all work manager implementations. It accepts or rejects the
+ * work, fires the work events, and waits for the start or the completion of the work
+ * for startWork and doWork; the implementations only execute the accepted work.
+ *
+ * A work listener is notified of the acceptance before the work is executed, so the
+ * events of a work instance always arrive in the order of the specification.
+ *
+ * Work with the HintsContext.LONGRUNNING_HINT is executed apart from the short work, so
+ * long-polling work can't occupy the threads of the short work. Short work with the
+ * WorkManager.PRIORITY_HINT overtakes the queued short work with a lower priority.
+ */
+public abstract class AbstractWorkManager implements WorkManager
+{
+   /** The logger */
+   private static CoreLogger log = Logger.getMessageLogger(CoreLogger.class, AbstractWorkManager.class.getName());
+
+   /** The bundle */
+   private static CoreBundle bundle = Messages.getBundle(CoreBundle.class);
+
+   /** The name */
+   protected final String name;
+
+   /** The configuration */
+   protected final WorkManagerConfiguration wmc;
+
+   /** The number of accepted work instances which haven't started */
+   private final AtomicInteger queued;
+
+   /** The number of running work instances */
+   private final AtomicInteger active;
+
+   /** Shutdown */
+   private final AtomicBoolean shutdown;
+
+   /** The time between the start timeouts and the rejections of the work */
+   private final StripedHistogram startTimeoutLatency;
+
+   /** The lanes of the prioritized work */
+   private final PriorityLanes lanes;
+
+   /**
+    * Constructor
+    * @param name The name
+    * @param wmc The configuration
+    */
+   protected AbstractWorkManager(String name, WorkManagerConfiguration wmc)
+   {
+      this.name = name;
+      this.wmc = wmc;
+      this.queued = new AtomicInteger(0);
+      this.active = new AtomicInteger(0);
+      this.shutdown = new AtomicBoolean(false);
+      this.startTimeoutLatency = new StripedHistogram();
+      this.lanes = new PriorityLanes();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public String getName()
+   {
+      return name;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public WorkManagerConfiguration getConfiguration()
+   {
+      return wmc;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public int getQueuedCount()
+   {
+      return queued.get();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public int getActiveCount()
+   {
+      return active.get();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public LatencyHistogram getStartTimeoutLatency()
+   {
+      return startTimeoutLatency.snapshot();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void doWork(Work work) throws WorkException
+   {
+      doWork(work, INDEFINITE, null, null);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void doWork(Work work, long startTimeout, ExecutionContext execContext, WorkListener workListener)
+      throws WorkException
+   {
+      WorkWrapper ww = submit(work, startTimeout, execContext, workListener, false, true);
+      waitFor(ww.getCompleted(), work);
+
+      if (ww.getWorkException() != null)
+         throw ww.getWorkException();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public long startWork(Work work) throws WorkException
+   {
+      return startWork(work, INDEFINITE, null, null);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public long startWork(Work work, long startTimeout, ExecutionContext execContext, WorkListener workListener)
+      throws WorkException
+   {
+      WorkWrapper ww = submit(work, startTimeout, execContext, workListener, true, false);
+      waitFor(ww.getStarted(), work);
+
+      if (ww.isRejected())
+         throw ww.getWorkException();
+
+      return ww.getStartDuration();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void scheduleWork(Work work) throws WorkException
+   {
+      scheduleWork(work, INDEFINITE, null, null);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void scheduleWork(Work work, long startTimeout, ExecutionContext execContext, WorkListener workListener)
+      throws WorkException
+   {
+      submit(work, startTimeout, execContext, workListener, false, false);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public int scheduleBatch(Collection<? extends Work> work) throws WorkException
+   {
+      return scheduleBatch(work, INDEFINITE, null, null);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public int scheduleBatch(Collection<? extends Work> work, long startTimeout, ExecutionContext execContext,
+                            WorkListener workListener)
+      throws WorkException
+   {
+      if (work == null)
+         throw new WorkRejectedException(bundle.workIsNull());
+
+      for (Work w : work)
+      {
+         if (w == null)
+            throw new WorkRejectedException(bundle.workIsNull());
+      }
+
+      if (work.isEmpty())
+         return 0;
+
+      WorkRejectedException wre = admit(execContext);
+      if (wre == null)
+      {
+         int size = work.size();
+         int count = enqueue(size);
+         if (count < size)
+            wre = new WorkRejectedException(bundle.workQueueFull(name, wmc.getMaxQueued()), WorkException.INTERNAL);
+
+         List<WorkWrapper> batch = new ArrayList<WorkWrapper>(count);
+         Iterator<? extends Work> it = work.iterator();
+         for (int i = 0; i < count; i++)
+         {
+            WorkWrapper ww = accept(it.next(), startTimeout, workListener, false, false);
+            if (ww.isLongRunning())
+            {
+               try
+               {
+                  executeLongRunning(ww);
+               }
+               catch (RejectedExecutionException ree)
+               {
+                  ww.reject(notExecuted(ww, ree));
+               }
+            }
+            else
+            {
+               if (ww.getPriority() > Thread.NORM_PRIORITY && isPrioritized())
+                  lanes.offer(ww);
+
+               batch.add(ww);
+            }
+         }
+
+         while (it.hasNext())
+         {
+            rejected(it.next(), workListener, wre);
+         }
+
+         if (!batch.isEmpty())
+         {
+            try
+            {
+               executeBatch(batch);
+            }
+            catch (RejectedExecutionException ree)
+            {
+               boolean rejected = false;
+               for (WorkWrapper ww : batch)
+               {
+                  if (ww.reject(notExecuted(ww, ree)))
+                     rejected = true;
+               }
+
+               if (rejected)
+                  throw notExecuted(batch.get(0), ree);
+            }
+         }
+
+         if (count > 0)
+            return count;
+      }
+      else
+      {
+         for (Work w : work)
+         {
+            rejected(w, workListener, wre);
+         }
+      }
+
+      throw wre;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void shutdown()
+   {
+      if (shutdown.compareAndSet(false, true))
+         stop();
+   }
+
+   /**
+    * Is the work manager shutdown
+    * @return The value
+    */
+   public boolean isShutdown()
+   {
+      return shutdown.get();
+   }
+
+   /**
+    * Execute an accepted work instance
+    * @param ww The work wrapper
+    * @exception RejectedExecutionException Thrown if the work can't be executed
+    */
+   protected abstract void execute(WorkWrapper ww) throws RejectedExecutionException;
+
+   /**
+    * Execute a batch of accepted work. The default executes each work instance
+    * @param batch The work wrappers
+    * @exception RejectedExecutionException Thrown if the work can't be executed
+    */
+   protected void executeBatch(List<WorkWrapper> batch) throws RejectedExecutionException
+   {
+      for (WorkWrapper ww : batch)
+      {
+         execute(ww);
+      }
+   }
+
+   /**
+    * Execute an accepted long-running work instance, apart from the short work
+    * @param ww The work wrapper
+    * @exception RejectedExecutionException Thrown if the work can't be executed
+    */
+   protected abstract void executeLongRunning(WorkWrapper ww) throws RejectedExecutionException;
+
+   /**
+    * Stop the execution of new work. The accepted work is still executed
+    */
+   protected abstract void stop();
+
+   /**
+    * Does prioritized short work overtake the queued short work through the lanes. The
+    * default is true; an implementation which never queues work in front of a thread
+    * has nothing to overtake
+    * @return The value
+    */
+   protected boolean isPrioritized()
+   {
+      return true;
+   }
+
+   /**
+    * Wait for a latch
+    * @param latch The latch
+    * @exception InterruptedException Thrown if the thread is interrupted
+    */
+   protected void await(CountDownLatch latch) throws InterruptedException
+   {
+      latch.await();
+   }
+
+   /**
+    * Accept a work instance and execute it
+    * @param work The work
+    * @param startTimeout The start timeout in milliseconds
+    * @param execContext The execution context, or <code>null</code>
+    * @param listener The work listener, or <code>null</code>
+    * @param waitStart Will the caller wait for the start
+    * @param waitCompletion Will the caller wait for the completion
+    * @return The work wrapper
+    * @exception WorkException Thrown if the work is rejected
+    */
+   private WorkWrapper submit(Work work, long startTimeout, ExecutionContext execContext, WorkListener listener,
+                              boolean waitStart, boolean waitCompletion)
+      throws WorkException
+   {
+      if (work == null)
+         throw new WorkRejectedException(bundle.workIsNull());
+
+      WorkRejectedException wre = admit(execContext);
+      if (wre != null)
+         throw rejected(work, listener, wre);
+
+      if (enqueue(1) == 0)
+         throw rejected(work, listener, new WorkRejectedException(
+            bundle.workQueueFull(name, wmc.getMaxQueued()), WorkException.INTERNAL));
+
+      WorkWrapper ww = accept(work, startTimeout, listener, waitStart, waitCompletion);
+      try
+      {
+         if (ww.isLongRunning())
+         {
+            executeLongRunning(ww);
+         }
+         else
+         {
+            if (ww.getPriority() > Thread.NORM_PRIORITY && isPrioritized())
+               lanes.offer(ww);
+
+            execute(ww);
+         }
+      }
+      catch (RejectedExecutionException ree)
+      {
+         wre = notExecuted(ww, ree);
+         if (ww.reject(wre))
+            throw wre;
+      }
+
+      return ww;
+   }
+
+   /**
+    * Check if work can be accepted with an execution context
+    * @param execContext The execution context, or <code>null</code>
+    * @return The exception to reject the work with, or <code>null</code> if the work can be accepted
+    */
+   private WorkRejectedException admit(ExecutionContext execContext)
+   {
+      if (execContext != null && execContext.getXid() != null)
+         return new WorkRejectedException(bundle.transactionInflowNotSupported(execContext.getXid()),
+                                          WorkException.TX_RECREATE_FAILED);
+
+      if (shutdown.get())
+         return new WorkRejectedException(bundle.workManagerIsShutdown(name), WorkException.INTERNAL);
+
+      return null;
+   }
+
+   /**
+    * Accept a work instance which is counted as queued
+    * @param work The work
+    * @param startTimeout The start timeout in milliseconds
+    * @param listener The work listener, or <code>null</code>
+    * @param waitStart Will the caller wait for the start
+    * @param waitCompletion Will the caller wait for the completion
+    * @return The work wrapper
+    */
+   private WorkWrapper accept(Work work, long startTimeout, WorkListener listener,
+                              boolean waitStart, boolean waitCompletion)
+   {
+      fireWorkEvent(listener, WorkEvent.WORK_ACCEPTED, work, null, UNKNOWN);
+
+      WorkHints hints = new WorkHints(work);
+      WorkWrapper ww = new WorkWrapper(this, work, startTimeout < 0 ? INDEFINITE : startTimeout, listener,
+                                       hints.getPriority(), hints.isLongRunning(), waitStart, waitCompletion);
+      ww.scheduleStartTimeout(WorkTimer.getTimingWheel());
+      return ww;
+   }
+
+   /**
+    * Create the exception for an accepted work instance which can't be executed
+    * @param ww The work wrapper
+    * @param ree The exception of the executor
+    * @return The value
+    */
+   private WorkRejectedException notExecuted(WorkWrapper ww, RejectedExecutionException ree)
+   {
+      String msg = ww.isLongRunning() && !shutdown.get() ?
+         bundle.longRunningWorkFull(name, wmc.getMaxLongRunning()) : bundle.workManagerIsShutdown(name);
+      WorkRejectedException wre = new WorkRejectedException(msg, ree);
+      wre.setErrorCode(WorkException.INTERNAL);
+      return wre;
+   }
+
+   /**
+    * Count work instances as queued, as far as the queue has room
+    * @param count The number of work instances
+    * @return The number of work instances which were counted
+    */
+   private int enqueue(int count)
+   {
+      int max = wmc.getMaxQueued();
+      if (max <= 0)
+      {
+         queued.addAndGet(count);
+         return count;
+      }
+
+      for (;;)
+      {
+         int current = queued.get();
+         int n = Math.min(count, max - current);
+         if (n <= 0)
+            return 0;
+
+         if (queued.compareAndSet(current, current + n))
+            return n;
+      }
+   }
+
+   /**
+    * Notify the listener of a work instance which is rejected before it is accepted
+    * @param work The work
+    * @param listener The work listener, or <code>null</code>
+    * @param wre The exception
+    * @return The exception
+    */
+   private WorkRejectedException rejected(Work work, WorkListener listener, WorkRejectedException wre)
+   {
+      fireWorkEvent(listener, WorkEvent.WORK_REJECTED, work, wre, UNKNOWN);
+      return wre;
+   }
+
+   /**
+    * Wait for the start or the completion of a work instance
+    * @param latch The latch
+    * @param work The work
+    * @exception WorkException Thrown if the thread is interrupted
+    */
+   private void waitFor(CountDownLatch latch, Work work) throws WorkException
+   {
+      try
+      {
+         await(latch);
+      }
+      catch (InterruptedException ie)
+      {
+         Thread.currentThread().interrupt();
+         throw new WorkException(bundle.interruptedWhileWaitingForWork(work), ie);
+      }
+   }
+
+   /**
+    * Get the lanes of the prioritized work
+    * @return The value
+    */
+   PriorityLanes getLanes()
+   {
+      return lanes;
+   }
+
+   /**
+    * Run the queued work with a priority above a priority, highest first
+    * @param priority The priority
+    */
+   void runPrioritized(int priority)
+   {
+      WorkWrapper ww = lanes.poll(priority);
+      while (ww != null)
+      {
+         ww.run();
+         ww = lanes.poll(priority);
+      }
+   }
+
+   /**
+    * A work instance was rejected because its start timeout passed
+    * @param ww The work wrapper
+    * @param late The time between the start timeout and the rejection in milliseconds
+    */
+   void timedOut(WorkWrapper ww, long late)
+   {
+      startTimeoutLatency.record(TimeUnit.MILLISECONDS.toNanos(late));
+   }
+
+   /**
+    * A work instance has left the queue
+    * @param ww The work wrapper
+    */
+   void dequeued(WorkWrapper ww)
+   {
+      queued.decrementAndGet();
+
+      if (ww.leaveLane())
+         lanes.remove(ww);
+   }
+
+   /**
+    * A work instance has started
+    * @param ww The work wrapper
+    */
+   void started(WorkWrapper ww)
+   {
+      active.incrementAndGet();
+   }
+
+   /**
+    * A work instance has completed
+    * @param ww The work wrapper
+    */
+   void finished(WorkWrapper ww)
+   {
+      active.decrementAndGet();
+   }
+
+   /**
+    * Notify a work listener
+    * @param listener The work listener, or <code>null</code>
+    * @param type The type of the event
+    * @param work The work
+    * @param e The exception, or <code>null</code>
+    * @param startDuration The start duration
+    */
+   void fireWorkEvent(WorkListener listener, int type, Work work, WorkException e, long startDuration)
+   {
+      if (listener == null)
+         return;
+
+      WorkEvent event = new WorkEvent(this, type, work, e, startDuration);
+      try
+      {
+         switch (type)
+         {
+            case WorkEvent.WORK_ACCEPTED:
+               listener.workAccepted(event);
+               break;
+            case WorkEvent.WORK_REJECTED:
+               listener.workRejected(event);
+               break;
+            case WorkEvent.WORK_STARTED:
+               listener.workStarted(event);
+               break;
+            default:
+               listener.workCompleted(event);
+               break;
+         }
+      }
+      catch (Throwable t)
+      {
+         log.workListenerFailed(listener, t);
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String toString()
+   {
+      return getClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(this)) +
+         "[name=" + name + " queued=" + queued.get() + " active=" + active.get() + "]";
+   }
+}
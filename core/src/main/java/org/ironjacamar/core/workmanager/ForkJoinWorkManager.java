@@ -0,0 +1,277 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.workmanager;
+
+import org.ironjacamar.core.api.workmanager.WorkManagerConfiguration;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A work manager on a work-stealing ForkJoinPool.
+ *
+ * Every worker has its own deque. Work submitted from outside the pool, like from the
+ * socket reader of an inbound resource adapter, goes to the submission queues of the
+ * pool, which are striped over the submitting threads; work submitted from a worker
+ * is pushed onto the deque of that worker. Idle workers steal from the others, so a
+ * burst of short work doesn't contend on a single queue. The pool runs in async mode,
+ * so the work of each deque runs in submission order.
+ *
+ * A worker which waits in doWork or startWork is compensated by the pool, so nested
+ * work can't starve it.
+ *
+ * A batch of work submitted from outside the pool is a single submission; the worker
+ * which takes it pushes the work onto its own deque, from where the idle workers steal.
+ *
+ * Long-running work runs on an elastic pool of its own, which grows with the
+ * long-running work and shrinks when it completes.
+ */
+public class ForkJoinWorkManager extends AbstractWorkManager
+{
+   /** The pool */
+   private final ForkJoinPool pool;
+
+   /** The executor of the long-running work */
+   private final ThreadPoolExecutor longRunning;
+
+   /**
+    * Constructor
+    * @param name The name
+    * @param wmc The configuration
+    */
+   public ForkJoinWorkManager(String name, WorkManagerConfiguration wmc)
+   {
+      super(name, wmc);
+      this.pool = new ForkJoinPool(wmc.getParallelism(), new WorkerThreadFactory(name), null, true);
+      this.longRunning = new ThreadPoolExecutor(0, wmc.getMaxLongRunning() > 0 ? wmc.getMaxLongRunning() :
+                                                Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
+                                                new SynchronousQueue<Runnable>(),
+                                                new LongRunningThreadFactory(name));
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   protected void execute(WorkWrapper ww) throws RejectedExecutionException
+   {
+      if (ForkJoinTask.getPool() == pool)
+      {
+         ww.fork();
+      }
+      else
+      {
+         pool.execute((ForkJoinTask<Void>)ww);
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   protected void executeBatch(List<WorkWrapper> batch) throws RejectedExecutionException
+   {
+      if (ForkJoinTask.getPool() == pool)
+      {
+         forkAll(batch);
+      }
+      else
+      {
+         pool.execute(new BatchTask(batch));
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   protected void executeLongRunning(WorkWrapper ww) throws RejectedExecutionException
+   {
+      longRunning.execute(ww);
+   }
+
+   /**
+    * Push a batch of work onto the deque of the current worker
+    * @param batch The work wrappers
+    */
+   private static void forkAll(List<WorkWrapper> batch)
+   {
+      for (WorkWrapper ww : batch)
+      {
+         ww.fork();
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   protected void stop()
+   {
+      pool.shutdown();
+      longRunning.shutdown();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   protected void await(CountDownLatch latch) throws InterruptedException
+   {
+      ForkJoinPool.managedBlock(new LatchBlocker(latch));
+   }
+
+   /**
+    * Forks a batch of work from inside the pool
+    */
+   private static class BatchTask extends RecursiveAction
+   {
+      /** Serial version uid */
+      private static final long serialVersionUID = 1L;
+
+      /** The work wrappers */
+      private final transient List<WorkWrapper> batch;
+
+      /**
+       * Constructor
+       * @param batch The work wrappers
+       */
+      BatchTask(List<WorkWrapper> batch)
+      {
+         this.batch = batch;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      protected void compute()
+      {
+         forkAll(batch);
+      }
+   }
+
+   /**
+    * Blocks on a latch, so the pool can compensate a waiting worker
+    */
+   private static class LatchBlocker implements ForkJoinPool.ManagedBlocker
+   {
+      /** The latch */
+      private final CountDownLatch latch;
+
+      /**
+       * Constructor
+       * @param latch The latch
+       */
+      LatchBlocker(CountDownLatch latch)
+      {
+         this.latch = latch;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public boolean block() throws InterruptedException
+      {
+         latch.await();
+         return true;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public boolean isReleasable()
+      {
+         return latch.getCount() == 0;
+      }
+   }
+
+   /**
+    * Names the worker threads after the work manager
+    */
+   private static class WorkerThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory
+   {
+      /** The name of the work manager */
+      private final String name;
+
+      /** The thread number */
+      private final AtomicInteger number;
+
+      /**
+       * Constructor
+       * @param name The name of the work manager
+       */
+      WorkerThreadFactory(String name)
+      {
+         this.name = name;
+         this.number = new AtomicInteger(1);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public ForkJoinWorkerThread newThread(ForkJoinPool pool)
+      {
+         ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+         t.setName("IronJacamar WorkManager " + name + "-" + number.getAndIncrement());
+         return t;
+      }
+   }
+
+   /**
+    * Names the threads of the long-running work after the work manager
+    */
+   private static class LongRunningThreadFactory implements ThreadFactory
+   {
+      /** The name of the work manager */
+      private final String name;
+
+      /** The thread number */
+      private final AtomicInteger number;
+
+      /**
+       * Constructor
+       * @param name The name of the work manager
+       */
+      LongRunningThreadFactory(String name)
+      {
+         this.name = name;
+         this.number = new AtomicInteger(1);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public Thread newThread(Runnable r)
+      {
+         Thread t = new Thread(r, "IronJacamar WorkManager " + name + " long-running-" + number.getAndIncrement());
+         t.setDaemon(true);
+         return t;
+      }
+   }
+}
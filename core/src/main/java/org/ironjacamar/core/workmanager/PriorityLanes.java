@@ -0,0 +1,118 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ironjacamar.core.workmanager;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The lanes of the work with a priority above Thread.NORM_PRIORITY, one per priority.
+ *
+ * A prioritized work instance is both executed as any other work and put in its lane.
+ * Once a worker has started a work instance, and before it runs it, the worker runs the
+ * queued work of the lanes above its priority, highest first, so prioritized work
+ * overtakes the work which is queued ahead of it, without a shared ordered queue in front
+ * of all the work. The work instance has started already, so the prioritized work can't
+ * make it reach its start timeout. Whichever of the two comes first runs the prioritized
+ * work; the other finds it started and skips it.
+ *
+ * A work instance leaves its lane when it is taken from the lane, or when it starts or
+ * is rejected otherwise, so the lanes only hold queued work.
+ */
+class PriorityLanes
+{
+   /** The lanes, from Thread.NORM_PRIORITY + 1 to Thread.MAX_PRIORITY */
+   private final ConcurrentLinkedQueue<WorkWrapper>[] lanes;
+
+   /** The number of work instances in the lanes */
+   private final AtomicInteger size;
+
+   /**
+    * Constructor
+    */
+   @SuppressWarnings("unchecked")
+   PriorityLanes()
+   {
+      this.lanes = new ConcurrentLinkedQueue[Thread.MAX_PRIORITY - Thread.NORM_PRIORITY];
+      for (int i = 0; i < lanes.length; i++)
+      {
+         lanes[i] = new ConcurrentLinkedQueue<WorkWrapper>();
+      }
+      this.size = new AtomicInteger(0);
+   }
+
+   /**
+    * Put a work instance in the lane of its priority
+    * @param ww The work wrapper, with a priority above Thread.NORM_PRIORITY
+    */
+   void offer(WorkWrapper ww)
+   {
+      ww.enterLane();
+      lanes[ww.getPriority() - Thread.NORM_PRIORITY - 1].offer(ww);
+      size.incrementAndGet();
+
+      if (!ww.isQueued() && ww.leaveLane())
+         remove(ww);
+   }
+
+   /**
+    * Remove a work instance, which has left the queue, from its lane
+    * @param ww The work wrapper
+    */
+   void remove(WorkWrapper ww)
+   {
+      if (lanes[ww.getPriority() - Thread.NORM_PRIORITY - 1].remove(ww))
+         size.decrementAndGet();
+   }
+
+   /**
+    * Take the work instance with the highest priority above a priority
+    * @param priority The priority
+    * @return The work wrapper, or <code>null</code> if the lanes above the priority are empty
+    */
+   WorkWrapper poll(int priority)
+   {
+      if (size.get() == 0)
+         return null;
+
+      for (int i = lanes.length - 1; i >= priority - Thread.NORM_PRIORITY; i--)
+      {
+         WorkWrapper ww = lanes[i].poll();
+         if (ww != null)
+         {
+            size.decrementAndGet();
+            ww.leaveLane();
+            return ww;
+         }
+      }
+
+      return null;
+   }
+
+   /**
+    * Get the number of work instances in the lanes
+    * @return The value
+    */
+   int size()
+   {
+      return size.get();
+   }
+}
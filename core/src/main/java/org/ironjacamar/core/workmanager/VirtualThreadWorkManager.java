@@ -0,0 +1,261 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.workmanager;
+
+import org.ironjacamar.core.CoreBundle;
+import org.ironjacamar.core.api.workmanager.WorkManagerConfiguration;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.resource.spi.work.WorkException;
+import javax.resource.spi.work.WorkManager;
+import javax.resource.spi.work.WorkRejectedException;
+
+import org.jboss.logging.Messages;
+
+/**
+ * A work manager which runs each work instance on its own virtual thread.
+ *
+ * Work which blocks, like on a socket or a connection of a pool, parks its virtual
+ * thread and frees the carrier thread, so the number of work instances in flight isn't
+ * bound by a number of platform threads. The maximum concurrency, when set, caps the
+ * number of running work instances with a semaphore; the others wait for a permit on
+ * their own virtual thread, and are rejected when their start timeout passes first.
+ * Long-running work doesn't take a permit.
+ *
+ * Virtual threads are created through reflection, so the work manager stays loadable
+ * on runtimes without them; {@link #isSupported} tells if they are available. Instances
+ * are created by the {@link WorkManagerFactory}, which falls back to the
+ * {@link ForkJoinWorkManager} when they aren't.
+ */
+public class VirtualThreadWorkManager extends AbstractWorkManager
+{
+   /** The bundle */
+   private static CoreBundle bundle = Messages.getBundle(CoreBundle.class);
+
+   /** Thread.ofVirtual, or <code>null</code> if not available */
+   private static final Method OF_VIRTUAL;
+
+   /** Thread.Builder.name(String, long) */
+   private static final Method NAME;
+
+   /** Thread.Builder.factory */
+   private static final Method FACTORY;
+
+   /** The thread factory */
+   private final ThreadFactory factory;
+
+   /** The permits of the running work, or <code>null</code> for no limit */
+   private final Semaphore permits;
+
+   static
+   {
+      Method ofVirtual = null;
+      Method name = null;
+      Method factory = null;
+      try
+      {
+         Class<?> builder = Class.forName("java.lang.Thread$Builder");
+         ofVirtual = Thread.class.getMethod("ofVirtual");
+         name = builder.getMethod("name", String.class, long.class);
+         factory = builder.getMethod("factory");
+      }
+      catch (Throwable t)
+      {
+         // No virtual threads
+         ofVirtual = null;
+      }
+
+      OF_VIRTUAL = ofVirtual;
+      NAME = name;
+      FACTORY = factory;
+   }
+
+   /**
+    * Constructor
+    * @param name The name
+    * @param wmc The configuration
+    * @param factory The thread factory
+    */
+   VirtualThreadWorkManager(String name, WorkManagerConfiguration wmc, ThreadFactory factory)
+   {
+      super(name, wmc);
+      this.factory = factory;
+      this.permits = wmc.getMaxConcurrency() > 0 ? new Semaphore(wmc.getMaxConcurrency()) : null;
+   }
+
+   /**
+    * Are virtual threads supported by the runtime
+    * @return The value
+    */
+   public static boolean isSupported()
+   {
+      return OF_VIRTUAL != null;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   protected void execute(WorkWrapper ww) throws RejectedExecutionException
+   {
+      Thread t = factory.newThread(new Runner(ww));
+      if (t == null)
+         throw new RejectedExecutionException();
+
+      t.start();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   protected void executeLongRunning(WorkWrapper ww) throws RejectedExecutionException
+   {
+      Thread t = factory.newThread(ww);
+      if (t == null)
+         throw new RejectedExecutionException();
+
+      t.start();
+   }
+
+   /**
+    * {@inheritDoc}
+    *
+    * Each work instance owns its thread, so there is no pool to stop; the accepted
+    * work runs to completion.
+    */
+   protected void stop()
+   {
+   }
+
+   /**
+    * {@inheritDoc}
+    *
+    * Without a maximum concurrency each work instance starts on its own thread at once,
+    * so prioritized work would only make other work wait. With one, the work waiting for
+    * a permit is overtaken once a work instance has its permit and has started.
+    */
+   @Override
+   protected boolean isPrioritized()
+   {
+      return permits != null;
+   }
+
+   /**
+    * Create a virtual thread factory
+    * @param prefix The prefix of the thread names
+    * @return The factory, or <code>null</code> if the runtime can't create virtual threads
+    */
+   static ThreadFactory createThreadFactory(String prefix)
+   {
+      if (OF_VIRTUAL == null)
+         return null;
+
+      try
+      {
+         Object builder = OF_VIRTUAL.invoke(null);
+         builder = NAME.invoke(builder, prefix, 1L);
+         return (ThreadFactory)FACTORY.invoke(builder);
+      }
+      catch (Exception e)
+      {
+         return null;
+      }
+   }
+
+   /**
+    * Runs a work instance once it gets a permit
+    */
+   private class Runner implements Runnable
+   {
+      /** The work wrapper */
+      private final WorkWrapper ww;
+
+      /**
+       * Constructor
+       * @param ww The work wrapper
+       */
+      Runner(WorkWrapper ww)
+      {
+         this.ww = ww;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void run()
+      {
+         if (permits == null)
+         {
+            ww.run();
+            return;
+         }
+
+         if (acquire())
+         {
+            try
+            {
+               ww.run();
+            }
+            finally
+            {
+               permits.release();
+            }
+         }
+      }
+
+      /**
+       * Acquire a permit, within the start timeout of the work. The work is rejected
+       * when the start timeout passes first
+       * @return True if a permit was acquired, otherwise false
+       */
+      private boolean acquire()
+      {
+         try
+         {
+            long timeout = ww.getStartTimeout();
+            if (timeout == WorkManager.INDEFINITE)
+            {
+               permits.acquire();
+               return true;
+            }
+
+            long remaining = ww.getAccepted() + timeout - System.currentTimeMillis();
+            if (permits.tryAcquire(Math.max(0L, remaining), TimeUnit.MILLISECONDS))
+               return true;
+
+            ww.rejectTimedOut();
+         }
+         catch (InterruptedException ie)
+         {
+            ww.reject(new WorkRejectedException(bundle.interruptedWhileWaitingForWork(ww.getWork()),
+                                                WorkException.INTERNAL));
+         }
+
+         return false;
+      }
+   }
+}
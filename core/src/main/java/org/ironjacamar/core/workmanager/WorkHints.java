@@ -0,0 +1,122 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ironjacamar.core.workmanager;
+
+import org.ironjacamar.core.api.workmanager.WorkManager;
+
+import java.io.Serializable;
+import java.util.List;
+
+import javax.resource.spi.work.HintsContext;
+import javax.resource.spi.work.Work;
+import javax.resource.spi.work.WorkContext;
+import javax.resource.spi.work.WorkContextProvider;
+
+/**
+ * Reads the hints of a work instance from the HintsContext it provides
+ */
+class WorkHints
+{
+   /** The hints */
+   private final HintsContext hints;
+
+   /**
+    * Constructor
+    * @param work The work
+    */
+   WorkHints(Work work)
+   {
+      this.hints = find(work);
+   }
+
+   /**
+    * Is the work long-running
+    * @return True if the work has the HintsContext.LONGRUNNING_HINT set to true
+    */
+   boolean isLongRunning()
+   {
+      if (hints == null)
+         return false;
+
+      Serializable value = hints.getHints().get(HintsContext.LONGRUNNING_HINT);
+      if (value instanceof Boolean)
+         return ((Boolean)value).booleanValue();
+
+      return value != null && Boolean.parseBoolean(value.toString());
+   }
+
+   /**
+    * Get the priority
+    * @return The value of the WorkManager.PRIORITY_HINT, from Thread.NORM_PRIORITY to
+    *         Thread.MAX_PRIORITY; Thread.NORM_PRIORITY if the hint isn't set or is invalid
+    */
+   int getPriority()
+   {
+      if (hints == null)
+         return Thread.NORM_PRIORITY;
+
+      Serializable value = hints.getHints().get(WorkManager.PRIORITY_HINT);
+      if (value == null)
+         return Thread.NORM_PRIORITY;
+
+      int priority;
+      if (value instanceof Number)
+      {
+         priority = ((Number)value).intValue();
+      }
+      else
+      {
+         try
+         {
+            priority = Integer.parseInt(value.toString().trim());
+         }
+         catch (NumberFormatException nfe)
+         {
+            return Thread.NORM_PRIORITY;
+         }
+      }
+
+      return Math.max(Thread.NORM_PRIORITY, Math.min(Thread.MAX_PRIORITY, priority));
+   }
+
+   /**
+    * Find the hints context of a work instance
+    * @param work The work
+    * @return The value, or <code>null</code>
+    */
+   private static HintsContext find(Work work)
+   {
+      if (!(work instanceof WorkContextProvider))
+         return null;
+
+      List<WorkContext> contexts = ((WorkContextProvider)work).getWorkContexts();
+      if (contexts == null)
+         return null;
+
+      for (WorkContext context : contexts)
+      {
+         if (context instanceof HintsContext)
+            return (HintsContext)context;
+      }
+
+      return null;
+   }
+}
@@ -0,0 +1,67 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.workmanager;
+
+import org.ironjacamar.core.CoreLogger;
+import org.ironjacamar.core.api.workmanager.WorkManager;
+import org.ironjacamar.core.api.workmanager.WorkManagerConfiguration;
+
+import java.util.concurrent.ThreadFactory;
+
+import org.jboss.logging.Logger;
+
+/**
+ * The work manager factory
+ */
+public class WorkManagerFactory
+{
+   /** The logger */
+   private static CoreLogger log = Logger.getMessageLogger(CoreLogger.class, WorkManagerFactory.class.getName());
+
+   /**
+    * Private constructor
+    */
+   private WorkManagerFactory()
+   {
+   }
+
+   /**
+    * Create a work manager
+    * @param name The name of the work manager
+    * @param wmc The work manager configuration
+    * @return The work manager; a ForkJoinWorkManager, with a warning, when virtual threads
+    *         are requested but the runtime can't create them
+    */
+   public static WorkManager createWorkManager(String name, WorkManagerConfiguration wmc)
+   {
+      if (wmc.isVirtualThreads())
+      {
+         ThreadFactory tf = VirtualThreadWorkManager.createThreadFactory("IronJacamar WorkManager " + name + "-");
+         if (tf != null)
+            return new VirtualThreadWorkManager(name, wmc, tf);
+
+         log.virtualThreadsNotSupported(name);
+      }
+
+      return new ForkJoinWorkManager(name, wmc);
+   }
+}
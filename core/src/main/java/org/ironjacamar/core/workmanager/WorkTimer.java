@@ -0,0 +1,104 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ironjacamar.core.workmanager;
+
+import org.ironjacamar.core.util.TimingWheel;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The work timer, which owns the timing wheel for the start timeouts of the work of
+ * all the work managers. The tick is fine grained, so a work instance is rejected at
+ * most two ticks after its start timeout passes. The work listeners are notified of
+ * those rejections by a few notifier threads, away from the thread of the wheel
+ */
+class WorkTimer
+{
+   /** The tick of the timing wheel in milliseconds */
+   static final long TICK = 10L;
+
+   /** The number of buckets of each wheel */
+   private static final int WHEEL_SIZE = 512;
+
+   /** The number of notifier threads */
+   private static final int NOTIFIERS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+   /** The timing wheel */
+   private static final TimingWheel WHEEL = new TimingWheel("IronJacamar WorkTimer", TICK, WHEEL_SIZE);
+
+   /** The executor of the notifications */
+   private static final ThreadPoolExecutor NOTIFIER;
+
+   static
+   {
+      NOTIFIER = new ThreadPoolExecutor(NOTIFIERS, NOTIFIERS, 60L, TimeUnit.SECONDS,
+                                        new LinkedBlockingQueue<Runnable>(), new NotifierThreadFactory());
+      NOTIFIER.allowCoreThreadTimeOut(true);
+   }
+
+   /**
+    * Private constructor
+    */
+   private WorkTimer()
+   {
+   }
+
+   /**
+    * Get the timing wheel
+    * @return The value
+    */
+   static TimingWheel getTimingWheel()
+   {
+      return WHEEL;
+   }
+
+   /**
+    * Execute a notification
+    * @param task The task
+    */
+   static void execute(Runnable task)
+   {
+      NOTIFIER.execute(task);
+   }
+
+   /**
+    * The thread factory of the notifier
+    */
+   static class NotifierThreadFactory implements ThreadFactory
+   {
+      /** The thread number */
+      private final AtomicInteger number = new AtomicInteger(1);
+
+      /**
+       * {@inheritDoc}
+       */
+      public Thread newThread(Runnable r)
+      {
+         Thread t = new Thread(r, "IronJacamar WorkTimer Notifier-" + number.getAndIncrement());
+         t.setDaemon(true);
+         return t;
+      }
+   }
+}
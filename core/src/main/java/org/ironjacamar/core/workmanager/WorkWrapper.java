@@ -0,0 +1,482 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.workmanager;
+
+import org.ironjacamar.core.CoreBundle;
+import org.ironjacamar.core.util.TimingWheel;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.resource.spi.work.Work;
+import javax.resource.spi.work.WorkCompletedException;
+import javax.resource.spi.work.WorkEvent;
+import javax.resource.spi.work.WorkException;
+import javax.resource.spi.work.WorkListener;
+import javax.resource.spi.work.WorkManager;
+import javax.resource.spi.work.WorkRejectedException;
+
+import org.jboss.logging.Messages;
+
+/**
+ * An accepted work instance. The wrapper is a ForkJoinTask, so a work manager on a
+ * ForkJoinPool can push it onto a worker deque as is; other executors run it as a Runnable.
+ *
+ * The wrapper is started or rejected exactly once. The latches, which only exist when
+ * the submitter waits, are released when the work starts, completes or is rejected.
+ * Before a short work instance starts, the queued work with a higher priority runs.
+ *
+ * A start timeout is enforced by a timeout on the timing wheel of the WorkTimer, which
+ * rejects the work promptly, even when no worker is free; a worker which takes the
+ * rejected work later skips it. The timeout is cancelled when the work starts. Only
+ * the rejection itself happens on the thread of the timing wheel; the work listener is
+ * notified on a thread of the WorkTimer, so a slow listener can't delay the other
+ * rejections.
+ */
+
+public class WorkWrapper extends ForkJoinTask<Void> implements Runnable
+{
+   /** Serial version uid */
+   private static final long serialVersionUID = 1L;
+
+   /** The bundle */
+   private static CoreBundle bundle = Messages.getBundle(CoreBundle.class);
+
+   /** Queued */
+   private static final int QUEUED = 0;
+
+   /** Started */
+   private static final int STARTED = 1;
+
+   /** Rejected */
+   private static final int REJECTED = 2;
+
+   /** The work manager */
+   private final transient AbstractWorkManager manager;
+
+   /** The work */
+   private final transient Work work;
+
+   /** The start timeout in milliseconds */
+   private final long startTimeout;
+
+   /** The work listener */
+   private final transient WorkListener listener;
+
+   /** The priority */
+   private final int priority;
+
+   /** Is the work long-running */
+   private final boolean longRunning;
+
+   /** The time the work was accepted */
+   private final long accepted;
+
+   /** The state */
+   private final AtomicInteger state;
+
+   /** Is the work in its priority lane; null if the work isn't prioritized */
+   private final AtomicBoolean inLane;
+
+   /** Released when the work starts or is rejected; null if nobody waits for the start */
+   private final transient CountDownLatch started;
+
+   /** Released when the work completes or is rejected; null if nobody waits for the completion */
+   private final transient CountDownLatch completed;
+
+   /** The start duration in milliseconds */
+   private volatile long startDuration;
+
+   /** The exception */
+   private volatile WorkException exception;
+
+   /** The timeout of the start timeout, or <code>null</code> */
+   private transient volatile TimingWheel.Timeout timeout;
+
+   /**
+    * Constructor
+    * @param manager The work manager
+    * @param work The work
+    * @param startTimeout The start timeout in milliseconds
+    * @param listener The work listener, or <code>null</code>
+    * @param priority The priority
+    * @param longRunning Is the work long-running
+    * @param waitStart Will the submitter wait for the start
+    * @param waitCompletion Will the submitter wait for the completion
+    */
+   WorkWrapper(AbstractWorkManager manager, Work work, long startTimeout, WorkListener listener,
+               int priority, boolean longRunning, boolean waitStart, boolean waitCompletion)
+   {
+      this.manager = manager;
+      this.work = work;
+      this.startTimeout = startTimeout;
+      this.listener = listener;
+      this.priority = priority;
+      this.longRunning = longRunning;
+      this.accepted = System.currentTimeMillis();
+      this.state = new AtomicInteger(QUEUED);
+      this.inLane = priority > Thread.NORM_PRIORITY && !longRunning ? new AtomicBoolean(false) : null;
+      this.started = waitStart ? new CountDownLatch(1) : null;
+      this.completed = waitCompletion ? new CountDownLatch(1) : null;
+      this.startDuration = WorkManager.UNKNOWN;
+   }
+
+   /**
+    * Get the work
+    * @return The value
+    */
+   public Work getWork()
+   {
+      return work;
+   }
+
+   /**
+    * Get the start timeout
+    * @return The value in milliseconds
+    */
+   public long getStartTimeout()
+   {
+      return startTimeout;
+   }
+
+   /**
+    * Get the work listener
+    * @return The value
+    */
+   public WorkListener getWorkListener()
+   {
+      return listener;
+   }
+
+   /**
+    * Get the priority
+    * @return The value, from Thread.NORM_PRIORITY to Thread.MAX_PRIORITY
+    */
+   public int getPriority()
+   {
+      return priority;
+   }
+
+   /**
+    * Is the work long-running
+    * @return The value
+    */
+   public boolean isLongRunning()
+   {
+      return longRunning;
+   }
+
+   /**
+    * Get the time the work was accepted
+    * @return The value in milliseconds since the epoch
+    */
+   public long getAccepted()
+   {
+      return accepted;
+   }
+
+   /**
+    * Get the start duration
+    * @return The value in milliseconds, or WorkManager.UNKNOWN if the work hasn't started
+    */
+   public long getStartDuration()
+   {
+      return startDuration;
+   }
+
+   /**
+    * Get the exception
+    * @return The rejection, the exception the work completed with, or <code>null</code>
+    */
+   public WorkException getWorkException()
+   {
+      return exception;
+   }
+
+   /**
+    * Was the work rejected
+    * @return The value
+    */
+   public boolean isRejected()
+   {
+      return state.get() == REJECTED;
+   }
+
+   /**
+    * Is the work queued, neither started nor rejected
+    * @return The value
+    */
+   boolean isQueued()
+   {
+      return state.get() == QUEUED;
+   }
+
+   /**
+    * The work is put in its priority lane
+    */
+   void enterLane()
+   {
+      inLane.set(true);
+   }
+
+   /**
+    * The work leaves its priority lane
+    * @return True if the work was in its lane and has to be removed from it, otherwise false
+    */
+   boolean leaveLane()
+   {
+      return inLane != null && inLane.compareAndSet(true, false);
+   }
+
+   /**
+    * Get the latch which is released when the work starts or is rejected
+    * @return The value, or <code>null</code>
+    */
+   CountDownLatch getStarted()
+   {
+      return started;
+   }
+
+   /**
+    * Get the latch which is released when the work completes or is rejected
+    * @return The value, or <code>null</code>
+    */
+   CountDownLatch getCompleted()
+   {
+      return completed;
+   }
+
+   /**
+    * Schedule the rejection of the work when its start timeout passes
+    * @param wheel The timing wheel
+    */
+   void scheduleStartTimeout(TimingWheel wheel)
+   {
+      if (startTimeout != WorkManager.INDEFINITE)
+         timeout = wheel.scheduleAt(new StartTimeoutTask(this), accepted + startTimeout);
+   }
+
+   /**
+    * Reject the work, unless it has started
+    * @param e The exception
+    * @return True if the work was rejected, false if it had started or was rejected already
+    */
+   public boolean reject(WorkRejectedException e)
+   {
+      return reject(e, false, false);
+   }
+
+   /**
+    * Reject the work because its start timeout has passed, unless it has started
+    * @return True if the work was rejected, otherwise false
+    */
+   public boolean rejectTimedOut()
+   {
+      return reject(new WorkRejectedException(bundle.startTimedOut(startTimeout), WorkException.START_TIMED_OUT),
+                    true, false);
+   }
+
+   /**
+    * Reject the work, unless it has started
+    * @param e The exception
+    * @param timedOut Is the work rejected because its start timeout has passed
+    * @param notifyLater Notify the work listener on a thread of the WorkTimer
+    * @return True if the work was rejected, false if it had started or was rejected already
+    */
+   private boolean reject(WorkRejectedException e, boolean timedOut, boolean notifyLater)
+   {
+      if (!state.compareAndSet(QUEUED, REJECTED))
+         return false;
+
+      cancelStartTimeout();
+      if (timedOut)
+         manager.timedOut(this, System.currentTimeMillis() - accepted - startTimeout);
+
+      exception = e;
+      manager.dequeued(this);
+
+      if (!notifyLater)
+         manager.fireWorkEvent(listener, WorkEvent.WORK_REJECTED, work, e, WorkManager.UNKNOWN);
+      else if (listener != null)
+         WorkTimer.execute(new RejectedNotification(this, e));
+
+      release(started);
+      release(completed);
+      return true;
+   }
+
+   /**
+    * Run the work, unless it was rejected. Work whose start timeout has passed is rejected.
+    * The queued work of the lanes above the priority of the work runs once the work has
+    * started, so it can't make the work time out
+    */
+   public void run()
+   {
+      long duration = System.currentTimeMillis() - accepted;
+      if (startTimeout != WorkManager.INDEFINITE && duration > startTimeout)
+      {
+         rejectTimedOut();
+         return;
+      }
+
+      if (!state.compareAndSet(QUEUED, STARTED))
+         return;
+
+      cancelStartTimeout();
+      startDuration = duration;
+      manager.dequeued(this);
+      manager.started(this);
+      manager.fireWorkEvent(listener, WorkEvent.WORK_STARTED, work, null, duration);
+      release(started);
+
+      try
+      {
+         if (!longRunning && manager.isPrioritized())
+            manager.runPrioritized(priority);
+
+         work.run();
+      }
+      catch (Throwable t)
+      {
+         exception = new WorkCompletedException(t);
+      }
+      finally
+      {
+         manager.finished(this);
+         manager.fireWorkEvent(listener, WorkEvent.WORK_COMPLETED, work, exception, duration);
+         release(completed);
+      }
+   }
+
+   /**
+    * Cancel the timeout of the start timeout
+    */
+   private void cancelStartTimeout()
+   {
+      TimingWheel.Timeout t = timeout;
+      if (t != null)
+         t.cancel();
+   }
+
+   /**
+    * Release a latch
+    * @param latch The latch, or <code>null</code>
+    */
+   private static void release(CountDownLatch latch)
+   {
+      if (latch != null)
+         latch.countDown();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public Void getRawResult()
+   {
+      return null;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   protected void setRawResult(Void v)
+   {
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   protected boolean exec()
+   {
+      run();
+      return true;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String toString()
+   {
+      return "WorkWrapper@" + Integer.toHexString(System.identityHashCode(this)) + "[work=" + work + "]";
+   }
+
+   /**
+    * Rejects a work instance whose start timeout has passed
+    */
+   private static class StartTimeoutTask implements Runnable
+   {
+      /** The work wrapper */
+      private final WorkWrapper ww;
+
+      /**
+       * Constructor
+       * @param ww The work wrapper
+       */
+      StartTimeoutTask(WorkWrapper ww)
+      {
+         this.ww = ww;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void run()
+      {
+         ww.reject(new WorkRejectedException(bundle.startTimedOut(ww.startTimeout), WorkException.START_TIMED_OUT),
+                   true, true);
+      }
+   }
+
+   /**
+    * Notifies the work listener of a rejection
+    */
+   private static class RejectedNotification implements Runnable
+   {
+      /** The work wrapper */
+      private final WorkWrapper ww;
+
+      /** The exception */
+      private final WorkRejectedException e;
+
+      /**
+       * Constructor
+       * @param ww The work wrapper
+       * @param e The exception
+       */
+      RejectedNotification(WorkWrapper ww, WorkRejectedException e)
+      {
+         this.ww = ww;
+         this.e = e;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void run()
+      {
+         ww.manager.fireWorkEvent(ww.listener, WorkEvent.WORK_REJECTED, ww.work, e, WorkManager.UNKNOWN);
+      }
+   }
+}
@@ -0,0 +1,316 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.api.connectionmanager;
+
+import org.ironjacamar.core.connectionmanager.support.TestManagedConnection;
+import org.ironjacamar.core.connectionmanager.support.TestManagedConnectionFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.resource.spi.ConnectionEvent;
+import javax.resource.spi.ConnectionEventListener;
+import javax.resource.spi.ManagedConnection;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * ConnectionEventListeners test case
+ */
+public class ConnectionEventListenersTestCase
+{
+   /**
+    * Direct listeners are notified without an event, plain listeners share one event
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testDispatch() throws Throwable
+   {
+      ManagedConnection mc = new TestManagedConnection(new TestManagedConnectionFactory(), null);
+      ConnectionEventListeners listeners = new ConnectionEventListeners(mc);
+
+      Direct direct = new Direct();
+      Plain plain1 = new Plain();
+      Plain plain2 = new Plain();
+
+      listeners.add(direct);
+      listeners.add(plain1);
+      listeners.add(plain2);
+      assertEquals(3, listeners.size());
+
+      Object handle = new Object();
+      listeners.fireConnectionClosed(handle);
+
+      assertEquals(1, direct.closed);
+      assertEquals(0, direct.events);
+      assertSame(mc, direct.mc);
+      assertSame(handle, direct.handle);
+
+      assertEquals(1, plain1.events.size());
+      assertEquals(1, plain2.events.size());
+      assertSame(plain1.events.get(0), plain2.events.get(0));
+
+      ConnectionEvent event = plain1.events.get(0);
+      assertEquals(ConnectionEvent.CONNECTION_CLOSED, event.getId());
+      assertSame(mc, event.getSource());
+      assertSame(handle, event.getConnectionHandle());
+
+      Exception e = new Exception();
+      listeners.fireConnectionErrorOccurred(handle, e);
+
+      assertEquals(1, direct.errors);
+      assertEquals(0, direct.events);
+      assertSame(e, direct.exception);
+
+      event = plain1.events.get(1);
+      assertEquals(ConnectionEvent.CONNECTION_ERROR_OCCURRED, event.getId());
+      assertSame(e, event.getException());
+
+      listeners.fireLocalTransactionStarted(handle);
+      listeners.fireLocalTransactionCommitted(handle);
+      listeners.fireLocalTransactionRolledback(handle);
+
+      assertEquals(3, direct.local);
+      assertEquals(ConnectionEvent.LOCAL_TRANSACTION_STARTED, plain1.events.get(2).getId());
+      assertEquals(ConnectionEvent.LOCAL_TRANSACTION_COMMITTED, plain1.events.get(3).getId());
+      assertEquals(ConnectionEvent.LOCAL_TRANSACTION_ROLLEDBACK, plain1.events.get(4).getId());
+   }
+
+   /**
+    * Only direct listeners means no event
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testDirectOnly() throws Throwable
+   {
+      ManagedConnection mc = new TestManagedConnection(new TestManagedConnectionFactory(), null);
+      ConnectionEventListeners listeners = new ConnectionEventListeners(mc);
+
+      Direct direct = new Direct();
+      listeners.add(direct);
+
+      listeners.fireConnectionClosed(null);
+
+      assertEquals(1, direct.closed);
+      assertEquals(0, direct.events);
+      assertNull(direct.handle);
+   }
+
+   /**
+    * Remove listeners, also during a notification
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testRemove() throws Throwable
+   {
+      ManagedConnection mc = new TestManagedConnection(new TestManagedConnectionFactory(), null);
+      final ConnectionEventListeners listeners = new ConnectionEventListeners(mc);
+
+      final Plain plain = new Plain();
+      Plain remover = new Plain()
+      {
+         @Override
+         public void connectionClosed(ConnectionEvent event)
+         {
+            super.connectionClosed(event);
+            listeners.remove(this);
+            listeners.remove(plain);
+         }
+      };
+
+      listeners.add(remover);
+      listeners.add(plain);
+      assertFalse(listeners.remove(new Plain()));
+
+      listeners.fireConnectionClosed(null);
+
+      assertEquals(1, remover.events.size());
+      assertEquals(1, plain.events.size());
+      assertEquals(0, listeners.size());
+
+      listeners.fireConnectionClosed(null);
+
+      assertEquals(1, remover.events.size());
+      assertEquals(1, plain.events.size());
+   }
+
+   /**
+    * A plain listener
+    */
+   static class Plain implements ConnectionEventListener
+   {
+      /** The events */
+      List<ConnectionEvent> events = new ArrayList<ConnectionEvent>();
+
+      /**
+       * {@inheritDoc}
+       */
+      public void connectionClosed(ConnectionEvent event)
+      {
+         events.add(event);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void localTransactionStarted(ConnectionEvent event)
+      {
+         events.add(event);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void localTransactionCommitted(ConnectionEvent event)
+      {
+         events.add(event);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void localTransactionRolledback(ConnectionEvent event)
+      {
+         events.add(event);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void connectionErrorOccurred(ConnectionEvent event)
+      {
+         events.add(event);
+      }
+   }
+
+   /**
+    * A direct listener
+    */
+   static class Direct implements DirectConnectionEventListener
+   {
+      /** Events received */
+      int events;
+
+      /** Closed notifications */
+      int closed;
+
+      /** Error notifications */
+      int errors;
+
+      /** Local transaction notifications */
+      int local;
+
+      /** The last managed connection */
+      ManagedConnection mc;
+
+      /** The last handle */
+      Object handle;
+
+      /** The last exception */
+      Exception exception;
+
+      /**
+       * {@inheritDoc}
+       */
+      public void connectionClosed(ManagedConnection mc, Object handle)
+      {
+         closed++;
+         this.mc = mc;
+         this.handle = handle;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void localTransactionStarted(ManagedConnection mc, Object handle)
+      {
+         local++;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void localTransactionCommitted(ManagedConnection mc, Object handle)
+      {
+         local++;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void localTransactionRolledback(ManagedConnection mc, Object handle)
+      {
+         local++;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void connectionErrorOccurred(ManagedConnection mc, Object handle, Exception exception)
+      {
+         errors++;
+         this.exception = exception;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void connectionClosed(ConnectionEvent event)
+      {
+         events++;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void localTransactionStarted(ConnectionEvent event)
+      {
+         events++;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void localTransactionCommitted(ConnectionEvent event)
+      {
+         events++;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void localTransactionRolledback(ConnectionEvent event)
+      {
+         events++;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void connectionErrorOccurred(ConnectionEvent event)
+      {
+         events++;
+      }
+   }
+}
@@ -0,0 +1,274 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager;
+
+import org.ironjacamar.core.api.connectionmanager.ConnectionManager;
+import org.ironjacamar.core.api.connectionmanager.pool.PoolConfiguration;
+import org.ironjacamar.core.connectionmanager.support.TestConnection;
+import org.ironjacamar.core.connectionmanager.support.TestConnectionFactory;
+import org.ironjacamar.core.connectionmanager.support.TestConnectionRequestInfo;
+import org.ironjacamar.core.connectionmanager.support.TestManagedConnectionFactory;
+import org.ironjacamar.core.connectionmanager.support.TestTransaction;
+import org.ironjacamar.core.connectionmanager.support.TestTransactionManager;
+import org.ironjacamar.core.connectionmanager.support.TestTransactionSynchronizationRegistry;
+
+import javax.resource.ResourceException;
+import javax.transaction.Status;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Transaction connection manager test case
+ */
+public class TxConnectionManagerTestCase
+{
+   /**
+    * A connection is enlisted when it is obtained, and returned to the pool
+    * once the transaction completes
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testEnlist() throws Throwable
+   {
+      TestTransactionManager tm = new TestTransactionManager();
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      ConnectionManager cm = ConnectionManagerFactory.createConnectionManager("test", mcf,
+                                                                              new PoolConfiguration(), tm);
+      TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+
+      tm.begin();
+      TestTransaction tx = tm.getTransaction();
+
+      TestConnection c = cf.getConnection(new TestConnectionRequestInfo("user"));
+      assertEquals(1, tx.getResources().size());
+      assertSame(c.getManagedConnection().getXAResource(), tx.getResources().get(0));
+
+      c.close();
+      assertEquals(1, cm.getPool().getInUseCount());
+
+      tm.commit();
+      assertEquals(0, cm.getPool().getInUseCount());
+      assertEquals(1, cm.getPool().getIdleCount());
+
+      // Outside of a transaction nothing is enlisted
+      c = cf.getConnection(new TestConnectionRequestInfo("user"));
+      c.close();
+      assertEquals(0, cm.getPool().getInUseCount());
+
+      cm.shutdown();
+   }
+
+   /**
+    * A lazy enlistable connection is only enlisted when it is used
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testLazyEnlist() throws Throwable
+   {
+      TestTransactionManager tm = new TestTransactionManager();
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      mcf.setLazyEnlistment(true);
+      ConnectionManager cm = ConnectionManagerFactory.createConnectionManager("test", mcf,
+                                                                              new PoolConfiguration(), tm);
+      TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+
+      // A connection which isn't used doesn't take part in the transaction
+      tm.begin();
+      TestTransaction tx = tm.getTransaction();
+      TestConnection c = cf.getConnection(new TestConnectionRequestInfo("user"));
+      c.close();
+      assertEquals(0, tx.getResources().size());
+      assertEquals(0, cm.getPool().getInUseCount());
+      tm.commit();
+
+      // A connection is enlisted once, on its first use
+      tm.begin();
+      tx = tm.getTransaction();
+      c = cf.getConnection(new TestConnectionRequestInfo("user"));
+      assertEquals(0, tx.getResources().size());
+      c.use();
+      c.use();
+      assertEquals(1, tx.getResources().size());
+
+      c.close();
+      assertEquals(1, cm.getPool().getInUseCount());
+      tm.commit();
+      assertEquals(0, cm.getPool().getInUseCount());
+
+      // Outside of a transaction lazy enlistment doesn't do anything
+      c = cf.getConnection(new TestConnectionRequestInfo("user"));
+      c.use();
+      c.close();
+      assertEquals(0, cm.getPool().getInUseCount());
+      assertEquals(1, mcf.getCreated());
+
+      cm.shutdown();
+   }
+
+   /**
+    * A connection error inside a transaction marks it for rollback
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testError() throws Throwable
+   {
+      TestTransactionManager tm = new TestTransactionManager();
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      ConnectionManager cm = ConnectionManagerFactory.createConnectionManager("test", mcf,
+                                                                              new PoolConfiguration(), tm);
+      TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+
+      tm.begin();
+      TestConnection c = cf.getConnection(new TestConnectionRequestInfo("user"));
+      c.error();
+
+      assertEquals(1, mcf.getDestroyed());
+      assertEquals(0, cm.getPool().getActiveCount());
+      assertEquals(Status.STATUS_MARKED_ROLLBACK, tm.getStatus());
+      tm.rollback();
+
+      cm.shutdown();
+   }
+
+   /**
+    * Connections with the same credential inside a transaction share the enlisted
+    * managed connection when tracking by transaction
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testTrackByTransaction() throws Throwable
+   {
+      TestTransactionManager tm = new TestTransactionManager();
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      ConnectionManager cm = ConnectionManagerFactory.createConnectionManager(
+         "test", mcf, new PoolConfiguration(), tm, new TestTransactionSynchronizationRegistry(tm));
+      TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+
+      tm.begin();
+      TestTransaction tx = tm.getTransaction();
+
+      TestConnection c1 = cf.getConnection(new TestConnectionRequestInfo("user"));
+      TestConnection c2 = cf.getConnection(new TestConnectionRequestInfo("user"));
+      assertSame(c1.getManagedConnection(), c2.getManagedConnection());
+      assertEquals(2, c1.getManagedConnection().getHandleCount());
+      assertEquals(1, tx.getResources().size());
+
+      // Another credential gets its own connection
+      TestConnection c3 = cf.getConnection(new TestConnectionRequestInfo("other"));
+      assertNotSame(c1.getManagedConnection(), c3.getManagedConnection());
+      assertEquals(2, tx.getResources().size());
+
+      c1.close();
+      c2.close();
+      c3.close();
+
+      // A closed connection is still shared until the transaction completes
+      TestConnection c4 = cf.getConnection(new TestConnectionRequestInfo("user"));
+      assertSame(c1.getManagedConnection(), c4.getManagedConnection());
+      c4.close();
+      assertEquals(2, cm.getPool().getInUseCount());
+
+      tm.commit();
+      assertEquals(0, cm.getPool().getInUseCount());
+      assertEquals(2, mcf.getCreated());
+
+      // A new transaction gets a new enlistment
+      tm.begin();
+      tx = tm.getTransaction();
+      c1 = cf.getConnection(new TestConnectionRequestInfo("user"));
+      c2 = cf.getConnection(new TestConnectionRequestInfo("user"));
+      assertSame(c1.getManagedConnection(), c2.getManagedConnection());
+      assertEquals(1, tx.getResources().size());
+      c1.close();
+      c2.close();
+      tm.commit();
+
+      // Outside of a transaction nothing is shared
+      c1 = cf.getConnection(new TestConnectionRequestInfo("user"));
+      c2 = cf.getConnection(new TestConnectionRequestInfo("user"));
+      assertNotSame(c1.getManagedConnection(), c2.getManagedConnection());
+      c1.close();
+      c2.close();
+
+      cm.shutdown();
+   }
+
+   /**
+    * Lazy enlistable connections are shared once they are enlisted
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testTrackByTransactionLazyEnlist() throws Throwable
+   {
+      TestTransactionManager tm = new TestTransactionManager();
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      mcf.setLazyEnlistment(true);
+      ConnectionManager cm = ConnectionManagerFactory.createConnectionManager(
+         "test", mcf, new PoolConfiguration(), tm, new TestTransactionSynchronizationRegistry(tm));
+      TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+
+      tm.begin();
+      TestTransaction tx = tm.getTransaction();
+
+      TestConnection c1 = cf.getConnection(new TestConnectionRequestInfo("user"));
+      TestConnection c2 = cf.getConnection(new TestConnectionRequestInfo("user"));
+      assertNotSame(c1.getManagedConnection(), c2.getManagedConnection());
+      c2.close();
+
+      c1.use();
+      TestConnection c3 = cf.getConnection(new TestConnectionRequestInfo("user"));
+      assertSame(c1.getManagedConnection(), c3.getManagedConnection());
+      c3.use();
+      assertEquals(1, tx.getResources().size());
+
+      c1.close();
+      c3.close();
+      tm.commit();
+      assertEquals(0, cm.getPool().getInUseCount());
+
+      cm.shutdown();
+   }
+
+   /**
+    * Lazy enlistment of a connection which isn't in use is an error
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test(expected = ResourceException.class)
+   public void testLazyEnlistUnknown() throws Throwable
+   {
+      TestTransactionManager tm = new TestTransactionManager();
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      mcf.setLazyEnlistment(true);
+      TxConnectionManager cm = (TxConnectionManager)ConnectionManagerFactory.createConnectionManager(
+         "test", mcf, new PoolConfiguration(), tm);
+      try
+      {
+         cm.lazyEnlist(mcf.createManagedConnection(null, null));
+      }
+      finally
+      {
+         cm.shutdown();
+      }
+   }
+}
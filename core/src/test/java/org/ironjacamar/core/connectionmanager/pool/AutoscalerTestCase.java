@@ -0,0 +1,102 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.pool;
+
+import org.ironjacamar.core.api.connectionmanager.ConnectionManager;
+import org.ironjacamar.core.api.connectionmanager.pool.PoolConfiguration;
+import org.ironjacamar.core.connectionmanager.ConnectionManagerFactory;
+import org.ironjacamar.core.connectionmanager.support.TestConnection;
+import org.ironjacamar.core.connectionmanager.support.TestConnectionFactory;
+import org.ironjacamar.core.connectionmanager.support.TestManagedConnectionFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Autoscaler test case
+ */
+public class AutoscalerTestCase
+{
+   /**
+    * The working size follows the load between the minimum and maximum size
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testAutoscale() throws Throwable
+   {
+      PoolConfiguration pc = new PoolConfiguration();
+      pc.setMinSize(2);
+      pc.setMaxSize(16);
+      pc.setAutoscale(true);
+      pc.setAutoscaleInterval(Long.MAX_VALUE / 2);
+
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      ConnectionManager cm = ConnectionManagerFactory.createConnectionManager("test", mcf, pc);
+      TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+      ConcurrentPool pool = (ConcurrentPool)cm.getPool();
+      PoolAutoscaler autoscaler = pool.getAutoscaler();
+
+      assertEquals(2, pool.getWorkingSize());
+
+      // Peak load grows the working size on demand, and the autoscaler adds headroom
+      List<TestConnection> connections = new ArrayList<TestConnection>();
+      for (int i = 0; i < 10; i++)
+      {
+         connections.add(cf.getConnection());
+      }
+      assertEquals(10, pool.getWorkingSize());
+
+      autoscaler.run();
+      assertTrue(pool.getWorkingSize() > 10);
+      assertTrue(pool.getWorkingSize() <= 16);
+
+      for (TestConnection c : connections)
+      {
+         c.close();
+      }
+      assertEquals(10, pool.getIdleCount());
+
+      // Low load shrinks the working size after several intervals
+      int working = pool.getWorkingSize();
+      autoscaler.run();
+      autoscaler.run();
+      assertEquals(working, pool.getWorkingSize());
+
+      for (int i = 0; i < 20; i++)
+      {
+         autoscaler.run();
+      }
+      assertEquals(2, pool.getWorkingSize());
+      assertEquals(2, pool.getActiveCount());
+      assertEquals(8, mcf.getDestroyed());
+
+      // The pool still serves requests at its minimum size
+      TestConnection c = cf.getConnection();
+      c.close();
+
+      cm.shutdown();
+   }
+}
@@ -0,0 +1,238 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.pool;
+
+import org.ironjacamar.core.api.connectionmanager.ConnectionManager;
+import org.ironjacamar.core.api.connectionmanager.pool.PoolConfiguration;
+import org.ironjacamar.core.connectionmanager.ConnectionManagerFactory;
+import org.ironjacamar.core.connectionmanager.support.TestConnection;
+import org.ironjacamar.core.connectionmanager.support.TestConnectionFactory;
+import org.ironjacamar.core.connectionmanager.support.TestConnectionRequestInfo;
+import org.ironjacamar.core.connectionmanager.support.TestManagedConnectionFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import javax.resource.spi.ResourceAllocationException;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Background validation test case
+ */
+public class BackgroundValidationTestCase
+{
+   /**
+    * The idle connections are validated in a single batch, and the invalid ones are destroyed
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testBatch() throws Throwable
+   {
+      PoolConfiguration pc = new PoolConfiguration();
+      pc.setMaxSize(8);
+      pc.setBackgroundValidationMillis(100L);
+
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      ConnectionManager cm = ConnectionManagerFactory.createConnectionManager("test", mcf, pc);
+      TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+      ConcurrentPool pool = (ConcurrentPool)cm.getPool();
+
+      TestConnection[] connections = new TestConnection[6];
+      for (int i = 0; i < connections.length; i++)
+      {
+         connections[i] = cf.getConnection(new TestConnectionRequestInfo("user" + (i % 3)));
+      }
+
+      connections[1].getManagedConnection().setValid(false);
+      connections[4].getManagedConnection().setValid(false);
+      TestConnection busy = connections[5];
+      busy.getManagedConnection().setValid(false);
+
+      for (int i = 0; i < connections.length - 1; i++)
+      {
+         connections[i].close();
+      }
+
+      // Run the validation directly, once all idle connections are due
+      Thread.sleep(200L);
+      pool.validate();
+
+      // One call covers the idle set, and the connection in use is left alone
+      assertEquals(5, mcf.getBatchSize());
+      assertEquals(2, mcf.getDestroyed());
+      assertTrue(connections[1].getManagedConnection().isDestroyed());
+      assertTrue(connections[4].getManagedConnection().isDestroyed());
+      assertFalse(busy.getManagedConnection().isDestroyed());
+      assertEquals(3, pool.getIdleCount());
+      assertEquals(1, pool.getInUseCount());
+
+      // The valid connections are available again
+      TestConnection c = cf.getConnection(new TestConnectionRequestInfo("user0"));
+      assertTrue(c.getManagedConnection() == connections[0].getManagedConnection() ||
+                 c.getManagedConnection() == connections[3].getManagedConnection());
+      assertEquals(6, mcf.getCreated());
+      c.close();
+      busy.close();
+
+      cm.shutdown();
+   }
+
+   /**
+    * The validation runs in the background
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testScheduled() throws Throwable
+   {
+      PoolConfiguration pc = new PoolConfiguration();
+      pc.setBackgroundValidation(true);
+      pc.setBackgroundValidationMillis(50L);
+
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      ConnectionManager cm = ConnectionManagerFactory.createConnectionManager("test", mcf, pc);
+      TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+
+      TestConnection c = cf.getConnection(new TestConnectionRequestInfo("user"));
+      c.getManagedConnection().setValid(false);
+      c.close();
+
+      long deadline = System.currentTimeMillis() + 10000L;
+      while (mcf.getDestroyed() == 0 && System.currentTimeMillis() < deadline)
+      {
+         Thread.sleep(10L);
+      }
+
+      assertEquals(1, mcf.getValidated());
+      assertEquals(1, mcf.getDestroyed());
+      assertEquals(0, cm.getPool().getActiveCount());
+
+      cm.shutdown();
+   }
+
+   /**
+    * A borrow waits for the connections under validation without spinning, and
+    * times out with the blocking timeout
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testBorrowDuringValidation() throws Throwable
+   {
+      ThreadMXBean mbean = ManagementFactory.getThreadMXBean();
+      Assume.assumeTrue(mbean.isCurrentThreadCpuTimeSupported());
+
+      PoolConfiguration pc = new PoolConfiguration();
+      pc.setMaxSize(1);
+      pc.setBlockingTimeout(500L);
+      pc.setBackgroundValidationMillis(50L);
+
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      mcf.setValidateDelay(2000L);
+      ConnectionManager cm = ConnectionManagerFactory.createConnectionManager("test", mcf, pc);
+      TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+      final ConcurrentPool pool = (ConcurrentPool)cm.getPool();
+
+      cf.getConnection(new TestConnectionRequestInfo("user")).close();
+      Thread.sleep(100L);
+
+      Thread validator = new Thread(new Runnable()
+      {
+         public void run()
+         {
+            pool.validate();
+         }
+      });
+      validator.start();
+
+      while (mcf.getValidated() == 0)
+      {
+         Thread.sleep(1L);
+      }
+
+      long cpu = mbean.getCurrentThreadCpuTime();
+      long start = System.nanoTime();
+      try
+      {
+         cf.getConnection(new TestConnectionRequestInfo("user"));
+         fail("Connection obtained during validation");
+      }
+      catch (ResourceAllocationException rae)
+      {
+         // Expected
+      }
+      long elapsed = (System.nanoTime() - start) / 1000000L;
+      cpu = (mbean.getCurrentThreadCpuTime() - cpu) / 1000000L;
+
+      assertTrue("Waited " + elapsed + " ms", elapsed >= 400L && elapsed < 1500L);
+      assertTrue("Used " + cpu + " ms", cpu < 250L);
+      assertEquals(0, pool.getInUseCount());
+
+      validator.join();
+      cm.shutdown();
+   }
+
+   /**
+    * A borrow waiting for a connection under validation gets it once the validation returns
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testBorrowAfterValidation() throws Throwable
+   {
+      PoolConfiguration pc = new PoolConfiguration();
+      pc.setMaxSize(1);
+      pc.setBlockingTimeout(5000L);
+      pc.setBackgroundValidationMillis(50L);
+
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      mcf.setValidateDelay(200L);
+      ConnectionManager cm = ConnectionManagerFactory.createConnectionManager("test", mcf, pc);
+      TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+      final ConcurrentPool pool = (ConcurrentPool)cm.getPool();
+
+      cf.getConnection(new TestConnectionRequestInfo("user")).close();
+      Thread.sleep(100L);
+
+      Thread validator = new Thread(new Runnable()
+      {
+         public void run()
+         {
+            pool.validate();
+         }
+      });
+      validator.start();
+
+      while (mcf.getValidated() == 0)
+      {
+         Thread.sleep(1L);
+      }
+
+      TestConnection c = cf.getConnection(new TestConnectionRequestInfo("user"));
+      assertEquals(1, mcf.getCreated());
+      c.close();
+
+      validator.join();
+      cm.shutdown();
+   }
+}
@@ -0,0 +1,333 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.pool;
+
+import org.ironjacamar.core.api.connectionmanager.ConnectionManager;
+import org.ironjacamar.core.api.connectionmanager.pool.PoolConfiguration;
+import org.ironjacamar.core.api.connectionmanager.pool.PoolStatistics;
+import org.ironjacamar.core.connectionmanager.ConnectionManagerFactory;
+import org.ironjacamar.core.connectionmanager.support.TestConnection;
+import org.ironjacamar.core.connectionmanager.support.TestConnectionFactory;
+import org.ironjacamar.core.connectionmanager.support.TestConnectionRequestInfo;
+import org.ironjacamar.core.connectionmanager.support.TestManagedConnectionFactory;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.resource.spi.ResourceAllocationException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Concurrent pool test case
+ */
+public class ConcurrentPoolTestCase
+{
+   /**
+    * Create a connection manager
+    * @param mcf The managed connection factory
+    * @param max The maximum size of the pool
+    * @return The connection manager
+    */
+   private ConnectionManager createConnectionManager(TestManagedConnectionFactory mcf, int max)
+   {
+      PoolConfiguration pc = new PoolConfiguration();
+      pc.setMaxSize(max);
+      pc.setBlockingTimeout(100L);
+      return ConnectionManagerFactory.createConnectionManager("test", mcf, pc);
+   }
+
+   /**
+    * A returned connection is reused
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testReuse() throws Throwable
+   {
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      ConnectionManager cm = createConnectionManager(mcf, 2);
+      TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+
+      TestConnection c1 = cf.getConnection();
+      assertEquals(1, cm.getPool().getInUseCount());
+      c1.close();
+      assertEquals(0, cm.getPool().getInUseCount());
+      assertEquals(1, cm.getPool().getIdleCount());
+
+      TestConnection c2 = cf.getConnection();
+      assertSame(c1.getManagedConnection(), c2.getManagedConnection());
+      c2.close();
+
+      assertEquals(1, mcf.getCreated());
+      cm.shutdown();
+      assertEquals(1, mcf.getDestroyed());
+   }
+
+   /**
+    * A thread gets the connection it returned last without matching
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testThreadAffinity() throws Throwable
+   {
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      ConnectionManager cm = createConnectionManager(mcf, 2);
+      TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+      TestConnectionRequestInfo cri = new TestConnectionRequestInfo("a");
+
+      TestConnection c1 = cf.getConnection(cri);
+      TestConnection c2 = cf.getConnection(cri);
+      c2.close();
+      c1.close();
+
+      for (int i = 0; i < 10; i++)
+      {
+         TestConnection c = cf.getConnection(cri);
+         assertSame(c1.getManagedConnection(), c.getManagedConnection());
+         c.close();
+      }
+
+      assertEquals(0, mcf.getMatched());
+      assertEquals(2, cm.getPool().getIdleCount());
+      assertEquals(10, cm.getPool().getStatistics().getAffinityHitCount());
+      cm.shutdown();
+   }
+
+   /**
+    * The thread affinity doesn't keep a pool reachable from the threads which used it
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testThreadAffinityReference() throws Throwable
+   {
+      WeakReference<ConcurrentPool> pool = useAndShutdown();
+
+      long deadline = System.currentTimeMillis() + 10000L;
+      while (pool.get() != null && System.currentTimeMillis() < deadline)
+      {
+         System.gc();
+         Thread.sleep(10L);
+      }
+
+      assertNull(pool.get());
+   }
+
+   /**
+    * Use a pool on the current thread, and shut it down
+    * @return A weak reference to the pool
+    * @exception Throwable Thrown in case of an error
+    */
+   private WeakReference<ConcurrentPool> useAndShutdown() throws Throwable
+   {
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      ConnectionManager cm = createConnectionManager(mcf, 2);
+      TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+
+      cf.getConnection().close();
+      TestConnection c = cf.getConnection();
+      c.close();
+      assertEquals(1, cm.getPool().getStatistics().getAffinityHitCount());
+
+      cm.shutdown();
+      return new WeakReference<ConcurrentPool>((ConcurrentPool)cm.getPool());
+   }
+
+   /**
+    * Only idle connections with the same credential are passed to matchManagedConnections
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testPartitions() throws Throwable
+   {
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      PoolConfiguration pc = new PoolConfiguration();
+      pc.setMaxSize(4);
+      pc.setThreadAffinity(false);
+      ConnectionManager cm = ConnectionManagerFactory.createConnectionManager("test", mcf, pc);
+      TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+      PoolStatistics ps = cm.getPool().getStatistics();
+
+      TestConnection a = cf.getConnection(new TestConnectionRequestInfo("a"));
+      TestConnection b = cf.getConnection(new TestConnectionRequestInfo("b"));
+      assertEquals(2, ps.getMatchSkippedCount());
+      b.close();
+      a.close();
+
+      TestConnection c = cf.getConnection(new TestConnectionRequestInfo("b"));
+      assertSame(b.getManagedConnection(), c.getManagedConnection());
+      assertEquals(1, mcf.getMatched());
+      assertEquals(1, ps.getMatchCount());
+      assertEquals(0, ps.getMatchFailedCount());
+      assertEquals(2, ps.getPartitionCount());
+      c.close();
+
+      TestConnection d = cf.getConnection(new TestConnectionRequestInfo("d"));
+      assertEquals(1, mcf.getMatched());
+      assertEquals(3, ps.getMatchSkippedCount());
+      d.close();
+
+      assertEquals(3, mcf.getCreated());
+      cm.shutdown();
+   }
+
+   /**
+    * A connection which doesn't match is replaced when the pool is full
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testNoMatch() throws Throwable
+   {
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      ConnectionManager cm = createConnectionManager(mcf, 1);
+      TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+
+      TestConnection c1 = cf.getConnection(new TestConnectionRequestInfo("a"));
+      c1.close();
+
+      TestConnection c2 = cf.getConnection(new TestConnectionRequestInfo("b"));
+      assertNotSame(c1.getManagedConnection(), c2.getManagedConnection());
+      assertTrue(c1.getManagedConnection().isDestroyed());
+      c2.close();
+
+      assertEquals(1, cm.getPool().getActiveCount());
+      cm.shutdown();
+   }
+
+   /**
+    * An error destroys the connection
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testError() throws Throwable
+   {
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      ConnectionManager cm = createConnectionManager(mcf, 1);
+      TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+
+      TestConnection c = cf.getConnection();
+      c.error();
+
+      assertTrue(c.getManagedConnection().isDestroyed());
+      assertEquals(0, cm.getPool().getActiveCount());
+      assertEquals(0, cm.getPool().getInUseCount());
+      cm.shutdown();
+   }
+
+   /**
+    * The blocking timeout is honored when the pool is exhausted
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testBlockingTimeout() throws Throwable
+   {
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      ConnectionManager cm = createConnectionManager(mcf, 1);
+      TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+
+      TestConnection c = cf.getConnection();
+      try
+      {
+         cf.getConnection();
+         fail("Connection obtained from an exhausted pool");
+      }
+      catch (ResourceAllocationException rae)
+      {
+         // Expected
+      }
+      c.close();
+
+      cf.getConnection().close();
+      cm.shutdown();
+   }
+
+   /**
+    * Many threads never push the pool above its maximum size
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testConcurrent() throws Throwable
+   {
+      final int threads = 32;
+      final int iterations = 500;
+      final int max = 4;
+
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      PoolConfiguration pc = new PoolConfiguration();
+      pc.setMaxSize(max);
+      final ConnectionManager cm = ConnectionManagerFactory.createConnectionManager("test", mcf, pc);
+      final TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+
+      final CountDownLatch done = new CountDownLatch(threads);
+      final AtomicInteger inUse = new AtomicInteger(0);
+      final AtomicInteger peak = new AtomicInteger(0);
+      final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+      for (int i = 0; i < threads; i++)
+      {
+         Thread t = new Thread(new Runnable()
+         {
+            public void run()
+            {
+               try
+               {
+                  for (int j = 0; j < iterations; j++)
+                  {
+                     TestConnection c = cf.getConnection();
+                     int current = inUse.incrementAndGet();
+                     int p = peak.get();
+                     while (current > p && !peak.compareAndSet(p, current))
+                     {
+                        p = peak.get();
+                     }
+                     inUse.decrementAndGet();
+                     c.close();
+                  }
+               }
+               catch (Throwable t)
+               {
+                  failure.compareAndSet(null, t);
+               }
+               finally
+               {
+                  done.countDown();
+               }
+            }
+         });
+         t.start();
+      }
+
+      done.await();
+
+      if (failure.get() != null)
+         throw failure.get();
+
+      assertTrue(peak.get() <= max);
+      assertTrue(mcf.getCreated() <= max);
+      assertEquals(0, cm.getPool().getInUseCount());
+      cm.shutdown();
+      assertEquals(mcf.getCreated(), mcf.getDestroyed());
+   }
+}
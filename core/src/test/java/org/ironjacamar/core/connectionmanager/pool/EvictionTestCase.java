@@ -0,0 +1,149 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.pool;
+
+import org.ironjacamar.core.api.connectionmanager.ConnectionManager;
+import org.ironjacamar.core.api.connectionmanager.pool.PoolConfiguration;
+import org.ironjacamar.core.connectionmanager.ConnectionManagerFactory;
+import org.ironjacamar.core.connectionmanager.support.TestConnection;
+import org.ironjacamar.core.connectionmanager.support.TestConnectionFactory;
+import org.ironjacamar.core.connectionmanager.support.TestConnectionRequestInfo;
+import org.ironjacamar.core.connectionmanager.support.TestManagedConnectionFactory;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Idle timeout and maximum lifetime test case
+ */
+public class EvictionTestCase
+{
+   /**
+    * Idle connections above the minimum size are destroyed after the idle timeout
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testIdleTimeout() throws Throwable
+   {
+      PoolConfiguration pc = new PoolConfiguration();
+      pc.setMinSize(1);
+      pc.setMaxSize(4);
+      pc.setIdleTimeout(300L);
+
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      ConnectionManager cm = ConnectionManagerFactory.createConnectionManager("test", mcf, pc);
+      TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+
+      TestConnection[] connections = new TestConnection[3];
+      for (int i = 0; i < connections.length; i++)
+      {
+         connections[i] = cf.getConnection(new TestConnectionRequestInfo("user"));
+      }
+      for (int i = 0; i < connections.length; i++)
+      {
+         connections[i].close();
+      }
+
+      int created = mcf.getCreated();
+      assertEquals(created, cm.getPool().getIdleCount());
+
+      long deadline = System.currentTimeMillis() + 10000L;
+      while ((cm.getPool().getIdleCount() > 1 || mcf.getDestroyed() < created - 1) &&
+             System.currentTimeMillis() < deadline)
+      {
+         Thread.sleep(10L);
+      }
+
+      // The pool shrinks to its minimum size, and no further
+      assertEquals(1, cm.getPool().getIdleCount());
+      assertEquals(created - 1, mcf.getDestroyed());
+      Thread.sleep(500L);
+      assertEquals(1, cm.getPool().getIdleCount());
+
+      cm.shutdown();
+   }
+
+   /**
+    * A connection used within the idle timeout stays in the pool
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testIdleTimeoutUsed() throws Throwable
+   {
+      PoolConfiguration pc = new PoolConfiguration();
+      pc.setIdleTimeout(400L);
+
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      ConnectionManager cm = ConnectionManagerFactory.createConnectionManager("test", mcf, pc);
+      TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+
+      long end = System.currentTimeMillis() + 1000L;
+      while (System.currentTimeMillis() < end)
+      {
+         cf.getConnection(new TestConnectionRequestInfo("user")).close();
+         Thread.sleep(50L);
+      }
+
+      assertEquals(1, mcf.getCreated());
+      assertEquals(0, mcf.getDestroyed());
+
+      cm.shutdown();
+   }
+
+   /**
+    * A connection is retired after its maximum lifetime, when it is idle right away
+    * and when it is in use once it is returned
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testMaxLifetime() throws Throwable
+   {
+      PoolConfiguration pc = new PoolConfiguration();
+      pc.setMaxLifetime(300L);
+
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      ConnectionManager cm = ConnectionManagerFactory.createConnectionManager("test", mcf, pc);
+      TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+
+      TestConnection idle = cf.getConnection(new TestConnectionRequestInfo("user"));
+      TestConnection busy = cf.getConnection(new TestConnectionRequestInfo("user"));
+      idle.close();
+
+      long deadline = System.currentTimeMillis() + 10000L;
+      while (mcf.getDestroyed() == 0 && System.currentTimeMillis() < deadline)
+      {
+         Thread.sleep(10L);
+      }
+      Thread.sleep(200L);
+
+      assertTrue(idle.getManagedConnection().isDestroyed());
+      assertFalse(busy.getManagedConnection().isDestroyed());
+      assertEquals(1, mcf.getDestroyed());
+
+      busy.close();
+      assertTrue(busy.getManagedConnection().isDestroyed());
+      assertEquals(0, cm.getPool().getActiveCount());
+
+      cm.shutdown();
+   }
+}
@@ -0,0 +1,160 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.pool;
+
+import org.ironjacamar.core.api.connectionmanager.ConnectionManager;
+import org.ironjacamar.core.api.connectionmanager.pool.FlushStrategy;
+import org.ironjacamar.core.api.connectionmanager.pool.PoolConfiguration;
+import org.ironjacamar.core.connectionmanager.ConnectionManagerFactory;
+import org.ironjacamar.core.connectionmanager.support.TestConnection;
+import org.ironjacamar.core.connectionmanager.support.TestConnectionFactory;
+import org.ironjacamar.core.connectionmanager.support.TestManagedConnectionFactory;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Flush strategy test case
+ */
+public class FlushStrategyTestCase
+{
+   /** The number of connections */
+   private static final int CONNECTIONS = 4;
+
+   /**
+    * Create a pool with four connections, two of them in use, and report an
+    * error on one of the connections in use
+    * @param strategy The flush strategy
+    * @param mcf The managed connection factory
+    * @return The connection in use which didn't fail
+    * @exception Throwable Thrown in case of an error
+    */
+   private TestConnection error(FlushStrategy strategy, TestManagedConnectionFactory mcf) throws Throwable
+   {
+      PoolConfiguration pc = new PoolConfiguration();
+      pc.setFlushStrategy(strategy);
+
+      ConnectionManager cm = ConnectionManagerFactory.createConnectionManager("test", mcf, pc);
+      TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+
+      TestConnection[] connections = new TestConnection[CONNECTIONS];
+      for (int i = 0; i < CONNECTIONS; i++)
+      {
+         connections[i] = cf.getConnection();
+      }
+      connections[2].close();
+      connections[3].close();
+
+      connections[0].error();
+      assertTrue(connections[0].getManagedConnection().isDestroyed());
+
+      return connections[1];
+   }
+
+   /**
+    * Wait for a number of connections to be destroyed
+    * @param mcf The managed connection factory
+    * @param count The number of connections
+    * @exception Throwable Thrown in case of an error
+    */
+   private void waitForDestroyed(TestManagedConnectionFactory mcf, int count) throws Throwable
+   {
+      long deadline = System.currentTimeMillis() + 10000L;
+      while (mcf.getDestroyed() < count && System.currentTimeMillis() < deadline)
+      {
+         Thread.sleep(10L);
+      }
+      Thread.sleep(50L);
+      assertEquals(count, mcf.getDestroyed());
+   }
+
+   /**
+    * Only the failing connection is destroyed
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testFailingConnectionOnly() throws Throwable
+   {
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      TestConnection c = error(FlushStrategy.FAILING_CONNECTION_ONLY, mcf);
+      ConnectionManager cm = (ConnectionManager)mcf.getConnectionManager();
+
+      waitForDestroyed(mcf, 1);
+      assertEquals(CONNECTIONS - 1, cm.getPool().getActiveCount());
+
+      c.close();
+      assertFalse(c.getManagedConnection().isDestroyed());
+      assertEquals(CONNECTIONS - 1, cm.getPool().getIdleCount());
+
+      cm.shutdown();
+   }
+
+   /**
+    * The failing connection and the idle connections are destroyed
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testIdleConnections() throws Throwable
+   {
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      TestConnection c = error(FlushStrategy.IDLE_CONNECTIONS, mcf);
+      ConnectionManager cm = (ConnectionManager)mcf.getConnectionManager();
+
+      waitForDestroyed(mcf, 3);
+      assertEquals(1, cm.getPool().getActiveCount());
+
+      c.close();
+      assertFalse(c.getManagedConnection().isDestroyed());
+      assertEquals(1, cm.getPool().getIdleCount());
+
+      cm.shutdown();
+   }
+
+   /**
+    * The connections in use are destroyed when they are returned
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testGracefully() throws Throwable
+   {
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      TestConnection c = error(FlushStrategy.GRACEFULLY, mcf);
+      ConnectionManager cm = (ConnectionManager)mcf.getConnectionManager();
+
+      waitForDestroyed(mcf, 3);
+      assertFalse(c.getManagedConnection().isDestroyed());
+
+      c.close();
+      assertTrue(c.getManagedConnection().isDestroyed());
+      assertEquals(0, cm.getPool().getActiveCount());
+
+      // New connections aren't affected
+      TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+      c = cf.getConnection();
+      c.close();
+      assertFalse(c.getManagedConnection().isDestroyed());
+      assertEquals(1, cm.getPool().getIdleCount());
+
+      cm.shutdown();
+   }
+}
@@ -0,0 +1,95 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.pool;
+
+import org.ironjacamar.core.api.connectionmanager.ConnectionManager;
+import org.ironjacamar.core.api.connectionmanager.pool.PoolConfiguration;
+import org.ironjacamar.core.api.connectionmanager.pool.PoolStatistics;
+import org.ironjacamar.core.connectionmanager.ConnectionManagerFactory;
+import org.ironjacamar.core.connectionmanager.support.TestConnectionFactory;
+import org.ironjacamar.core.connectionmanager.support.TestManagedConnectionFactory;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Latency histogram test case
+ */
+public class LatencyHistogramTestCase
+{
+   /**
+    * The pool records its latencies, and exposes them through JMX
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testPool() throws Throwable
+   {
+      PoolConfiguration pc = new PoolConfiguration();
+      pc.setJmx(true);
+
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      mcf.setCreateDelay(20L);
+      ConnectionManager cm = ConnectionManagerFactory.createConnectionManager("histogram", mcf, pc);
+      TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+
+      for (int i = 0; i < 10; i++)
+      {
+         cf.getConnection().close();
+      }
+      cm.getPool().flush();
+
+      PoolStatistics statistics = cm.getPool().getStatistics();
+      assertEquals(10L, statistics.getWaitTime().getCount());
+      assertEquals(10L, statistics.getHoldTime().getCount());
+      assertEquals(1L, statistics.getCreateTime().getCount());
+      assertTrue(statistics.getCreateTime().getMax() >= 20000000L);
+      assertTrue(statistics.getWaitTime().getMax() >= 20000000L);
+
+      long deadline = System.currentTimeMillis() + 10000L;
+      while (statistics.getDestroyTime().getCount() < 1L && System.currentTimeMillis() < deadline)
+      {
+         Thread.sleep(10L);
+      }
+      assertEquals(1L, statistics.getDestroyTime().getCount());
+
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName on = new ObjectName("org.ironjacamar:type=PoolStatistics,name=" + ObjectName.quote("histogram"));
+      assertTrue(server.isRegistered(on));
+
+      CompositeData waitTime = (CompositeData)server.getAttribute(on, "WaitTime");
+      assertEquals(10L, waitTime.get("count"));
+      assertEquals(statistics.getWaitTime().getP99(), waitTime.get("p99"));
+
+      server.invoke(on, "clear", null, null);
+      assertEquals(0L, statistics.getWaitTime().getCount());
+
+      cm.shutdown();
+      assertFalse(server.isRegistered(on));
+   }
+}
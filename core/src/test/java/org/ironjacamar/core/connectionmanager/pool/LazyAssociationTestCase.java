@@ -0,0 +1,125 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.pool;
+
+import org.ironjacamar.core.api.connectionmanager.ConnectionManager;
+import org.ironjacamar.core.api.connectionmanager.pool.PoolConfiguration;
+import org.ironjacamar.core.connectionmanager.ConnectionManagerFactory;
+import org.ironjacamar.core.connectionmanager.support.TestConnection;
+import org.ironjacamar.core.connectionmanager.support.TestConnectionFactory;
+import org.ironjacamar.core.connectionmanager.support.TestConnectionRequestInfo;
+import org.ironjacamar.core.connectionmanager.support.TestManagedConnection;
+import org.ironjacamar.core.connectionmanager.support.TestManagedConnectionFactory;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Lazy association test case
+ */
+public class LazyAssociationTestCase
+{
+   /**
+    * Dissociated handles return their managed connection to the pool, and are
+    * associated again when they are used
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testDissociate() throws Throwable
+   {
+      PoolConfiguration pc = new PoolConfiguration();
+      pc.setMaxSize(2);
+      pc.setBlockingTimeout(100L);
+      pc.setLazyAssociation(true);
+
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      ConnectionManager cm = ConnectionManagerFactory.createConnectionManager("test", mcf, pc);
+      TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+
+      // Many more open handles than physical connections
+      TestConnection[] connections = new TestConnection[20];
+      for (int i = 0; i < connections.length; i++)
+      {
+         connections[i] = cf.getConnection(new TestConnectionRequestInfo("user"));
+         assertTrue(cm.dissociate(connections[i]));
+         assertNull(connections[i].getManagedConnection());
+      }
+
+      assertEquals(1, mcf.getCreated());
+      assertEquals(0, cm.getPool().getInUseCount());
+
+      TestManagedConnection first = connections[0].use();
+      TestManagedConnection second = connections[1].use();
+      assertNotNull(first);
+      assertNotNull(second);
+      assertNotSame(first, second);
+      assertEquals(2, cm.getPool().getInUseCount());
+
+      // The handle is already dissociated
+      assertTrue(cm.dissociate(connections[0]));
+      assertFalse(cm.dissociate(connections[0]));
+      assertEquals(1, cm.getPool().getInUseCount());
+
+      // Closing a dissociated handle doesn't touch the pool
+      connections[0].close();
+      assertEquals(1, cm.getPool().getInUseCount());
+
+      connections[1].close();
+      assertEquals(0, cm.getPool().getInUseCount());
+      assertEquals(2, cm.getPool().getIdleCount());
+      assertEquals(0, second.getHandleCount());
+
+      for (int i = 2; i < connections.length; i++)
+      {
+         connections[i].use();
+         connections[i].close();
+      }
+
+      assertEquals(2, mcf.getCreated());
+      assertEquals(0, mcf.getDestroyed());
+
+      cm.shutdown();
+   }
+
+   /**
+    * Without lazy association the handles stay associated
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testDisabled() throws Throwable
+   {
+      PoolConfiguration pc = new PoolConfiguration();
+
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      ConnectionManager cm = ConnectionManagerFactory.createConnectionManager("test", mcf, pc);
+      TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+
+      TestConnection c = cf.getConnection(new TestConnectionRequestInfo("user"));
+      assertFalse(cm.dissociate(c));
+      assertNotNull(c.getManagedConnection());
+      assertEquals(1, cm.getPool().getInUseCount());
+      c.close();
+
+      cm.shutdown();
+   }
+}
@@ -0,0 +1,136 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.pool;
+
+import org.ironjacamar.core.api.connectionmanager.ConnectionManager;
+import org.ironjacamar.core.api.connectionmanager.pool.PoolConfiguration;
+import org.ironjacamar.core.connectionmanager.ConnectionManagerFactory;
+import org.ironjacamar.core.connectionmanager.Credential;
+import org.ironjacamar.core.connectionmanager.support.TestManagedConnectionFactory;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Leak detection test case
+ */
+public class LeakDetectionTestCase
+{
+   /**
+    * Create a pool with leak detection
+    * @param sampleRate The leak sample rate
+    * @return The pool
+    */
+   private ConcurrentPool createPool(int sampleRate)
+   {
+      PoolConfiguration pc = new PoolConfiguration();
+      pc.setLeakThreshold(200L);
+      pc.setLeakSampleRate(sampleRate);
+
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      ConnectionManager cm = ConnectionManagerFactory.createConnectionManager("test", mcf, pc);
+      return (ConcurrentPool)cm.getPool();
+   }
+
+   /**
+    * Wait for a number of leaks to be reported
+    * @param pool The pool
+    * @param count The number of leaks
+    * @exception Throwable Thrown in case of an error
+    */
+   private void waitForLeaks(ConcurrentPool pool, int count) throws Throwable
+   {
+      long deadline = System.currentTimeMillis() + 10000L;
+      while (pool.getStatistics().getLeakCount() < count && System.currentTimeMillis() < deadline)
+      {
+         Thread.sleep(10L);
+      }
+      assertEquals(count, pool.getStatistics().getLeakCount());
+   }
+
+   /**
+    * A connection held beyond the threshold is reported once, with its borrow site
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testLeak() throws Throwable
+   {
+      ConcurrentPool pool = createPool(1);
+
+      ConnectionListener cl = pool.getConnectionListener(new Credential(null, null));
+      assertNotNull(cl.getBorrowSite());
+      assertEquals(Thread.currentThread().getName(), cl.getBorrower());
+
+      // The borrow site leads to the caller of the pool
+      StackTraceElement[] stack = cl.getBorrowSite().getStackTrace();
+      assertEquals(ConcurrentPool.class.getName(), stack[0].getClassName());
+      assertEquals(LeakDetectionTestCase.class.getName(), stack[1].getClassName());
+
+      waitForLeaks(pool, 1);
+      Thread.sleep(300L);
+      assertEquals(1, pool.getStatistics().getLeakCount());
+
+      // A connection returned in time isn't reported
+      pool.returnConnectionListener(cl, false);
+      cl = pool.getConnectionListener(new Credential(null, null));
+      pool.returnConnectionListener(cl, false);
+      Thread.sleep(300L);
+      assertEquals(1, pool.getStatistics().getLeakCount());
+
+      pool.shutdown();
+   }
+
+   /**
+    * A leak without a sampled borrow site makes every borrow site captured,
+    * while the leak is outstanding
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testSampling() throws Throwable
+   {
+      ConcurrentPool pool = createPool(Integer.MAX_VALUE);
+
+      ConnectionListener leaked = pool.getConnectionListener(new Credential(null, null));
+      ConnectionListener cl = pool.getConnectionListener(new Credential(null, null));
+      assertNull(leaked.getBorrowSite());
+      pool.returnConnectionListener(cl, false);
+
+      waitForLeaks(pool, 1);
+      pool.detectLeaks();
+      assertTrue(pool.isCaptureAll());
+
+      cl = pool.getConnectionListener(new Credential(null, null));
+      assertNotNull(cl.getBorrowSite());
+      pool.returnConnectionListener(cl, false);
+
+      pool.returnConnectionListener(leaked, false);
+      pool.detectLeaks();
+      assertFalse(pool.isCaptureAll());
+
+      cl = pool.getConnectionListener(new Credential(null, null));
+      assertNull(cl.getBorrowSite());
+      pool.returnConnectionListener(cl, false);
+
+      pool.shutdown();
+   }
+}
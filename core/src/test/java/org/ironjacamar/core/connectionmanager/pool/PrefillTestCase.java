@@ -0,0 +1,198 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.pool;
+
+import org.ironjacamar.core.api.connectionmanager.ConnectionManager;
+import org.ironjacamar.core.api.connectionmanager.pool.Pool;
+import org.ironjacamar.core.api.connectionmanager.pool.PoolConfiguration;
+import org.ironjacamar.core.connectionmanager.ConnectionManagerFactory;
+import org.ironjacamar.core.connectionmanager.support.TestConnection;
+import org.ironjacamar.core.connectionmanager.support.TestConnectionFactory;
+import org.ironjacamar.core.connectionmanager.support.TestManagedConnectionFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import javax.resource.ConnectionFactoryDefinition;
+import javax.resource.spi.ResourceAllocationException;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Prefill test case
+ */
+public class PrefillTestCase
+{
+   /** The create delay */
+   private static final long DELAY = 250L;
+
+   /**
+    * Wait for the pool to reach a number of connections
+    * @param pool The pool
+    * @param count The number of connections
+    * @exception Throwable Thrown in case of an error
+    */
+   private void waitFor(Pool pool, int count) throws Throwable
+   {
+      long deadline = System.currentTimeMillis() + 10000L;
+      while (pool.getActiveCount() < count && System.currentTimeMillis() < deadline)
+      {
+         Thread.sleep(10L);
+      }
+   }
+
+   /**
+    * The minimum pool size is created in parallel in the background
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testPrefill() throws Throwable
+   {
+      ConnectionFactoryDefinition cfd = Definition.class.getAnnotation(ConnectionFactoryDefinition.class);
+      PoolConfiguration pc = ConnectionManagerFactory.createPoolConfiguration(cfd);
+      assertEquals(4, pc.getMinSize());
+      assertEquals(8, pc.getMaxSize());
+      assertTrue(pc.isPrefill());
+
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      mcf.setCreateDelay(DELAY);
+
+      long start = System.currentTimeMillis();
+      ConnectionManager cm = ConnectionManagerFactory.createConnectionManager("test", mcf, pc);
+      assertTrue(System.currentTimeMillis() - start < DELAY);
+
+      waitFor(cm.getPool(), 4);
+      assertEquals(4, cm.getPool().getActiveCount());
+
+      long deadline = System.currentTimeMillis() + 10000L;
+      while (mcf.getCreated() < 4 && System.currentTimeMillis() < deadline)
+      {
+         Thread.sleep(10L);
+      }
+
+      // Creating the connections one after the other takes at least 4 * DELAY
+      assertTrue(System.currentTimeMillis() - start < 4 * DELAY);
+      assertEquals(4, mcf.getCreated());
+      assertEquals(4, cm.getPool().getIdleCount());
+      cm.shutdown();
+   }
+
+   /**
+    * The pool is refilled to its minimum size after a connection is destroyed
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testRefill() throws Throwable
+   {
+      PoolConfiguration pc = new PoolConfiguration();
+      pc.setMinSize(2);
+      pc.setMaxSize(4);
+      pc.setPrefill(true);
+
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      ConnectionManager cm = ConnectionManagerFactory.createConnectionManager("test", mcf, pc);
+      TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+      waitFor(cm.getPool(), 2);
+
+      TestConnection c = cf.getConnection();
+      c.error();
+      assertEquals(1, mcf.getDestroyed());
+
+      waitFor(cm.getPool(), 2);
+      assertEquals(2, cm.getPool().getActiveCount());
+
+      long deadline = System.currentTimeMillis() + 10000L;
+      while (mcf.getCreated() < 3 && System.currentTimeMillis() < deadline)
+      {
+         Thread.sleep(10L);
+      }
+      assertEquals(3, mcf.getCreated());
+      cm.shutdown();
+   }
+
+   /**
+    * A borrow racing the filler for the last connection waits for the connection
+    * under creation without spinning, and times out with the blocking timeout
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testBorrowDuringFill() throws Throwable
+   {
+      ThreadMXBean mbean = ManagementFactory.getThreadMXBean();
+      Assume.assumeTrue(mbean.isCurrentThreadCpuTimeSupported());
+
+      PoolConfiguration pc = new PoolConfiguration();
+      pc.setMinSize(1);
+      pc.setMaxSize(1);
+      pc.setPrefill(true);
+      pc.setBlockingTimeout(500L);
+
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      mcf.setCreateDelay(2000L);
+      ConnectionManager cm = ConnectionManagerFactory.createConnectionManager("test", mcf, pc);
+      TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+      waitFor(cm.getPool(), 1);
+
+      long cpu = mbean.getCurrentThreadCpuTime();
+      long start = System.nanoTime();
+      try
+      {
+         cf.getConnection();
+         fail("Connection obtained during fill");
+      }
+      catch (ResourceAllocationException rae)
+      {
+         // Expected
+      }
+      long elapsed = (System.nanoTime() - start) / 1000000L;
+      cpu = (mbean.getCurrentThreadCpuTime() - cpu) / 1000000L;
+
+      assertTrue("Waited " + elapsed + " ms", elapsed >= 400L && elapsed < 1500L);
+      assertTrue("Used " + cpu + " ms", cpu < 250L);
+
+      long deadline = System.currentTimeMillis() + 10000L;
+      while (mcf.getCreated() < 1 && System.currentTimeMillis() < deadline)
+      {
+         Thread.sleep(10L);
+      }
+
+      // The filled connection is handed out once created
+      TestConnection c = cf.getConnection();
+      assertEquals(1, mcf.getCreated());
+      c.close();
+
+      cm.shutdown();
+   }
+
+   /**
+    * A connection factory definition
+    */
+   @ConnectionFactoryDefinition(name = "java:/eis/Test", resourceAdapter = "test",
+                                interfaceName = "org.ironjacamar.core.connectionmanager.support.TestConnectionFactory",
+                                minPoolSize = 4, maxPoolSize = 8)
+   static class Definition
+   {
+   }
+}
@@ -0,0 +1,384 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.pool;
+
+import org.ironjacamar.core.api.connectionmanager.ConnectionManager;
+import org.ironjacamar.core.api.connectionmanager.pool.PoolConfiguration;
+import org.ironjacamar.core.connectionmanager.ConnectionManagerFactory;
+import org.ironjacamar.core.connectionmanager.Credential;
+import org.ironjacamar.core.connectionmanager.support.TestManagedConnectionFactory;
+
+import javax.resource.spi.ResourceAllocationException;
+import javax.resource.spi.security.PasswordCredential;
+import javax.security.auth.Subject;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Subject quota test case
+ */
+public class SubjectQuotaTestCase
+{
+   /**
+    * Create a pool
+    * @param maxSize The maximum size
+    * @param subjectMinSize The number of connections guaranteed to each Subject
+    * @param subjectMaxSize The maximum number of connections of each Subject
+    * @return The pool
+    */
+   private ConcurrentPool createPool(int maxSize, int subjectMinSize, int subjectMaxSize)
+   {
+      return createPool(maxSize, subjectMinSize, subjectMaxSize, 100L);
+   }
+
+   /**
+    * Create a pool
+    * @param maxSize The maximum size
+    * @param subjectMinSize The number of connections guaranteed to each Subject
+    * @param subjectMaxSize The maximum number of connections of each Subject
+    * @param blockingTimeout The blocking timeout
+    * @return The pool
+    */
+   private ConcurrentPool createPool(int maxSize, int subjectMinSize, int subjectMaxSize, long blockingTimeout)
+   {
+      PoolConfiguration pc = new PoolConfiguration();
+      pc.setMaxSize(maxSize);
+      pc.setBlockingTimeout(blockingTimeout);
+      pc.setSubjectMinSize(subjectMinSize);
+      pc.setSubjectMaxSize(subjectMaxSize);
+
+      ConnectionManager cm = ConnectionManagerFactory.createConnectionManager("test",
+                                                                              new TestManagedConnectionFactory(), pc);
+      return (ConcurrentPool)cm.getPool();
+   }
+
+   /**
+    * Create the credential of a user
+    * @param user The user name, or <code>null</code> for no Subject
+    * @return The credential
+    */
+   private static Credential credential(String user)
+   {
+      if (user == null)
+         return new Credential(null, null);
+
+      Subject subject = new Subject();
+      subject.getPrivateCredentials().add(new PasswordCredential(user, new char[0]));
+      return new Credential(subject, null);
+   }
+
+   /**
+    * Try to get a connection listener
+    * @param pool The pool
+    * @param user The user name
+    * @return The connection listener, or <code>null</code> if none is available
+    * @exception Throwable Thrown in case of an error
+    */
+   private ConnectionListener get(ConcurrentPool pool, String user) throws Throwable
+   {
+      try
+      {
+         return pool.getConnectionListener(credential(user));
+      }
+      catch (ResourceAllocationException rae)
+      {
+         return null;
+      }
+   }
+
+   /**
+    * Get a connection listener on another thread, once it waits
+    * @param pool The pool
+    * @param user The user name
+    * @return The borrower
+    * @exception Throwable Thrown in case of an error
+    */
+   private Borrower getLater(ConcurrentPool pool, String user) throws Throwable
+   {
+      Borrower borrower = new Borrower(pool, user);
+      borrower.start();
+
+      while (borrower.getState() != Thread.State.TIMED_WAITING && borrower.isAlive())
+      {
+         Thread.sleep(1L);
+      }
+
+      return borrower;
+   }
+
+   /**
+    * A Subject can use the capacity which isn't guaranteed to others up to its maximum
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testMaximum() throws Throwable
+   {
+      ConcurrentPool pool = createPool(4, 1, 3);
+
+      ConnectionListener a1 = get(pool, "a");
+      ConnectionListener a2 = get(pool, "a");
+      ConnectionListener a3 = get(pool, "a");
+      assertNotNull(a1);
+      assertNotNull(a2);
+      assertNotNull(a3);
+      assertNull(get(pool, "a"));
+
+      // The last permit becomes the guarantee of b
+      ConnectionListener b1 = get(pool, "b");
+      assertNotNull(b1);
+      assertEquals(0, pool.getQuota("b").getOwed());
+      assertNull(get(pool, "b"));
+      assertEquals(4, pool.getInUseCount());
+
+      // A permit of the shared capacity can be used by b
+      pool.returnConnectionListener(a3, false);
+      assertEquals(3, pool.getInUseCount());
+      ConnectionListener b2 = get(pool, "b");
+      assertNotNull(b2);
+
+      pool.returnConnectionListener(a1, false);
+      pool.returnConnectionListener(a2, false);
+      pool.returnConnectionListener(b1, false);
+      pool.returnConnectionListener(b2, false);
+
+      assertEquals(0, pool.getInUseCount());
+      assertEquals(1, pool.getQuota("a").getReserve());
+      assertEquals(1, pool.getQuota("b").getReserve());
+
+      pool.shutdown();
+   }
+
+   /**
+    * The idle guaranteed connections of a Subject are lent to the others, and
+    * go back to the Subject when it waits for them
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testGuarantee() throws Throwable
+   {
+      ConcurrentPool pool = createPool(4, 2, 0, 5000L);
+
+      ConnectionListener a1 = get(pool, "a");
+      pool.returnConnectionListener(a1, false);
+
+      // b takes its guarantee while idle
+      ConnectionListener b1 = get(pool, "b");
+      pool.returnConnectionListener(b1, false);
+      assertEquals(0, pool.getInUseCount());
+
+      a1 = get(pool, "a");
+      ConnectionListener a2 = get(pool, "a");
+      ConnectionListener a3 = get(pool, "a");
+      ConnectionListener a4 = get(pool, "a");
+      assertNotNull(a3);
+      assertNotNull(a4);
+      assertEquals(2, pool.getQuota("b").getLent());
+      assertEquals(4, pool.getInUseCount());
+
+      // b waits on its reserve, and gets the loans back
+      Borrower w1 = getLater(pool, "b");
+      Borrower w2 = getLater(pool, "b");
+
+      pool.returnConnectionListener(a1, false);
+      pool.returnConnectionListener(a3, false);
+      pool.returnConnectionListener(a4, false);
+
+      w1.join();
+      w2.join();
+      assertNotNull(w1.getConnectionListener());
+      assertNotNull(w2.getConnectionListener());
+      assertEquals(0, pool.getQuota("b").getLent());
+      assertEquals(1, pool.getQuota("a").getReserve());
+
+      pool.returnConnectionListener(a2, false);
+      pool.returnConnectionListener(w1.getConnectionListener(), false);
+      pool.returnConnectionListener(w2.getConnectionListener(), false);
+      assertEquals(0, pool.getInUseCount());
+
+      pool.shutdown();
+   }
+
+   /**
+    * The reserves of idle Subjects don't keep the others from the pool
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testIdleReserve() throws Throwable
+   {
+      ConcurrentPool pool = createPool(4, 2, 0);
+
+      pool.returnConnectionListener(get(pool, "a"), false);
+      pool.returnConnectionListener(get(pool, "b"), false);
+      assertEquals(0, pool.getInUseCount());
+
+      ConnectionListener c1 = get(pool, "c");
+      ConnectionListener n1 = get(pool, null);
+      assertNotNull(c1);
+      assertNotNull(n1);
+      assertEquals(2, pool.getQuota("a").getLent() + pool.getQuota("b").getLent());
+
+      pool.returnConnectionListener(c1, false);
+      pool.returnConnectionListener(n1, false);
+      assertEquals(2, pool.getQuota("a").getReserve());
+      assertEquals(2, pool.getQuota("b").getReserve());
+      assertEquals(0, pool.getInUseCount());
+
+      pool.shutdown();
+   }
+
+   /**
+    * The quota of an idle Subject is evicted, and its reserve goes back to the pool
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testEviction() throws Throwable
+   {
+      ConcurrentPool pool = createPool(4, 2, 0);
+
+      ConnectionListener a1 = get(pool, "a");
+      ConnectionListener n1 = get(pool, null);
+      ConnectionListener n2 = get(pool, null);
+      ConnectionListener n3 = get(pool, null);
+      assertNotNull(n3);
+      assertEquals(1, pool.getQuota("a").getLent());
+
+      // A Subject holding a connection isn't evicted
+      pool.evictQuotas();
+      pool.evictQuotas();
+      assertNotNull(pool.getQuota("a"));
+
+      pool.returnConnectionListener(a1, false);
+      pool.evictQuotas();
+      assertNull(pool.getQuota("a"));
+
+      // The loan goes back to the pool
+      pool.returnConnectionListener(n3, false);
+      n3 = get(pool, null);
+      ConnectionListener n4 = get(pool, null);
+      assertNotNull(n3);
+      assertNotNull(n4);
+      assertEquals(4, pool.getInUseCount());
+
+      pool.returnConnectionListener(n1, false);
+      pool.returnConnectionListener(n2, false);
+      pool.returnConnectionListener(n3, false);
+      pool.returnConnectionListener(n4, false);
+      assertEquals(0, pool.getInUseCount());
+
+      // A Subject seen again claims its guarantee again
+      pool.returnConnectionListener(get(pool, "a"), false);
+      assertEquals(2, pool.getQuota("a").getReserve());
+
+      pool.shutdown();
+   }
+
+   /**
+    * A guarantee which couldn't be taken when the Subject was first seen is
+    * built up from the connections the Subject returns
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testOwed() throws Throwable
+   {
+      ConcurrentPool pool = createPool(2, 2, 0);
+
+      ConnectionListener c1 = get(pool, null);
+      ConnectionListener c2 = get(pool, null);
+      assertNotNull(c1);
+      assertNotNull(c2);
+
+      assertNull(get(pool, "a"));
+      assertEquals(2, pool.getQuota("a").getOwed());
+
+      pool.returnConnectionListener(c1, false);
+      ConnectionListener a1 = get(pool, "a");
+      assertNotNull(a1);
+
+      pool.returnConnectionListener(a1, false);
+      assertEquals(1, pool.getQuota("a").getReserve());
+      assertEquals(1, pool.getQuota("a").getOwed());
+
+      // The idle reserve is lent without a Subject
+      ConnectionListener c3 = get(pool, null);
+      assertNotNull(c3);
+      assertEquals(1, pool.getQuota("a").getLent());
+      pool.returnConnectionListener(c3, false);
+      assertEquals(1, pool.getQuota("a").getReserve());
+
+      pool.returnConnectionListener(c2, false);
+      assertEquals(0, pool.getInUseCount());
+
+      pool.shutdown();
+   }
+
+   /**
+    * Gets a connection listener on its own thread
+    */
+   static class Borrower extends Thread
+   {
+      /** The pool */
+      private final ConcurrentPool pool;
+
+      /** The user name */
+      private final String user;
+
+      /** The connection listener */
+      private volatile ConnectionListener cl;
+
+      /**
+       * Constructor
+       * @param pool The pool
+       * @param user The user name
+       */
+      Borrower(ConcurrentPool pool, String user)
+      {
+         this.pool = pool;
+         this.user = user;
+      }
+
+      /**
+       * Get the connection listener
+       * @return The value, or <code>null</code> if none was obtained
+       */
+      ConnectionListener getConnectionListener()
+      {
+         return cl;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void run()
+      {
+         try
+         {
+            cl = pool.getConnectionListener(credential(user));
+         }
+         catch (Exception e)
+         {
+            cl = null;
+         }
+      }
+   }
+}
@@ -0,0 +1,286 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.pool;
+
+import org.ironjacamar.core.api.connectionmanager.ConnectionManager;
+import org.ironjacamar.core.api.connectionmanager.pool.PoolConfiguration;
+import org.ironjacamar.core.connectionmanager.ConnectionManagerFactory;
+import org.ironjacamar.core.connectionmanager.support.TestConnection;
+import org.ironjacamar.core.connectionmanager.support.TestConnectionFactory;
+import org.ironjacamar.core.connectionmanager.support.TestManagedConnectionFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.resource.spi.ResourceAllocationException;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Wait policy test case. The waiters of an exhausted pool park in a semaphore
+ * without holding any monitor, so virtual threads don't pin their carrier threads
+ */
+public class WaitPolicyTestCase
+{
+   /**
+    * Wait until a number of threads are waiting for a connection
+    * @param cm The connection manager
+    * @param count The number of threads
+    * @exception Throwable Thrown in case of an error
+    */
+   private void waitForWaiters(ConnectionManager cm, int count) throws Throwable
+   {
+      long deadline = System.currentTimeMillis() + 30000L;
+      while (cm.getPool().getWaitingCount() < count && System.currentTimeMillis() < deadline)
+      {
+         Thread.sleep(10L);
+      }
+      assertEquals(count, cm.getPool().getWaitingCount());
+   }
+
+   /**
+    * Create a task which gets a connection and closes it
+    * @param cf The connection factory
+    * @param done The latch counted down when the connection is closed
+    * @param failures The number of failures
+    * @return The task
+    */
+   private Runnable borrow(final TestConnectionFactory cf, final CountDownLatch done, final AtomicInteger failures)
+   {
+      return new Runnable()
+      {
+         public void run()
+         {
+            try
+            {
+               cf.getConnection().close();
+            }
+            catch (Throwable t)
+            {
+               failures.incrementAndGet();
+            }
+            finally
+            {
+               done.countDown();
+            }
+         }
+      };
+   }
+
+   /**
+    * The blocking timeout bounds the wait
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testTimeout() throws Throwable
+   {
+      PoolConfiguration pc = new PoolConfiguration();
+      pc.setMaxSize(1);
+      pc.setBlockingTimeout(100L);
+
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      ConnectionManager cm = ConnectionManagerFactory.createConnectionManager("test", mcf, pc);
+      TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+
+      TestConnection c = cf.getConnection();
+      long start = System.currentTimeMillis();
+      try
+      {
+         cf.getConnection();
+         fail("Connection obtained");
+      }
+      catch (ResourceAllocationException rae)
+      {
+         assertTrue(System.currentTimeMillis() - start >= 100L);
+      }
+
+      assertEquals(0, cm.getPool().getWaitingCount());
+      c.close();
+      cm.shutdown();
+   }
+
+   /**
+    * A fair pool hands out connections in arrival order
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testFair() throws Throwable
+   {
+      PoolConfiguration pc = new PoolConfiguration();
+      pc.setMaxSize(1);
+      pc.setFair(true);
+
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      ConnectionManager cm = ConnectionManagerFactory.createConnectionManager("test", mcf, pc);
+      final TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+
+      TestConnection c = cf.getConnection();
+
+      int waiters = 8;
+      final List<Integer> order = new CopyOnWriteArrayList<Integer>();
+      final CountDownLatch done = new CountDownLatch(waiters);
+      for (int i = 0; i < waiters; i++)
+      {
+         final int index = i;
+         Thread t = new Thread(new Runnable()
+         {
+            public void run()
+            {
+               try
+               {
+                  TestConnection tc = cf.getConnection();
+                  order.add(Integer.valueOf(index));
+                  tc.close();
+               }
+               catch (Throwable t)
+               {
+                  // Not in the order
+               }
+               finally
+               {
+                  done.countDown();
+               }
+            }
+         });
+         t.start();
+         waitForWaiters(cm, i + 1);
+      }
+
+      c.close();
+      assertTrue(done.await(30L, TimeUnit.SECONDS));
+
+      assertEquals(waiters, order.size());
+      for (int i = 0; i < waiters; i++)
+      {
+         assertEquals(i, order.get(i).intValue());
+      }
+
+      cm.shutdown();
+   }
+
+   /**
+    * The waiters are parked in the pool without holding a monitor
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testNoMonitors() throws Throwable
+   {
+      PoolConfiguration pc = new PoolConfiguration();
+      pc.setMaxSize(1);
+
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      ConnectionManager cm = ConnectionManagerFactory.createConnectionManager("test", mcf, pc);
+      TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+
+      TestConnection c = cf.getConnection();
+
+      int waiters = 100;
+      CountDownLatch done = new CountDownLatch(waiters);
+      AtomicInteger failures = new AtomicInteger();
+      Thread[] threads = new Thread[waiters];
+      long[] ids = new long[waiters];
+      for (int i = 0; i < waiters; i++)
+      {
+         threads[i] = new Thread(borrow(cf, done, failures));
+         threads[i].start();
+         ids[i] = threads[i].getId();
+      }
+      waitForWaiters(cm, waiters);
+
+      ThreadMXBean mbean = ManagementFactory.getThreadMXBean();
+      ThreadInfo[] infos = mbean.getThreadInfo(ids, mbean.isObjectMonitorUsageSupported(), false);
+      for (int i = 0; i < waiters; i++)
+      {
+         assertEquals(Thread.State.TIMED_WAITING, infos[i].getThreadState());
+         assertEquals(0, infos[i].getLockedMonitors().length);
+         assertNotNull(LockSupport.getBlocker(threads[i]));
+      }
+
+      c.close();
+      assertTrue(done.await(30L, TimeUnit.SECONDS));
+      assertEquals(0, failures.get());
+      assertEquals(1, mcf.getCreated());
+
+      cm.shutdown();
+   }
+
+   /**
+    * More virtual threads than the virtual thread scheduler has carrier threads wait
+    * for a connection at the same time. A waiter which pinned its carrier thread would
+    * keep the other virtual threads from running. Needs a runtime with virtual threads
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testVirtualThreads() throws Throwable
+   {
+      Method ofVirtual = null;
+      Method unstarted = null;
+      try
+      {
+         ofVirtual = Thread.class.getMethod("ofVirtual");
+         unstarted = Class.forName("java.lang.Thread$Builder").getMethod("unstarted", Runnable.class);
+      }
+      catch (Exception e)
+      {
+         Assume.assumeTrue(false);
+      }
+
+      PoolConfiguration pc = new PoolConfiguration();
+      pc.setMaxSize(1);
+
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      ConnectionManager cm = ConnectionManagerFactory.createConnectionManager("test", mcf, pc);
+      TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+
+      TestConnection c = cf.getConnection();
+
+      // Above the default maximum number of carrier threads
+      int waiters = 1000;
+      CountDownLatch done = new CountDownLatch(waiters);
+      AtomicInteger failures = new AtomicInteger();
+      Object builder = ofVirtual.invoke(null);
+      for (int i = 0; i < waiters; i++)
+      {
+         Thread t = (Thread)unstarted.invoke(builder, borrow(cf, done, failures));
+         t.start();
+      }
+      waitForWaiters(cm, waiters);
+
+      c.close();
+      assertTrue(done.await(30L, TimeUnit.SECONDS));
+      assertEquals(0, failures.get());
+      assertEquals(1, mcf.getCreated());
+
+      cm.shutdown();
+   }
+}
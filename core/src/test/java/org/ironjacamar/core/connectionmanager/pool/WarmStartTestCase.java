@@ -0,0 +1,255 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.pool;
+
+import org.ironjacamar.core.api.connectionmanager.ConnectionManager;
+import org.ironjacamar.core.api.connectionmanager.pool.Pool;
+import org.ironjacamar.core.api.connectionmanager.pool.PoolConfiguration;
+import org.ironjacamar.core.connectionmanager.ConnectionManagerFactory;
+import org.ironjacamar.core.connectionmanager.support.TestConnection;
+import org.ironjacamar.core.connectionmanager.support.TestConnectionFactory;
+import org.ironjacamar.core.connectionmanager.support.TestConnectionRequestInfo;
+import org.ironjacamar.core.connectionmanager.support.TestManagedConnectionFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Warm start test case
+ */
+public class WarmStartTestCase
+{
+   /** The profile file */
+   private File file;
+
+   /**
+    * Create the location of the profile
+    * @exception Throwable Thrown in case of an error
+    */
+   @Before
+   public void before() throws Throwable
+   {
+      file = File.createTempFile("ironjacamar", ".profile");
+      assertTrue(file.delete());
+   }
+
+   /**
+    * Delete the profile
+    * @exception Throwable Thrown in case of an error
+    */
+   @After
+   public void after() throws Throwable
+   {
+      file.delete();
+   }
+
+   /**
+    * Create a pool configuration with a warm start file
+    * @param maxSize The maximum size
+    * @return The value
+    */
+   private PoolConfiguration createPoolConfiguration(int maxSize)
+   {
+      PoolConfiguration pc = new PoolConfiguration();
+      pc.setMaxSize(maxSize);
+      pc.setWarmStartFile(file.getAbsolutePath());
+      return pc;
+   }
+
+   /**
+    * Wait for the pool to reach a number of connections
+    * @param pool The pool
+    * @param count The number of connections
+    * @exception Throwable Thrown in case of an error
+    */
+   private void waitFor(Pool pool, int count) throws Throwable
+   {
+      long deadline = System.currentTimeMillis() + 10000L;
+      while (pool.getIdleCount() + pool.getInUseCount() < count && System.currentTimeMillis() < deadline)
+      {
+         Thread.sleep(10L);
+      }
+   }
+
+   /**
+    * Run a pool with connections of three ConnectionRequestInfo instances, and shut it down
+    * @exception Throwable Thrown in case of an error
+    */
+   private void createProfile() throws Throwable
+   {
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      ConnectionManager cm = ConnectionManagerFactory.createConnectionManager("test", mcf,
+                                                                              createPoolConfiguration(10));
+      TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+
+      // No profile yet
+      assertEquals(0, cm.getPool().getActiveCount());
+
+      TestConnection[] connections = new TestConnection[6];
+      for (int i = 0; i < 3; i++)
+      {
+         connections[i] = cf.getConnection(new TestConnectionRequestInfo("a"));
+      }
+      connections[3] = cf.getConnection(new TestConnectionRequestInfo("b"));
+      connections[4] = cf.getConnection(new TestConnectionRequestInfo("b"));
+      connections[5] = cf.getConnection();
+
+      for (TestConnection c : connections)
+      {
+         c.close();
+      }
+
+      assertEquals(6, cm.getPool().getStatistics().getMaxUsedCount());
+      cm.shutdown();
+      assertTrue(file.exists());
+   }
+
+   /**
+    * The pool is prefilled to the profile saved at shutdown
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testWarmStart() throws Throwable
+   {
+      createProfile();
+
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      ConnectionManager cm = ConnectionManagerFactory.createConnectionManager("test", mcf,
+                                                                              createPoolConfiguration(10));
+      TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+
+      WarmStartProfile profile = ((ConcurrentPool)cm.getPool()).getWarmStartProfile();
+      assertNotNull(profile);
+      assertEquals(6, profile.getSize());
+      assertEquals(6, profile.getPeak());
+      assertEquals(3, profile.getDistribution().size());
+      Map<String, Integer> distribution = profile.getDistribution();
+      assertEquals(Integer.valueOf(3), distribution.get(profile.digest(new TestConnectionRequestInfo("a"))));
+      assertEquals(Integer.valueOf(2), distribution.get(profile.digest(new TestConnectionRequestInfo("b"))));
+      assertEquals(Integer.valueOf(1), profile.getDistribution().get(null));
+
+      // The connections without a ConnectionRequestInfo are prefilled right away
+      waitFor(cm.getPool(), 1);
+      assertEquals(1, cm.getPool().getIdleCount());
+      assertEquals(1, mcf.getCreated());
+
+      // The first request of a ConnectionRequestInfo prefills the rest of its connections
+      TestConnection a = cf.getConnection(new TestConnectionRequestInfo("a"));
+      TestConnection b = cf.getConnection(new TestConnectionRequestInfo("b"));
+      waitFor(cm.getPool(), 6);
+      assertEquals(6, mcf.getCreated());
+      assertEquals(3, cm.getPool().getStatistics().getPartitionCount());
+      a.close();
+      b.close();
+
+      // The requests are served by the prefilled connections
+      TestConnection[] connections = new TestConnection[6];
+      for (int i = 0; i < 3; i++)
+      {
+         connections[i] = cf.getConnection(new TestConnectionRequestInfo("a"));
+      }
+      connections[3] = cf.getConnection(new TestConnectionRequestInfo("b"));
+      connections[4] = cf.getConnection(new TestConnectionRequestInfo("b"));
+      connections[5] = cf.getConnection();
+
+      for (TestConnection c : connections)
+      {
+         c.close();
+      }
+
+      assertEquals(6, mcf.getCreated());
+      cm.shutdown();
+   }
+
+   /**
+    * The profile is limited by the maximum size of the pool
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testMaxSize() throws Throwable
+   {
+      createProfile();
+
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      ConnectionManager cm = ConnectionManagerFactory.createConnectionManager("test", mcf,
+                                                                              createPoolConfiguration(4));
+      TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+
+      // The connection without a ConnectionRequestInfo, and the others of "a" on request
+      waitFor(cm.getPool(), 1);
+      cf.getConnection(new TestConnectionRequestInfo("a")).close();
+      waitFor(cm.getPool(), 4);
+      Thread.sleep(100L);
+
+      assertEquals(4, cm.getPool().getActiveCount());
+      assertEquals(4, mcf.getCreated());
+
+      cm.shutdown();
+   }
+
+   /**
+    * The profile doesn't hold the ConnectionRequestInfo instances
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testNoCredentials() throws Throwable
+   {
+      createProfile();
+
+      String content = new String(Files.readAllBytes(file.toPath()), "ISO-8859-1");
+      assertFalse(content.contains(TestConnectionRequestInfo.class.getName()));
+      assertFalse(content.contains("userName"));
+   }
+
+   /**
+    * A corrupt profile is ignored
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testCorrupt() throws Throwable
+   {
+      FileOutputStream fos = new FileOutputStream(file);
+      fos.write(new byte[] {1, 2, 3});
+      fos.close();
+
+      TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+      ConnectionManager cm = ConnectionManagerFactory.createConnectionManager("test", mcf,
+                                                                              createPoolConfiguration(4));
+      assertNull(((ConcurrentPool)cm.getPool()).getWarmStartProfile());
+      assertEquals(0, cm.getPool().getActiveCount());
+
+      cm.shutdown();
+
+      // The shutdown replaces the corrupt profile
+      cm = ConnectionManagerFactory.createConnectionManager("test", mcf, createPoolConfiguration(4));
+      assertNotNull(((ConcurrentPool)cm.getPool()).getWarmStartProfile());
+      cm.shutdown();
+   }
+}
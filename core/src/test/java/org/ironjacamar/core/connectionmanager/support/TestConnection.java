@@ -0,0 +1,115 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.support;
+
+import javax.resource.ResourceException;
+import javax.resource.spi.ConnectionRequestInfo;
+import javax.resource.spi.LazyAssociatableConnectionManager;
+import javax.resource.spi.LazyEnlistableConnectionManager;
+import javax.resource.spi.LazyEnlistableManagedConnection;
+
+/**
+ * A connection handle
+ */
+public class TestConnection
+{
+   /** The managed connection factory */
+   private final TestManagedConnectionFactory mcf;
+
+   /** The connection request info */
+   private final ConnectionRequestInfo cri;
+
+   /** The managed connection */
+   private volatile TestManagedConnection mc;
+
+   /**
+    * Constructor
+    * @param mc The managed connection
+    */
+   public TestConnection(TestManagedConnection mc)
+   {
+      this.mcf = mc.getManagedConnectionFactory();
+      this.cri = mc.getConnectionRequestInfo();
+      this.mc = mc;
+   }
+
+   /**
+    * Use the connection, which associates it with a managed connection if it is dissociated,
+    * and enlists a lazy enlistable managed connection
+    * @return The managed connection
+    * @exception ResourceException Thrown if the connection can't be associated
+    */
+   public TestManagedConnection use() throws ResourceException
+   {
+      if (mc == null)
+         ((LazyAssociatableConnectionManager)mcf.getConnectionManager()).associateConnection(this, mcf, cri);
+
+      TestManagedConnection current = mc;
+      if (current instanceof LazyEnlistableManagedConnection &&
+          mcf.getConnectionManager() instanceof LazyEnlistableConnectionManager)
+         ((LazyEnlistableConnectionManager)mcf.getConnectionManager()).lazyEnlist(current);
+
+      return current;
+   }
+
+   /**
+    * Get the managed connection
+    * @return The value
+    */
+   public TestManagedConnection getManagedConnection()
+   {
+      return mc;
+   }
+
+   /**
+    * Set the managed connection
+    * @param mc The value
+    */
+   void setManagedConnection(TestManagedConnection mc)
+   {
+      this.mc = mc;
+   }
+
+   /**
+    * Signal a connection error
+    */
+   public void error()
+   {
+      mc.errorHandle(this);
+   }
+
+   /**
+    * Close the connection
+    */
+   public void close()
+   {
+      TestManagedConnection current = mc;
+      if (current != null)
+      {
+         current.closeHandle(this);
+      }
+      else
+      {
+         ((LazyAssociatableConnectionManager)mcf.getConnectionManager()).inactiveConnectionClosed(this, mcf);
+      }
+   }
+}
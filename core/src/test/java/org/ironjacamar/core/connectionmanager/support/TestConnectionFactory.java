@@ -0,0 +1,70 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.support;
+
+import javax.resource.ResourceException;
+import javax.resource.spi.ConnectionManager;
+import javax.resource.spi.ConnectionRequestInfo;
+
+/**
+ * A connection factory
+ */
+public class TestConnectionFactory
+{
+   /** The managed connection factory */
+   private TestManagedConnectionFactory mcf;
+
+   /** The connection manager */
+   private ConnectionManager cm;
+
+   /**
+    * Constructor
+    * @param mcf The managed connection factory
+    * @param cm The connection manager
+    */
+   public TestConnectionFactory(TestManagedConnectionFactory mcf, ConnectionManager cm)
+   {
+      this.mcf = mcf;
+      this.cm = cm;
+   }
+
+   /**
+    * Get a connection
+    * @return The connection
+    * @exception ResourceException Thrown if a connection can't be obtained
+    */
+   public TestConnection getConnection() throws ResourceException
+   {
+      return getConnection(null);
+   }
+
+   /**
+    * Get a connection
+    * @param cri The connection request info
+    * @return The connection
+    * @exception ResourceException Thrown if a connection can't be obtained
+    */
+   public TestConnection getConnection(ConnectionRequestInfo cri) throws ResourceException
+   {
+      return (TestConnection)cm.allocateConnection(mcf, cri);
+   }
+}
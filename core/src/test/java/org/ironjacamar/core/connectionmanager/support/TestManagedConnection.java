@@ -0,0 +1,258 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.support;
+
+import org.ironjacamar.core.api.connectionmanager.ConnectionEventListeners;
+
+import java.io.PrintWriter;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import javax.resource.NotSupportedException;
+import javax.resource.ResourceException;
+import javax.resource.spi.ConnectionEventListener;
+import javax.resource.spi.ConnectionRequestInfo;
+import javax.resource.spi.DissociatableManagedConnection;
+import javax.resource.spi.LocalTransaction;
+import javax.resource.spi.ManagedConnection;
+import javax.resource.spi.ManagedConnectionMetaData;
+import javax.security.auth.Subject;
+import javax.transaction.xa.XAResource;
+
+/**
+ * An in-memory managed connection
+ */
+public class TestManagedConnection implements ManagedConnection, DissociatableManagedConnection
+{
+   /** The managed connection factory */
+   private TestManagedConnectionFactory mcf;
+
+   /** The connection request info */
+   private ConnectionRequestInfo cri;
+
+   /** The listeners */
+   private ConnectionEventListeners listeners;
+
+   /** The connection handles */
+   private Set<TestConnection> handles;
+
+   /** The XA resource */
+   private XAResource xaResource;
+
+   /** Destroyed */
+   private volatile boolean destroyed;
+
+   /** Valid */
+   private volatile boolean valid;
+
+   /**
+    * Constructor
+    * @param mcf The managed connection factory
+    * @param cri The connection request info
+    */
+   public TestManagedConnection(TestManagedConnectionFactory mcf, ConnectionRequestInfo cri)
+   {
+      this.mcf = mcf;
+      this.cri = cri;
+      this.listeners = new ConnectionEventListeners(this);
+      this.handles = new CopyOnWriteArraySet<TestConnection>();
+      this.xaResource = new TestXAResource();
+      this.destroyed = false;
+      this.valid = true;
+   }
+
+   /**
+    * Get the managed connection factory
+    * @return The value
+    */
+   public TestManagedConnectionFactory getManagedConnectionFactory()
+   {
+      return mcf;
+   }
+
+   /**
+    * Get the number of connection handles
+    * @return The value
+    */
+   public int getHandleCount()
+   {
+      return handles.size();
+   }
+
+   /**
+    * Get the connection request info
+    * @return The value
+    */
+   public ConnectionRequestInfo getConnectionRequestInfo()
+   {
+      return cri;
+   }
+
+   /**
+    * Is destroyed
+    * @return The value
+    */
+   public boolean isDestroyed()
+   {
+      return destroyed;
+   }
+
+   /**
+    * Is valid
+    * @return The value
+    */
+   public boolean isValid()
+   {
+      return valid;
+   }
+
+   /**
+    * Set valid
+    * @param v The value
+    */
+   public void setValid(boolean v)
+   {
+      valid = v;
+   }
+
+   /**
+    * Close a connection handle
+    * @param handle The handle
+    */
+   void closeHandle(TestConnection handle)
+   {
+      handles.remove(handle);
+      listeners.fireConnectionClosed(handle);
+   }
+
+   /**
+    * Signal an error on a connection handle
+    * @param handle The handle
+    */
+   void errorHandle(TestConnection handle)
+   {
+      listeners.fireConnectionErrorOccurred(handle, new Exception("Connection error"));
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public Object getConnection(Subject subject, ConnectionRequestInfo cxRequestInfo) throws ResourceException
+   {
+      TestConnection handle = new TestConnection(this);
+      handles.add(handle);
+      return handle;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void destroy() throws ResourceException
+   {
+      destroyed = true;
+      mcf.connectionDestroyed();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void cleanup() throws ResourceException
+   {
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void associateConnection(Object connection) throws ResourceException
+   {
+      TestConnection handle = (TestConnection)connection;
+      handle.setManagedConnection(this);
+      handles.add(handle);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void dissociateConnections() throws ResourceException
+   {
+      for (TestConnection handle : handles)
+      {
+         handle.setManagedConnection(null);
+      }
+      handles.clear();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void addConnectionEventListener(ConnectionEventListener listener)
+   {
+      listeners.add(listener);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void removeConnectionEventListener(ConnectionEventListener listener)
+   {
+      listeners.remove(listener);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public XAResource getXAResource() throws ResourceException
+   {
+      return xaResource;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public LocalTransaction getLocalTransaction() throws ResourceException
+   {
+      throw new NotSupportedException("Local transactions not supported");
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public ManagedConnectionMetaData getMetaData() throws ResourceException
+   {
+      return null;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void setLogWriter(PrintWriter out) throws ResourceException
+   {
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public PrintWriter getLogWriter() throws ResourceException
+   {
+      return null;
+   }
+}
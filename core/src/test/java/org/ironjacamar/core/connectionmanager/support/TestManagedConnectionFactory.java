@@ -0,0 +1,291 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.support;
+
+import java.io.PrintWriter;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.resource.ResourceException;
+import javax.resource.spi.ConnectionManager;
+import javax.resource.spi.ConnectionRequestInfo;
+import javax.resource.spi.ManagedConnection;
+import javax.resource.spi.ManagedConnectionFactory;
+import javax.resource.spi.ValidatingManagedConnectionFactory;
+import javax.security.auth.Subject;
+
+/**
+ * An in-memory managed connection factory
+ */
+public class TestManagedConnectionFactory implements ManagedConnectionFactory, ValidatingManagedConnectionFactory
+{
+   /** Serial version uid */
+   private static final long serialVersionUID = 1L;
+
+   /** Created */
+   private transient AtomicInteger created = new AtomicInteger(0);
+
+   /** Destroyed */
+   private transient AtomicInteger destroyed = new AtomicInteger(0);
+
+   /** Matched */
+   private transient AtomicInteger matched = new AtomicInteger(0);
+
+   /** Validated */
+   private transient AtomicInteger validated = new AtomicInteger(0);
+
+   /** The size of the largest validation batch */
+   private transient AtomicInteger batchSize = new AtomicInteger(0);
+
+   /** Create delay in milliseconds */
+   private long createDelay;
+
+   /** Validate delay in milliseconds */
+   private long validateDelay;
+
+   /** The connection manager */
+   private transient ConnectionManager cm;
+
+   /** Create lazy enlistable connections */
+   private boolean lazyEnlistment;
+
+   /**
+    * Constructor
+    */
+   public TestManagedConnectionFactory()
+   {
+      createDelay = 0L;
+      validateDelay = 0L;
+   }
+
+   /**
+    * Set the create delay
+    * @param v The value in milliseconds
+    */
+   public void setCreateDelay(long v)
+   {
+      createDelay = v;
+   }
+
+   /**
+    * Set the validate delay
+    * @param v The value in milliseconds
+    */
+   public void setValidateDelay(long v)
+   {
+      validateDelay = v;
+   }
+
+   /**
+    * Set lazy enlistment
+    * @param v The value
+    */
+   public void setLazyEnlistment(boolean v)
+   {
+      lazyEnlistment = v;
+   }
+
+   /**
+    * Get the connection manager
+    * @return The value
+    */
+   public ConnectionManager getConnectionManager()
+   {
+      return cm;
+   }
+
+   /**
+    * Get the number of created connections
+    * @return The value
+    */
+   public int getCreated()
+   {
+      return created.get();
+   }
+
+   /**
+    * Get the number of destroyed connections
+    * @return The value
+    */
+   public int getDestroyed()
+   {
+      return destroyed.get();
+   }
+
+   /**
+    * Get the number of matchManagedConnections calls
+    * @return The value
+    */
+   public int getMatched()
+   {
+      return matched.get();
+   }
+
+   /**
+    * Get the number of getInvalidConnections calls
+    * @return The value
+    */
+   public int getValidated()
+   {
+      return validated.get();
+   }
+
+   /**
+    * Get the size of the largest validation batch
+    * @return The value
+    */
+   public int getBatchSize()
+   {
+      return batchSize.get();
+   }
+
+   /**
+    * Connection destroyed
+    */
+   void connectionDestroyed()
+   {
+      destroyed.incrementAndGet();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public Object createConnectionFactory(ConnectionManager cxManager) throws ResourceException
+   {
+      cm = cxManager;
+      return new TestConnectionFactory(this, cxManager);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public Object createConnectionFactory() throws ResourceException
+   {
+      throw new ResourceException("Non-managed environment not supported");
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public ManagedConnection createManagedConnection(Subject subject, ConnectionRequestInfo cxRequestInfo)
+      throws ResourceException
+   {
+      if (createDelay > 0)
+      {
+         try
+         {
+            Thread.sleep(createDelay);
+         }
+         catch (InterruptedException ie)
+         {
+            Thread.currentThread().interrupt();
+         }
+      }
+
+      created.incrementAndGet();
+
+      if (lazyEnlistment)
+         return new TestLazyEnlistableManagedConnection(this, cxRequestInfo);
+
+      return new TestManagedConnection(this, cxRequestInfo);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @SuppressWarnings("rawtypes")
+   public ManagedConnection matchManagedConnections(Set connectionSet, Subject subject,
+                                                    ConnectionRequestInfo cxRequestInfo)
+      throws ResourceException
+   {
+      matched.incrementAndGet();
+
+      Iterator it = connectionSet.iterator();
+      while (it.hasNext())
+      {
+         Object o = it.next();
+         if (o instanceof TestManagedConnection)
+         {
+            TestManagedConnection mc = (TestManagedConnection)o;
+            if (mc.getConnectionRequestInfo() == null ? cxRequestInfo == null :
+                mc.getConnectionRequestInfo().equals(cxRequestInfo))
+               return mc;
+         }
+      }
+
+      return null;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @SuppressWarnings({ "rawtypes", "unchecked" })
+   public Set getInvalidConnections(Set connectionSet) throws ResourceException
+   {
+      validated.incrementAndGet();
+      if (validateDelay > 0)
+      {
+         try
+         {
+            Thread.sleep(validateDelay);
+         }
+         catch (InterruptedException ie)
+         {
+            Thread.currentThread().interrupt();
+         }
+      }
+
+      int size = batchSize.get();
+      while (connectionSet.size() > size && !batchSize.compareAndSet(size, connectionSet.size()))
+      {
+         size = batchSize.get();
+      }
+
+      Set result = new HashSet();
+      Iterator it = connectionSet.iterator();
+      while (it.hasNext())
+      {
+         TestManagedConnection mc = (TestManagedConnection)it.next();
+         if (!mc.isValid())
+            result.add(mc);
+      }
+
+      return result;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void setLogWriter(PrintWriter out) throws ResourceException
+   {
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public PrintWriter getLogWriter() throws ResourceException
+   {
+      return null;
+   }
+}
@@ -0,0 +1,168 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.support;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.transaction.RollbackException;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.SystemException;
+import javax.transaction.Transaction;
+import javax.transaction.xa.XAResource;
+
+/**
+ * A transaction which records its resources and synchronizations
+ */
+public class TestTransaction implements Transaction
+{
+   /** The status */
+   private volatile int status;
+
+   /** The enlisted resources */
+   private List<XAResource> resources;
+
+   /** The synchronizations */
+   private List<Synchronization> synchronizations;
+
+   /** The resources of the transaction synchronization registry */
+   private Map<Object, Object> registryResources;
+
+   /**
+    * Constructor
+    */
+   public TestTransaction()
+   {
+      this.status = Status.STATUS_ACTIVE;
+      this.resources = new CopyOnWriteArrayList<XAResource>();
+      this.synchronizations = new CopyOnWriteArrayList<Synchronization>();
+      this.registryResources = new ConcurrentHashMap<Object, Object>();
+   }
+
+   /**
+    * Get the enlisted resources
+    * @return The value
+    */
+   public List<XAResource> getResources()
+   {
+      return resources;
+   }
+
+   /**
+    * Get the resources of the transaction synchronization registry
+    * @return The value
+    */
+   Map<Object, Object> getRegistryResources()
+   {
+      return registryResources;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void commit() throws RollbackException, SystemException
+   {
+      boolean rollback = status == Status.STATUS_MARKED_ROLLBACK;
+
+      if (!rollback)
+      {
+         for (Synchronization s : synchronizations)
+         {
+            s.beforeCompletion();
+         }
+      }
+
+      complete(rollback ? Status.STATUS_ROLLEDBACK : Status.STATUS_COMMITTED);
+
+      if (rollback)
+         throw new RollbackException();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public boolean delistResource(XAResource xaRes, int flag) throws SystemException
+   {
+      return resources.contains(xaRes);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public boolean enlistResource(XAResource xaRes) throws RollbackException, SystemException
+   {
+      if (status != Status.STATUS_ACTIVE)
+         throw new IllegalStateException("Transaction is not active");
+
+      resources.add(xaRes);
+      return true;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public int getStatus() throws SystemException
+   {
+      return status;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void registerSynchronization(Synchronization sync) throws RollbackException, SystemException
+   {
+      synchronizations.add(sync);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void rollback() throws SystemException
+   {
+      complete(Status.STATUS_ROLLEDBACK);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void setRollbackOnly() throws SystemException
+   {
+      status = Status.STATUS_MARKED_ROLLBACK;
+   }
+
+   /**
+    * Complete the transaction
+    * @param s The final status
+    */
+   private void complete(int s)
+   {
+      status = s;
+      for (Synchronization sync : synchronizations)
+      {
+         sync.afterCompletion(s);
+      }
+      registryResources.clear();
+   }
+}
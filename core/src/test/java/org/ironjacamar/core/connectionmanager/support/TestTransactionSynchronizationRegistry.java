@@ -0,0 +1,143 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.support;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.SystemException;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * A transaction synchronization registry for the transactions of a TestTransactionManager
+ */
+public class TestTransactionSynchronizationRegistry implements TransactionSynchronizationRegistry
+{
+   /** The transaction manager */
+   private TestTransactionManager tm;
+
+   /**
+    * Constructor
+    * @param tm The transaction manager
+    */
+   public TestTransactionSynchronizationRegistry(TestTransactionManager tm)
+   {
+      this.tm = tm;
+   }
+
+   /**
+    * Get the transaction of the current thread
+    * @return The transaction
+    * @exception IllegalStateException Thrown if there is no transaction
+    */
+   private TestTransaction getTransaction()
+   {
+      TestTransaction tx = (TestTransaction)getTransactionKey();
+      if (tx == null)
+         throw new IllegalStateException("No transaction");
+
+      return tx;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public Object getTransactionKey()
+   {
+      try
+      {
+         return tm.getTransaction();
+      }
+      catch (SystemException se)
+      {
+         throw new IllegalStateException(se);
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void putResource(Object key, Object value)
+   {
+      getTransaction().getRegistryResources().put(key, value);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public Object getResource(Object key)
+   {
+      return getTransaction().getRegistryResources().get(key);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void registerInterposedSynchronization(Synchronization sync)
+   {
+      try
+      {
+         getTransaction().registerSynchronization(sync);
+      }
+      catch (Exception e)
+      {
+         throw new IllegalStateException(e);
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public int getTransactionStatus()
+   {
+      try
+      {
+         return tm.getStatus();
+      }
+      catch (SystemException se)
+      {
+         return Status.STATUS_UNKNOWN;
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void setRollbackOnly()
+   {
+      try
+      {
+         getTransaction().setRollbackOnly();
+      }
+      catch (SystemException se)
+      {
+         throw new IllegalStateException(se);
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public boolean getRollbackOnly()
+   {
+      return getTransactionStatus() == Status.STATUS_MARKED_ROLLBACK;
+   }
+}
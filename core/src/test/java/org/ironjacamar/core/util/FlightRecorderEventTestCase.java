@@ -0,0 +1,151 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.util;
+
+import org.ironjacamar.core.api.connectionmanager.ConnectionManager;
+import org.ironjacamar.core.api.connectionmanager.pool.PoolConfiguration;
+import org.ironjacamar.core.connectionmanager.ConnectionManagerFactory;
+import org.ironjacamar.core.connectionmanager.support.TestConnectionFactory;
+import org.ironjacamar.core.connectionmanager.support.TestManagedConnectionFactory;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Flight Recorder event test case. The recording API is called through reflection,
+ * since it isn't part of the language level of the project
+ */
+public class FlightRecorderEventTestCase
+{
+   /**
+    * Nothing is allocated when no recording is running
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testDisabled() throws Throwable
+   {
+      assertNull(FlightRecorderEvent.ALLOCATE.begin());
+      FlightRecorderEvent.ALLOCATE.end(null, "test", 0L, FlightRecorderEvent.SUCCESS);
+   }
+
+   /**
+    * The events of the connection manager are recorded
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testRecording() throws Throwable
+   {
+      Assume.assumeTrue(FlightRecorderEvent.ALLOCATE.isAvailable());
+
+      Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+      Object recording = recordingClass.newInstance();
+      Method enable = recordingClass.getMethod("enable", String.class);
+      for (FlightRecorderEvent event : new FlightRecorderEvent[] {FlightRecorderEvent.ALLOCATE,
+                                                                  FlightRecorderEvent.MATCH,
+                                                                  FlightRecorderEvent.CREATE,
+                                                                  FlightRecorderEvent.CLEANUP,
+                                                                  FlightRecorderEvent.DESTROY})
+      {
+         enable.invoke(recording, event.getName());
+      }
+      recordingClass.getMethod("start").invoke(recording);
+
+      File file = File.createTempFile("ironjacamar", ".jfr");
+      try
+      {
+         TestManagedConnectionFactory mcf = new TestManagedConnectionFactory();
+         ConnectionManager cm = ConnectionManagerFactory.createConnectionManager("jfr", mcf,
+                                                                                 new PoolConfiguration());
+         TestConnectionFactory cf = (TestConnectionFactory)mcf.createConnectionFactory(cm);
+
+         for (int i = 0; i < 3; i++)
+         {
+            cf.getConnection().close();
+         }
+         cm.shutdown();
+
+         long deadline = System.currentTimeMillis() + 10000L;
+         while (mcf.getDestroyed() < 1 && System.currentTimeMillis() < deadline)
+         {
+            Thread.sleep(10L);
+         }
+
+         recordingClass.getMethod("stop").invoke(recording);
+         recordingClass.getMethod("dump", Class.forName("java.nio.file.Path")).invoke(recording, file.toPath());
+
+         Class<?> recordingFile = Class.forName("jdk.jfr.consumer.RecordingFile");
+         List<?> events = (List<?>)recordingFile.getMethod("readAllEvents", Class.forName("java.nio.file.Path"))
+            .invoke(null, file.toPath());
+
+         Map<String, Integer> counts = new HashMap<String, Integer>();
+         long waited = 0L;
+         for (Object event : events)
+         {
+            Object type = event.getClass().getMethod("getEventType").invoke(event);
+            String name = (String)type.getClass().getMethod("getName").invoke(type);
+            Method getString = event.getClass().getMethod("getString", String.class);
+
+            if ("jfr".equals(getString.invoke(event, "pool")))
+            {
+               assertEquals(FlightRecorderEvent.SUCCESS, getString.invoke(event, "outcome"));
+
+               long waitTime = ((Long)event.getClass().getMethod("getLong", String.class)
+                                .invoke(event, "waitTime")).longValue();
+               Object duration = event.getClass().getMethod("getDuration").invoke(event);
+               if (FlightRecorderEvent.ALLOCATE.getName().equals(name))
+               {
+                  assertTrue(waitTime >= 0L);
+                  assertTrue(waitTime <= ((Long)duration.getClass().getMethod("toNanos").invoke(duration))
+                             .longValue());
+                  waited += waitTime;
+               }
+               else
+               {
+                  assertEquals(0L, waitTime);
+               }
+
+               Integer count = counts.get(name);
+               counts.put(name, Integer.valueOf(count != null ? count.intValue() + 1 : 1));
+            }
+         }
+
+         assertEquals(Integer.valueOf(3), counts.get(FlightRecorderEvent.ALLOCATE.getName()));
+         assertTrue(waited > 0L);
+         assertEquals(Integer.valueOf(1), counts.get(FlightRecorderEvent.CREATE.getName()));
+         assertEquals(Integer.valueOf(3), counts.get(FlightRecorderEvent.CLEANUP.getName()));
+         assertEquals(Integer.valueOf(1), counts.get(FlightRecorderEvent.DESTROY.getName()));
+      }
+      finally
+      {
+         recordingClass.getMethod("close").invoke(recording);
+         file.delete();
+      }
+   }
+}
@@ -0,0 +1,130 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.util;
+
+import org.ironjacamar.core.api.util.LatencyHistogram;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Striped histogram test case
+ */
+public class StripedHistogramTestCase
+{
+   /**
+    * Every value falls in a bucket whose highest value is within 12.5% of it
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testBuckets() throws Throwable
+   {
+      int last = -1;
+      for (long v = 0L; v < 1L << 20; v++)
+      {
+         int index = StripedHistogram.index(v);
+         assertTrue(index >= last);
+         assertTrue(StripedHistogram.highestValue(index) >= v);
+         assertTrue(StripedHistogram.highestValue(index) - v <= v / 8);
+         last = index;
+      }
+
+      assertEquals(StripedHistogram.BUCKETS - 1, StripedHistogram.index(Long.MAX_VALUE));
+      assertEquals(0, StripedHistogram.index(0L));
+   }
+
+   /**
+    * Percentiles of a uniform distribution
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testPercentiles() throws Throwable
+   {
+      StripedHistogram histogram = new StripedHistogram();
+      assertEquals(0L, histogram.snapshot().getP99());
+
+      for (long v = 1L; v <= 100000L; v++)
+      {
+         histogram.record(v * 1000L);
+      }
+
+      LatencyHistogram snapshot = histogram.snapshot();
+      assertEquals(100000L, snapshot.getCount());
+      assertEquals(100000000L, snapshot.getMax());
+      assertEquals(50000500L, snapshot.getMean());
+      assertWithin(50000000L, snapshot.getP50());
+      assertWithin(90000000L, snapshot.getP90());
+      assertWithin(99000000L, snapshot.getP99());
+      assertWithin(99900000L, snapshot.getP999());
+      assertEquals(100000000L, snapshot.valueAtPercentile(100.0));
+
+      histogram.reset();
+      assertEquals(0L, histogram.snapshot().getCount());
+      assertEquals(0L, histogram.snapshot().getMax());
+   }
+
+   /**
+    * Concurrent recording doesn't lose any value
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testConcurrent() throws Throwable
+   {
+      final StripedHistogram histogram = new StripedHistogram();
+      final int threads = 4;
+      final int values = 100000;
+      final CountDownLatch done = new CountDownLatch(threads);
+
+      for (int i = 0; i < threads; i++)
+      {
+         new Thread(new Runnable()
+         {
+            public void run()
+            {
+               for (int v = 0; v < values; v++)
+               {
+                  histogram.record(v);
+               }
+               done.countDown();
+            }
+         }).start();
+      }
+
+      done.await();
+      assertEquals((long)threads * values, histogram.snapshot().getCount());
+      assertEquals(values - 1, histogram.snapshot().getMax());
+   }
+
+   /**
+    * Assert that a percentile is within 12.5% above its exact value
+    * @param expected The exact value
+    * @param actual The value of the histogram
+    */
+   private static void assertWithin(long expected, long actual)
+   {
+      assertTrue(actual + " < " + expected, actual >= expected);
+      assertTrue(actual + " > " + expected, actual <= expected + expected / 8);
+   }
+}
@@ -0,0 +1,227 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.util;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Timing wheel test case
+ */
+public class TimingWheelTestCase
+{
+   /**
+    * A timeout never expires before its deadline, and expires within a few ticks after it,
+    * also when the deadline is beyond the span of the first wheel
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testDeadlines() throws Throwable
+   {
+      TimingWheel wheel = new TimingWheel("test", 10L, 4);
+      try
+      {
+         long[] delays = new long[] {0L, 5L, 25L, 60L, 170L, 330L};
+         final CountDownLatch latch = new CountDownLatch(delays.length);
+         final long[] deadlines = new long[delays.length];
+         final AtomicLong[] expired = new AtomicLong[delays.length];
+
+         for (int i = 0; i < delays.length; i++)
+         {
+            final AtomicLong time = new AtomicLong();
+            expired[i] = time;
+            deadlines[i] = System.currentTimeMillis() + delays[i];
+
+            wheel.scheduleAt(new Runnable()
+            {
+               public void run()
+               {
+                  time.set(System.currentTimeMillis());
+                  latch.countDown();
+               }
+            }, deadlines[i]);
+         }
+
+         assertTrue(latch.await(10L, TimeUnit.SECONDS));
+
+         for (int i = 0; i < delays.length; i++)
+         {
+            assertTrue("Early " + i, expired[i].get() >= deadlines[i]);
+            assertTrue("Late " + i, expired[i].get() <= deadlines[i] + 500L);
+         }
+      }
+      finally
+      {
+         wheel.stop();
+      }
+   }
+
+   /**
+    * A cancelled timeout doesn't run
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testCancel() throws Throwable
+   {
+      TimingWheel wheel = new TimingWheel("test", 10L, 4);
+      try
+      {
+         final AtomicInteger runs = new AtomicInteger();
+         Runnable task = new Runnable()
+         {
+            public void run()
+            {
+               runs.incrementAndGet();
+            }
+         };
+
+         TimingWheel.Timeout cancelled = wheel.schedule(task, 50L, TimeUnit.MILLISECONDS);
+         TimingWheel.Timeout timeout = wheel.schedule(task, 100L, TimeUnit.MILLISECONDS);
+
+         assertTrue(cancelled.cancel());
+         assertTrue(cancelled.isCancelled());
+
+         long deadline = System.currentTimeMillis() + 10000L;
+         while (!timeout.isExpired() && System.currentTimeMillis() < deadline)
+         {
+            Thread.sleep(10L);
+         }
+         Thread.sleep(50L);
+
+         assertTrue(timeout.isExpired());
+         assertFalse(timeout.cancel());
+         assertFalse(cancelled.isExpired());
+         assertEquals(1, runs.get());
+      }
+      finally
+      {
+         wheel.stop();
+      }
+   }
+
+   /**
+    * Timeouts which are cancelled long before their deadline are purged from the wheel,
+    * and the others still expire
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testPurge() throws Throwable
+   {
+      TimingWheel wheel = new TimingWheel("test", 10L, 4);
+      try
+      {
+         final CountDownLatch latch = new CountDownLatch(1);
+         TimingWheel.Timeout live = wheel.schedule(new Runnable()
+         {
+            public void run()
+            {
+               latch.countDown();
+            }
+         }, 500L, TimeUnit.MILLISECONDS);
+
+         List<WeakReference<TimingWheel.Timeout>> refs = new ArrayList<WeakReference<TimingWheel.Timeout>>();
+         for (int i = 0; i < 2000; i++)
+         {
+            TimingWheel.Timeout timeout = wheel.schedule(new Runnable()
+            {
+               public void run()
+               {
+               }
+            }, 1L, TimeUnit.HOURS);
+
+            refs.add(new WeakReference<TimingWheel.Timeout>(timeout));
+         }
+
+         // Let the ticker place the timeouts in the buckets before they are cancelled
+         Thread.sleep(50L);
+
+         for (WeakReference<TimingWheel.Timeout> ref : refs)
+         {
+            assertTrue(ref.get().cancel());
+         }
+
+         long deadline = System.currentTimeMillis() + 10000L;
+         int remaining = refs.size();
+         while (remaining > 0 && System.currentTimeMillis() < deadline)
+         {
+            // A purge during the cancellations leaves fewer cancelled timeouts than the
+            // threshold, which more cancelled timeouts in the buckets purge
+            if (remaining < refs.size())
+               cancelPlaced(wheel, 1024);
+
+            System.gc();
+            Thread.sleep(20L);
+
+            remaining = 0;
+            for (WeakReference<TimingWheel.Timeout> ref : refs)
+            {
+               if (ref.get() != null)
+                  remaining++;
+            }
+         }
+
+         assertEquals(0, remaining);
+         assertTrue(latch.await(10L, TimeUnit.SECONDS));
+         assertTrue(live.isExpired());
+      }
+      finally
+      {
+         wheel.stop();
+      }
+   }
+
+   /**
+    * Schedule timeouts, and cancel them once the ticker has placed them in the buckets
+    * @param wheel The timing wheel
+    * @param count The number of timeouts
+    * @exception Throwable Thrown in case of an error
+    */
+   private static void cancelPlaced(TimingWheel wheel, int count) throws Throwable
+   {
+      List<TimingWheel.Timeout> timeouts = new ArrayList<TimingWheel.Timeout>(count);
+      for (int i = 0; i < count; i++)
+      {
+         timeouts.add(wheel.schedule(new Runnable()
+         {
+            public void run()
+            {
+            }
+         }, 1L, TimeUnit.HOURS));
+      }
+
+      Thread.sleep(50L);
+
+      for (TimingWheel.Timeout timeout : timeouts)
+      {
+         timeout.cancel();
+      }
+   }
+}
@@ -0,0 +1,287 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.workmanager;
+
+import org.ironjacamar.core.api.workmanager.WorkManager;
+import org.ironjacamar.core.api.workmanager.WorkManagerConfiguration;
+import org.ironjacamar.core.workmanager.WorkManagerTestCase.HintedWork;
+import org.ironjacamar.core.workmanager.WorkManagerTestCase.RecordingListener;
+import org.ironjacamar.core.workmanager.WorkManagerTestCase.TestWork;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.resource.spi.work.WorkException;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Virtual thread work manager test case
+ */
+public class VirtualThreadWorkManagerTestCase
+{
+   /**
+    * Create a work manager on platform threads, so the cap can be tested on every runtime
+    * @param maxConcurrency The maximum concurrency
+    * @return The work manager
+    */
+   private static WorkManager create(int maxConcurrency)
+   {
+      WorkManagerConfiguration wmc = new WorkManagerConfiguration();
+      wmc.setVirtualThreads(true);
+      wmc.setMaxConcurrency(maxConcurrency);
+      return new VirtualThreadWorkManager("test", wmc, Executors.defaultThreadFactory());
+   }
+
+   /**
+    * No more work instances than the maximum concurrency run at the same time
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testMaxConcurrency() throws Throwable
+   {
+      WorkManager wm = create(2);
+      try
+      {
+         final int count = 10;
+         final CountDownLatch release = new CountDownLatch(1);
+         final CountDownLatch done = new CountDownLatch(count);
+         final AtomicInteger running = new AtomicInteger();
+         final AtomicInteger peak = new AtomicInteger();
+
+         for (int i = 0; i < count; i++)
+         {
+            wm.scheduleWork(new TestWork()
+            {
+               public void run()
+               {
+                  int r = running.incrementAndGet();
+                  int p = peak.get();
+                  while (r > p && !peak.compareAndSet(p, r))
+                     p = peak.get();
+
+                  try
+                  {
+                     release.await();
+                  }
+                  catch (InterruptedException ie)
+                  {
+                     Thread.currentThread().interrupt();
+                  }
+
+                  running.decrementAndGet();
+                  done.countDown();
+               }
+            });
+         }
+
+         long deadline = System.currentTimeMillis() + 10000L;
+         while (wm.getActiveCount() < 2 && System.currentTimeMillis() < deadline)
+            Thread.sleep(5L);
+
+         assertEquals(2, wm.getActiveCount());
+         assertEquals(count - 2, wm.getQueuedCount());
+
+         release.countDown();
+         assertTrue(done.await(10L, TimeUnit.SECONDS));
+         assertEquals(2, peak.get());
+      }
+      finally
+      {
+         wm.shutdown();
+      }
+   }
+
+   /**
+    * Work waiting for a permit is rejected when its start timeout passes, without waiting
+    * for the running work
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testStartTimeout() throws Throwable
+   {
+      WorkManager wm = create(1);
+      final CountDownLatch release = new CountDownLatch(1);
+      try
+      {
+         wm.startWork(new TestWork()
+         {
+            public void run()
+            {
+               try
+               {
+                  release.await();
+               }
+               catch (InterruptedException ie)
+               {
+                  Thread.currentThread().interrupt();
+               }
+            }
+         });
+
+         final AtomicInteger runs = new AtomicInteger();
+         RecordingListener listener = new RecordingListener();
+         wm.scheduleWork(new TestWork()
+         {
+            public void run()
+            {
+               runs.incrementAndGet();
+            }
+         }, 50L, null, listener);
+
+         assertTrue(listener.awaitEvents(2));
+         assertEquals("[1, 2]", listener.getTypes().toString());
+         assertEquals(WorkException.START_TIMED_OUT, listener.getEvents().get(1).getException().getErrorCode());
+         assertEquals(1, wm.getActiveCount());
+         assertEquals(0, wm.getQueuedCount());
+         assertEquals(0, runs.get());
+      }
+      finally
+      {
+         release.countDown();
+         wm.shutdown();
+      }
+   }
+
+   /**
+    * Prioritized work only goes in the lanes when it can wait for a permit
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testPriorityLanes() throws Throwable
+   {
+      for (int maxConcurrency = 0; maxConcurrency <= 1; maxConcurrency++)
+      {
+         WorkManager wm = create(maxConcurrency);
+         final CountDownLatch running = new CountDownLatch(1);
+         final CountDownLatch release = new CountDownLatch(1);
+         try
+         {
+            PriorityLanes lanes = ((AbstractWorkManager)wm).getLanes();
+
+            wm.startWork(new TestWork()
+            {
+               public void run()
+               {
+                  running.countDown();
+                  try
+                  {
+                     release.await();
+                  }
+                  catch (InterruptedException ie)
+                  {
+                     Thread.currentThread().interrupt();
+                  }
+               }
+            });
+            assertTrue(running.await(10L, TimeUnit.SECONDS));
+
+            final CountDownLatch done = new CountDownLatch(1);
+            wm.scheduleWork(new HintedWork(WorkManager.PRIORITY_HINT, Integer.valueOf(10))
+            {
+               public void run()
+               {
+                  done.countDown();
+               }
+            });
+
+            assertEquals(maxConcurrency > 0, ((AbstractWorkManager)wm).isPrioritized());
+            if (maxConcurrency == 0)
+            {
+               assertTrue(done.await(10L, TimeUnit.SECONDS));
+               assertEquals(0, lanes.size());
+            }
+            else
+            {
+               assertEquals(1, lanes.size());
+               release.countDown();
+               assertTrue(done.await(10L, TimeUnit.SECONDS));
+               assertEquals(0, lanes.size());
+            }
+         }
+         finally
+         {
+            release.countDown();
+            wm.shutdown();
+         }
+      }
+   }
+
+   /**
+    * The factory creates a work manager which runs each work instance on a virtual thread
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testVirtualThreads() throws Throwable
+   {
+      Assume.assumeTrue(VirtualThreadWorkManager.isSupported());
+
+      WorkManagerConfiguration wmc = new WorkManagerConfiguration();
+      wmc.setVirtualThreads(true);
+      WorkManager wm = WorkManagerFactory.createWorkManager("test", wmc);
+      try
+      {
+         assertTrue(wm instanceof VirtualThreadWorkManager);
+
+         final int count = 1000;
+         final CountDownLatch done = new CountDownLatch(count);
+         final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+
+         for (int i = 0; i < count; i++)
+         {
+            wm.scheduleWork(new TestWork()
+            {
+               public void run()
+               {
+                  thread.set(Thread.currentThread());
+                  try
+                  {
+                     Thread.sleep(100L);
+                  }
+                  catch (InterruptedException ie)
+                  {
+                     Thread.currentThread().interrupt();
+                  }
+                  done.countDown();
+               }
+            });
+         }
+
+         assertTrue(done.await(10L, TimeUnit.SECONDS));
+
+         Method isVirtual = Thread.class.getMethod("isVirtual");
+         assertEquals(Boolean.TRUE, isVirtual.invoke(thread.get()));
+         assertTrue(thread.get().getName().startsWith("IronJacamar WorkManager test-"));
+      }
+      finally
+      {
+         wm.shutdown();
+      }
+   }
+}
@@ -0,0 +1,1013 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2013, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.workmanager;
+
+import org.ironjacamar.core.api.workmanager.WorkManager;
+import org.ironjacamar.core.api.workmanager.WorkManagerConfiguration;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.resource.spi.work.HintsContext;
+import javax.resource.spi.work.Work;
+import javax.resource.spi.work.WorkAdapter;
+import javax.resource.spi.work.WorkCompletedException;
+import javax.resource.spi.work.WorkContext;
+import javax.resource.spi.work.WorkContextProvider;
+import javax.resource.spi.work.WorkEvent;
+import javax.resource.spi.work.WorkException;
+import javax.resource.spi.work.WorkRejectedException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Work manager test case
+ */
+public class WorkManagerTestCase
+{
+   /**
+    * Create a work manager
+    * @param parallelism The number of worker threads
+    * @return The work manager
+    */
+   private static WorkManager create(int parallelism)
+   {
+      WorkManagerConfiguration wmc = new WorkManagerConfiguration();
+      wmc.setParallelism(parallelism);
+      return WorkManagerFactory.createWorkManager("test", wmc);
+   }
+
+   /**
+    * doWork runs the work on a worker thread, and the listener gets the events in order
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testDoWork() throws Throwable
+   {
+      WorkManager wm = create(2);
+      try
+      {
+         final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+         RecordingListener listener = new RecordingListener();
+
+         wm.doWork(new TestWork()
+         {
+            public void run()
+            {
+               thread.set(Thread.currentThread());
+            }
+         }, WorkManager.INDEFINITE, null, listener);
+
+         assertNotNull(thread.get());
+         assertNotSame(Thread.currentThread(), thread.get());
+         assertEquals("[1, 3, 4]", listener.getTypes().toString());
+         assertEquals(0, wm.getQueuedCount());
+         assertEquals(0, wm.getActiveCount());
+      }
+      finally
+      {
+         wm.shutdown();
+      }
+   }
+
+   /**
+    * startWork returns once the work has started, and scheduleWork right away
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testStartAndScheduleWork() throws Throwable
+   {
+      WorkManager wm = create(2);
+      try
+      {
+         final CountDownLatch release = new CountDownLatch(1);
+         final CountDownLatch done = new CountDownLatch(2);
+         Work work = new TestWork()
+         {
+            public void run()
+            {
+               try
+               {
+                  release.await();
+               }
+               catch (InterruptedException ie)
+               {
+                  Thread.currentThread().interrupt();
+               }
+               done.countDown();
+            }
+         };
+
+         assertTrue(wm.startWork(work) >= 0L);
+         assertEquals(1, wm.getActiveCount());
+
+         wm.scheduleWork(work);
+         release.countDown();
+
+         assertTrue(done.await(10L, TimeUnit.SECONDS));
+      }
+      finally
+      {
+         wm.shutdown();
+      }
+   }
+
+   /**
+    * A burst of work is executed completely, also the work which is submitted from the
+    * workers, and a worker which waits for nested work doesn't starve it
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testBurst() throws Throwable
+   {
+      final WorkManager wm = create(1);
+      try
+      {
+         final int count = 1000;
+         final CountDownLatch done = new CountDownLatch(2 * count + 1);
+         final AtomicInteger failures = new AtomicInteger();
+
+         for (int i = 0; i < count; i++)
+         {
+            wm.scheduleWork(new TestWork()
+            {
+               public void run()
+               {
+                  try
+                  {
+                     wm.scheduleWork(new TestWork()
+                     {
+                        public void run()
+                        {
+                           done.countDown();
+                        }
+                     });
+                  }
+                  catch (WorkException we)
+                  {
+                     failures.incrementAndGet();
+                  }
+                  done.countDown();
+               }
+            });
+         }
+
+         wm.scheduleWork(new TestWork()
+         {
+            public void run()
+            {
+               try
+               {
+                  wm.doWork(new TestWork()
+                  {
+                     public void run()
+                     {
+                     }
+                  });
+               }
+               catch (WorkException we)
+               {
+                  failures.incrementAndGet();
+               }
+               done.countDown();
+            }
+         });
+
+         assertTrue(done.await(30L, TimeUnit.SECONDS));
+         assertEquals(0, failures.get());
+      }
+      finally
+      {
+         wm.shutdown();
+      }
+   }
+
+   /**
+    * The exception of a work instance completes it with a WorkCompletedException
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testWorkCompletedException() throws Throwable
+   {
+      WorkManager wm = create(1);
+      try
+      {
+         RecordingListener listener = new RecordingListener();
+         try
+         {
+            wm.doWork(new TestWork()
+            {
+               public void run()
+               {
+                  throw new IllegalStateException("Failed");
+               }
+            }, WorkManager.INDEFINITE, null, listener);
+            fail("Work completed");
+         }
+         catch (WorkCompletedException wce)
+         {
+            assertTrue(wce.getCause() instanceof IllegalStateException);
+         }
+
+         assertEquals("[1, 3, 4]", listener.getTypes().toString());
+         assertTrue(listener.getEvents().get(2).getException() instanceof WorkCompletedException);
+      }
+      finally
+      {
+         wm.shutdown();
+      }
+   }
+
+   /**
+    * Work is rejected when it is null, when the queue is full, when its start timeout
+    * has passed, and after shutdown
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testRejected() throws Throwable
+   {
+      WorkManagerConfiguration wmc = new WorkManagerConfiguration();
+      wmc.setParallelism(1);
+      wmc.setMaxQueued(1);
+      WorkManager wm = WorkManagerFactory.createWorkManager("test", wmc);
+      try
+      {
+         try
+         {
+            wm.scheduleWork(null);
+            fail("Null work accepted");
+         }
+         catch (WorkRejectedException wre)
+         {
+            // Expected
+         }
+
+         final CountDownLatch release = new CountDownLatch(1);
+         wm.startWork(new TestWork()
+         {
+            public void run()
+            {
+               try
+               {
+                  release.await();
+               }
+               catch (InterruptedException ie)
+               {
+                  Thread.currentThread().interrupt();
+               }
+            }
+         });
+
+         final AtomicInteger runs = new AtomicInteger();
+         Work stale = new TestWork()
+         {
+            public void run()
+            {
+               runs.incrementAndGet();
+            }
+         };
+
+         RecordingListener listener = new RecordingListener();
+         wm.scheduleWork(stale, 10L, null, listener);
+         assertEquals(1, wm.getQueuedCount());
+
+         RecordingListener full = new RecordingListener();
+         try
+         {
+            wm.scheduleWork(stale, WorkManager.INDEFINITE, null, full);
+            fail("Queue not full");
+         }
+         catch (WorkRejectedException wre)
+         {
+            assertEquals(WorkException.INTERNAL, wre.getErrorCode());
+         }
+         assertEquals("[2]", full.getTypes().toString());
+
+         Thread.sleep(50L);
+         release.countDown();
+
+         assertTrue(listener.awaitEvents(2));
+         assertEquals("[1, 2]", listener.getTypes().toString());
+         assertEquals(WorkException.START_TIMED_OUT, listener.getEvents().get(1).getException().getErrorCode());
+         assertEquals(0, runs.get());
+      }
+      finally
+      {
+         wm.shutdown();
+      }
+
+      try
+      {
+         wm.doWork(new TestWork()
+         {
+            public void run()
+            {
+            }
+         });
+         fail("Work accepted after shutdown");
+      }
+      catch (WorkRejectedException wre)
+      {
+         // Expected
+      }
+   }
+
+   /**
+    * Queued work is rejected when its start timeout passes, while the workers are busy
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testStartTimeout() throws Throwable
+   {
+      WorkManager wm = create(1);
+      final CountDownLatch release = new CountDownLatch(1);
+      try
+      {
+         wm.startWork(new TestWork()
+         {
+            public void run()
+            {
+               try
+               {
+                  release.await();
+               }
+               catch (InterruptedException ie)
+               {
+                  Thread.currentThread().interrupt();
+               }
+            }
+         });
+
+         RecordingListener listener = new RecordingListener();
+         long start = System.currentTimeMillis();
+         try
+         {
+            wm.doWork(new TestWork()
+            {
+               public void run()
+               {
+               }
+            }, 100L, null, listener);
+            fail("Work started");
+         }
+         catch (WorkRejectedException wre)
+         {
+            assertEquals(WorkException.START_TIMED_OUT, wre.getErrorCode());
+         }
+         long duration = System.currentTimeMillis() - start;
+
+         assertTrue(duration >= 100L);
+         assertTrue(duration < 5000L);
+         assertTrue(listener.awaitEvents(2));
+         assertEquals("[1, 2]", listener.getTypes().toString());
+         assertEquals(0, wm.getQueuedCount());
+         assertEquals(1, wm.getActiveCount());
+         assertEquals(1L, wm.getStartTimeoutLatency().getCount());
+         assertTrue(wm.getStartTimeoutLatency().getMax() < TimeUnit.SECONDS.toNanos(5L));
+
+         release.countDown();
+         wm.doWork(new TestWork()
+         {
+            public void run()
+            {
+            }
+         }, 1000L, null, null);
+         assertEquals(1L, wm.getStartTimeoutLatency().getCount());
+      }
+      finally
+      {
+         release.countDown();
+         wm.shutdown();
+      }
+   }
+
+   /**
+    * A batch of work is accepted and runs as the work of scheduleWork
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testScheduleBatch() throws Throwable
+   {
+      WorkManager wm = create(2);
+      try
+      {
+         final int count = 200;
+         final CountDownLatch done = new CountDownLatch(count);
+         List<Work> batch = new ArrayList<Work>(count);
+         for (int i = 0; i < count; i++)
+         {
+            batch.add(new TestWork()
+            {
+               public void run()
+               {
+                  done.countDown();
+               }
+            });
+         }
+
+         RecordingListener listener = new RecordingListener();
+         assertEquals(count, wm.scheduleBatch(batch, WorkManager.INDEFINITE, null, listener));
+         assertTrue(done.await(10L, TimeUnit.SECONDS));
+         assertTrue(listener.awaitEvents(3 * count));
+         assertEquals(0, wm.getQueuedCount());
+
+         try
+         {
+            wm.scheduleBatch(Arrays.asList(batch.get(0), null));
+            fail("Null work accepted");
+         }
+         catch (WorkRejectedException wre)
+         {
+            // Expected
+         }
+         assertEquals(0, wm.getQueuedCount());
+         assertEquals(0, wm.scheduleBatch(Collections.<Work>emptyList()));
+      }
+      finally
+      {
+         wm.shutdown();
+      }
+   }
+
+   /**
+    * The work of a batch beyond the room of the queue is rejected
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testScheduleBatchQueueFull() throws Throwable
+   {
+      WorkManagerConfiguration wmc = new WorkManagerConfiguration();
+      wmc.setParallelism(1);
+      wmc.setMaxQueued(3);
+      WorkManager wm = WorkManagerFactory.createWorkManager("test", wmc);
+      final CountDownLatch release = new CountDownLatch(1);
+      try
+      {
+         wm.startWork(new TestWork()
+         {
+            public void run()
+            {
+               try
+               {
+                  release.await();
+               }
+               catch (InterruptedException ie)
+               {
+                  Thread.currentThread().interrupt();
+               }
+            }
+         });
+
+         final AtomicInteger runs = new AtomicInteger();
+         List<Work> batch = new ArrayList<Work>();
+         for (int i = 0; i < 5; i++)
+         {
+            batch.add(new TestWork()
+            {
+               public void run()
+               {
+                  runs.incrementAndGet();
+               }
+            });
+         }
+
+         RecordingListener listener = new RecordingListener();
+         assertEquals(3, wm.scheduleBatch(batch, WorkManager.INDEFINITE, null, listener));
+         assertEquals("[1, 1, 1, 2, 2]", listener.getTypes().toString());
+         assertSame(batch.get(3), listener.getEvents().get(3).getWork());
+         assertEquals(WorkException.INTERNAL, listener.getEvents().get(3).getException().getErrorCode());
+         assertEquals(3, wm.getQueuedCount());
+
+         RecordingListener full = new RecordingListener();
+         try
+         {
+            wm.scheduleBatch(batch, WorkManager.INDEFINITE, null, full);
+            fail("Queue not full");
+         }
+         catch (WorkRejectedException wre)
+         {
+            assertEquals(WorkException.INTERNAL, wre.getErrorCode());
+         }
+         assertEquals("[2, 2, 2, 2, 2]", full.getTypes().toString());
+
+         release.countDown();
+         assertTrue(listener.awaitEvents(9));
+         assertEquals(3, runs.get());
+      }
+      finally
+      {
+         release.countDown();
+         wm.shutdown();
+      }
+   }
+
+   /**
+    * A slow work listener doesn't delay the rejection of other work whose start timeout passes
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testSlowRejectionListener() throws Throwable
+   {
+      WorkManager wm = create(1);
+      final CountDownLatch release = new CountDownLatch(1);
+      final CountDownLatch unblock = new CountDownLatch(1);
+      try
+      {
+         wm.startWork(new TestWork()
+         {
+            public void run()
+            {
+               try
+               {
+                  release.await();
+               }
+               catch (InterruptedException ie)
+               {
+                  Thread.currentThread().interrupt();
+               }
+            }
+         });
+
+         final AtomicInteger blocked = new AtomicInteger();
+         WorkAdapter slow = new WorkAdapter()
+         {
+            @Override
+            public void workRejected(WorkEvent e)
+            {
+               blocked.incrementAndGet();
+               try
+               {
+                  unblock.await();
+               }
+               catch (InterruptedException ie)
+               {
+                  Thread.currentThread().interrupt();
+               }
+            }
+         };
+
+         for (int i = 0; i < 16; i++)
+         {
+            wm.scheduleWork(new TestWork()
+            {
+               public void run()
+               {
+               }
+            }, 20L, null, slow);
+         }
+
+         long deadline = System.currentTimeMillis() + 10000L;
+         while (blocked.get() == 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(5L);
+         assertTrue(blocked.get() > 0);
+
+         long start = System.currentTimeMillis();
+         try
+         {
+            wm.doWork(new TestWork()
+            {
+               public void run()
+               {
+               }
+            }, 100L, null, null);
+            fail("Work started");
+         }
+         catch (WorkRejectedException wre)
+         {
+            assertEquals(WorkException.START_TIMED_OUT, wre.getErrorCode());
+         }
+         assertTrue(System.currentTimeMillis() - start < 5000L);
+         assertEquals(0, wm.getQueuedCount());
+      }
+      finally
+      {
+         unblock.countDown();
+         release.countDown();
+         wm.shutdown();
+      }
+   }
+
+   /**
+    * Long-running work runs on its own threads, so it can't starve the short work
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testLongRunning() throws Throwable
+   {
+      WorkManager wm = create(1);
+      final CountDownLatch release = new CountDownLatch(2);
+      try
+      {
+         final List<String> threads = new CopyOnWriteArrayList<String>();
+         for (int i = 0; i < 2; i++)
+         {
+            wm.startWork(new HintedWork(HintsContext.LONGRUNNING_HINT, Boolean.TRUE)
+            {
+               public void run()
+               {
+                  threads.add(Thread.currentThread().getName());
+                  try
+                  {
+                     release.await();
+                  }
+                  catch (InterruptedException ie)
+                  {
+                     Thread.currentThread().interrupt();
+                  }
+               }
+            });
+         }
+
+         final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+         wm.doWork(new TestWork()
+         {
+            public void run()
+            {
+               thread.set(Thread.currentThread());
+            }
+         });
+
+         assertNotNull(thread.get());
+         assertEquals(2, wm.getActiveCount());
+         assertEquals(2, threads.size());
+         assertTrue(threads.get(0).startsWith("IronJacamar WorkManager test long-running-"));
+         assertFalse(threads.get(0).equals(threads.get(1)));
+      }
+      finally
+      {
+         release.countDown();
+         release.countDown();
+         wm.shutdown();
+      }
+   }
+
+   /**
+    * Work with a higher priority runs before the queued work with a lower priority
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testPriority() throws Throwable
+   {
+      WorkManager wm = create(1);
+      final CountDownLatch release = new CountDownLatch(1);
+      try
+      {
+         wm.startWork(new TestWork()
+         {
+            public void run()
+            {
+               try
+               {
+                  release.await();
+               }
+               catch (InterruptedException ie)
+               {
+                  Thread.currentThread().interrupt();
+               }
+            }
+         });
+
+         final List<String> order = new CopyOnWriteArrayList<String>();
+         final CountDownLatch done = new CountDownLatch(5);
+         String[] names = new String[] {"normal-1", "normal-2", "low", "high", "highest"};
+         Serializable[] priorities = new Serializable[] {null, null, Integer.valueOf(Thread.MIN_PRIORITY),
+                                                         Integer.valueOf(8), "10"};
+         for (int i = 0; i < names.length; i++)
+         {
+            final String name = names[i];
+            wm.scheduleWork(new HintedWork(WorkManager.PRIORITY_HINT, priorities[i])
+            {
+               public void run()
+               {
+                  order.add(name);
+                  done.countDown();
+               }
+            });
+         }
+
+         assertEquals(5, wm.getQueuedCount());
+         release.countDown();
+
+         assertTrue(done.await(10L, TimeUnit.SECONDS));
+         assertEquals("[highest, high, normal-1, normal-2, low]", order.toString());
+         assertEquals(0, wm.getQueuedCount());
+      }
+      finally
+      {
+         release.countDown();
+         wm.shutdown();
+      }
+   }
+
+   /**
+    * Long prioritized work which overtakes short work doesn't make it reach its start timeout
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testPriorityStartTimeout() throws Throwable
+   {
+      WorkManager wm = create(1);
+      final CountDownLatch running = new CountDownLatch(1);
+      final CountDownLatch release = new CountDownLatch(1);
+      try
+      {
+         wm.startWork(new TestWork()
+         {
+            public void run()
+            {
+               running.countDown();
+               try
+               {
+                  release.await();
+               }
+               catch (InterruptedException ie)
+               {
+                  Thread.currentThread().interrupt();
+               }
+            }
+         });
+         assertTrue(running.await(10L, TimeUnit.SECONDS));
+
+         final List<String> order = new CopyOnWriteArrayList<String>();
+         RecordingListener listener = new RecordingListener();
+         wm.scheduleWork(new TestWork()
+         {
+            public void run()
+            {
+               order.add("short");
+            }
+         }, 300L, null, listener);
+
+         wm.scheduleWork(new HintedWork(WorkManager.PRIORITY_HINT, Integer.valueOf(10))
+         {
+            public void run()
+            {
+               order.add("long");
+               try
+               {
+                  Thread.sleep(600L);
+               }
+               catch (InterruptedException ie)
+               {
+                  Thread.currentThread().interrupt();
+               }
+            }
+         });
+
+         release.countDown();
+
+         assertTrue(listener.awaitEvents(3));
+         assertEquals(Arrays.asList(Integer.valueOf(WorkEvent.WORK_ACCEPTED), Integer.valueOf(WorkEvent.WORK_STARTED),
+                                    Integer.valueOf(WorkEvent.WORK_COMPLETED)), listener.getTypes());
+         assertNull(listener.getEvents().get(2).getException());
+         assertEquals("[long, short]", order.toString());
+      }
+      finally
+      {
+         release.countDown();
+         wm.shutdown();
+      }
+   }
+
+   /**
+    * Prioritized work leaves its lane when it starts or is rejected
+    * @exception Throwable Thrown in case of an error
+    */
+   @Test
+   public void testPriorityLanesEmpty() throws Throwable
+   {
+      WorkManager wm = create(2);
+      final CountDownLatch release = new CountDownLatch(1);
+      try
+      {
+         PriorityLanes lanes = ((AbstractWorkManager)wm).getLanes();
+
+         final int count = 10000;
+         final CountDownLatch done = new CountDownLatch(count);
+         for (int i = 0; i < count; i++)
+         {
+            wm.scheduleWork(new HintedWork(WorkManager.PRIORITY_HINT, Integer.valueOf(10))
+            {
+               public void run()
+               {
+                  done.countDown();
+               }
+            });
+         }
+         assertTrue(done.await(30L, TimeUnit.SECONDS));
+         assertEquals(0, lanes.size());
+
+         for (int i = 0; i < 2; i++)
+         {
+            wm.startWork(new TestWork()
+            {
+               public void run()
+               {
+                  try
+                  {
+                     release.await();
+                  }
+                  catch (InterruptedException ie)
+                  {
+                     Thread.currentThread().interrupt();
+                  }
+               }
+            });
+         }
+
+         RecordingListener listener = new RecordingListener();
+         for (int i = 0; i < 100; i++)
+         {
+            wm.scheduleWork(new HintedWork(WorkManager.PRIORITY_HINT, Integer.valueOf(8))
+            {
+               public void run()
+               {
+               }
+            }, 20L, null, listener);
+         }
+         assertTrue(listener.awaitEvents(200));
+         assertEquals(0, lanes.size());
+         assertEquals(0, wm.getQueuedCount());
+
+         final CountDownLatch drained = new CountDownLatch(200);
+         for (int i = 0; i < 200; i++)
+         {
+            wm.scheduleWork(new HintedWork(WorkManager.PRIORITY_HINT, i % 2 == 0 ? Integer.valueOf(9) : null)
+            {
+               public void run()
+               {
+                  drained.countDown();
+               }
+            });
+         }
+         assertEquals(100, lanes.size());
+
+         release.countDown();
+         assertTrue(drained.await(30L, TimeUnit.SECONDS));
+         assertEquals(0, lanes.size());
+      }
+      finally
+      {
+         release.countDown();
+         wm.shutdown();
+      }
+   }
+
+   /**
+    * A work instance which doesn't need to be released
+    */
+   abstract static class TestWork implements Work
+   {
+      /**
+       * {@inheritDoc}
+       */
+      public void release()
+      {
+      }
+   }
+
+   /**
+    * A work listener which records the events
+    */
+   static class RecordingListener extends WorkAdapter
+   {
+      /** The events */
+      private final List<WorkEvent> events = new CopyOnWriteArrayList<WorkEvent>();
+
+      /**
+       * Get the events
+       * @return The value
+       */
+      List<WorkEvent> getEvents()
+      {
+         return events;
+      }
+
+      /**
+       * Get the types of the events
+       * @return The value
+       */
+      List<Integer> getTypes()
+      {
+         List<Integer> types = new CopyOnWriteArrayList<Integer>();
+         for (WorkEvent event : events)
+         {
+            types.add(Integer.valueOf(event.getType()));
+         }
+         return types;
+      }
+
+      /**
+       * Wait until a number of events have been recorded
+       * @param count The number of events
+       * @return True if they were recorded within ten seconds
+       * @exception InterruptedException Thrown if the thread is interrupted
+       */
+      boolean awaitEvents(int count) throws InterruptedException
+      {
+         long deadline = System.currentTimeMillis() + 10000L;
+         while (events.size() < count && System.currentTimeMillis() < deadline)
+         {
+            Thread.sleep(5L);
+         }
+         return events.size() >= count;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public void workAccepted(WorkEvent e)
+      {
+         events.add(e);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public void workRejected(WorkEvent e)
+      {
+         events.add(e);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public void workStarted(WorkEvent e)
+      {
+         events.add(e);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public void workCompleted(WorkEvent e)
+      {
+         events.add(e);
+      }
+   }
+
+   /**
+    * A work instance with a hint
+    */
+   abstract static class HintedWork extends TestWork implements WorkContextProvider
+   {
+      /** Serial version uid */
+      private static final long serialVersionUID = 1L;
+
+      /** The hints */
+      private final HintsContext hints;
+
+      /**
+       * Constructor
+       * @param hint The name of the hint
+       * @param value The value of the hint, or <code>null</code> for no hint
+       */
+      HintedWork(String hint, Serializable value)
+      {
+         this.hints = new HintsContext();
+         if (value != null)
+            hints.setHint(hint, value);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public List<WorkContext> getWorkContexts()
+      {
+         return Collections.<WorkContext>singletonList(hints);
+      }
+   }
+}